@@ -0,0 +1,191 @@
+import Exceptions.OrganizationAndPaymentsException;
+import benchmarks.Bridge;
+import benchmarks.ControllerHandle;
+import benchmarks.ServerHandle;
+import benchmarks.SingleWriterHandle;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+public class ControllerBridge implements Bridge {
+
+    @Override
+    public ControllerHandle newController(String storage) {
+        return new Handle(new Controller(PaymentStorage.valueOf(storage)));
+    }
+
+
+    @Override
+    public ControllerHandle openController(Path directory) throws Exception {
+        return new Handle(Controller.open(directory));
+    }
+
+
+    @Override
+    public SingleWriterHandle newSingleWriterController(int bufferSize, String waitStrategy) {
+        SingleWriterController controller = new SingleWriterController(new Controller(), bufferSize, SingleWriterController.WaitStrategy.valueOf(waitStrategy));
+        return new SingleWriterHandle() {
+            @Override
+            public CompletableFuture<?> addOrganization(String name, String registrationNumber, double initialBalance) {
+                return controller.addOrganization(name, registrationNumber, initialBalance);
+            }
+
+            @Override
+            public CompletableFuture<?> addPayment(String senderName, String recieverName, String uniqueCode, String paymentPurpose, LocalDateTime paymentDateTime, double paymentSum) {
+                return controller.addPayment(senderName, recieverName, uniqueCode, paymentPurpose, paymentDateTime, paymentSum);
+            }
+
+            @Override
+            public CompletableFuture<?> barrier() {
+                return controller.submit(x -> null);
+            }
+
+            @Override
+            public void close() {
+                controller.close();
+            }
+        };
+    }
+
+
+    @Override
+    public ServerHandle startPaymentServer(int port, int backlog) throws Exception {
+        SingleWriterController controller = new SingleWriterController(new Controller());
+        PaymentServer server = new PaymentServer(controller, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), backlog);
+        return new ServerHandle() {
+            @Override
+            public int port() {
+                return server.getPort();
+            }
+
+            @Override
+            public boolean usesVirtualThreads() {
+                return server.isUsingVirtualThreads();
+            }
+
+            @Override
+            public void close() {
+                server.close();
+                controller.close();
+            }
+        };
+    }
+
+
+    @Override
+    public Predicate<String> registrationNumberValidator() {
+        return RegistrationNumberValidator::isValid;
+    }
+
+
+    @Override
+    public void setExceptionStackTraces(boolean enabled) {
+        OrganizationAndPaymentsException.setStackTracesEnabled(enabled);
+    }
+
+
+    private static class Handle implements ControllerHandle {
+
+        private final Controller controller;
+
+        Handle(Controller controller) {
+            this.controller = controller;
+        }
+
+        @Override
+        public void addOrganization(String name, String registrationNumber, double initialBalance) throws Exception {
+            controller.addOrganization(name, registrationNumber, initialBalance);
+        }
+
+        @Override
+        public void addPayment(String senderName, String recieverName, String uniqueCode, String paymentPurpose, LocalDateTime paymentDateTime, double paymentSum) throws Exception {
+            controller.addPayment(senderName, recieverName, uniqueCode, paymentPurpose, paymentDateTime, paymentSum);
+        }
+
+        @Override
+        public boolean tryAddPayment(String senderName, String recieverName, String uniqueCode, String paymentPurpose, LocalDateTime paymentDateTime, double paymentSum) {
+            return controller.tryAddPayment(senderName, recieverName, uniqueCode, paymentPurpose, paymentDateTime, paymentSum).isAccepted();
+        }
+
+        @Override
+        public double getPaymentSum(String paymentId) throws Exception {
+            return controller.getPaymentSum(paymentId);
+        }
+
+        @Override
+        public double getBalance(String organizationName) throws Exception {
+            return controller.getBalance(organizationName);
+        }
+
+        @Override
+        public String getIdOfBiggestPayment() {
+            return controller.getIdOfBiggestPayment();
+        }
+
+        @Override
+        public LocalDate getDateWithBiggestTotalPayments() {
+            return controller.getDateWithBiggestTotalPayments();
+        }
+
+        @Override
+        public Map<String, Double> getFinalBalances() {
+            return controller.getFinalBalances();
+        }
+
+        @Override
+        public List<String> getOrganizationsWithNegativeSaldo() {
+            return controller.getOrganizationsWithNegativeSaldo();
+        }
+
+        @Override
+        public double getTotalByPurpose(String paymentPurpose) {
+            return controller.getTotalByPurpose(paymentPurpose);
+        }
+
+        @Override
+        public void setLatencySampleInterval(int latencySampleInterval) {
+            controller.getMetrics().setLatencySampleInterval(latencySampleInterval);
+        }
+
+        @Override
+        public Map<String, Long> getTotalsByReciever(double minimumSum, ForkJoinPool pool) {
+            return controller.aggregate(x -> x.getPaymentSum() >= minimumSum, x -> x.getRecieverOrganization().getOrganizationName(),
+                    Collectors.summingLong(Payment::getPaymentSumMinor), pool);
+        }
+
+        @Override
+        public List<String> getPayments(LocalDateTime from, LocalDateTime to) {
+            return controller.getPayments(from, to);
+        }
+
+        @Override
+        public double getTotal(LocalDateTime from, LocalDateTime to) throws Exception {
+            return controller.getTotal(from, to);
+        }
+
+        @Override
+        public void exportBalances(OutputStream output, String format) throws Exception {
+            controller.export().writeBalances(output, ControllerExport.Format.valueOf(format));
+        }
+
+        @Override
+        public void snapshot() throws Exception {
+            controller.snapshot().get();
+        }
+
+        @Override
+        public void close() throws Exception {
+            controller.close();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of the fork-join aggregation engine with the pool's parallelism. Each run groups every
+ * payment above a threshold by reciever and totals it, so there is no index to lean on and all
+ * of the work is the scan. Parallelism above the host's core count only measures oversubscription.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class AggregateBenchmark {
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    int parallelism;
+
+    @Param({"1000"})
+    int organizations;
+
+    @Param({"1000000", "10000000"})
+    int payments;
+
+    @Param({"HEAP", "COLUMNAR"})
+    String storage;
+
+    private ControllerHandle controller;
+
+    private ForkJoinPool pool;
+
+
+    @Setup(Level.Trial)
+    public void populate() throws Exception {
+        controller = Bridge.load().newController(storage);
+        new SyntheticData(SyntheticData.DEFAULT_SEED, organizations).populate(controller, payments);
+        pool = new ForkJoinPool(parallelism);
+    }
+
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        pool.shutdown();
+        controller.close();
+    }
+
+
+    @Benchmark
+    public Map<String, Long> getTotalsByReciever() {
+        return controller.getTotalsByReciever(100, pool);
+    }
+}
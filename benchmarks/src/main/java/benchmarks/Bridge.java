@@ -0,0 +1,36 @@
+package benchmarks;
+
+import java.nio.file.Path;
+import java.util.function.Predicate;
+
+public interface Bridge {
+
+    // Storage is the name of a PaymentStorage constant, such as HEAP or COLUMNAR.
+    ControllerHandle newController(String storage);
+
+    ControllerHandle openController(Path directory) throws Exception;
+
+    // Wait strategy is the name of a SingleWriterController.WaitStrategy constant, such as BLOCKING.
+    SingleWriterHandle newSingleWriterController(int bufferSize, String waitStrategy);
+
+    // Serves a new empty controller on the loopback interface, on any free port when port is 0.
+    ServerHandle startPaymentServer(int port, int backlog) throws Exception;
+
+    Predicate<String> registrationNumberValidator();
+
+    void setExceptionStackTraces(boolean enabled);
+
+
+    default ControllerHandle newController() {
+        return newController("HEAP");
+    }
+
+
+    static Bridge load() {
+        try {
+            return (Bridge) Class.forName("ControllerBridge").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("ControllerBridge is missing from the benchmark classpath", e);
+        }
+    }
+}
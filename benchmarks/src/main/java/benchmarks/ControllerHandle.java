@@ -0,0 +1,56 @@
+package benchmarks;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The operations the benchmarks drive on a {@code Controller}.
+ * <p>
+ * The payments core lives in the default package, which JMH refuses to generate benchmark code
+ * for, and which named packages cannot import. Benchmarks therefore call the core through this
+ * interface; the implementation is the default-package {@code ControllerBridge}, loaded once per
+ * trial by {@link Bridge#load()}, so the only cost on the measured path is an interface call.
+ */
+public interface ControllerHandle extends AutoCloseable {
+
+    void addOrganization(String name, String registrationNumber, double initialBalance) throws Exception;
+
+    void addPayment(String senderName, String recieverName, String uniqueCode, String paymentPurpose, LocalDateTime paymentDateTime, double paymentSum) throws Exception;
+
+    boolean tryAddPayment(String senderName, String recieverName, String uniqueCode, String paymentPurpose, LocalDateTime paymentDateTime, double paymentSum);
+
+    double getPaymentSum(String paymentId) throws Exception;
+
+    double getBalance(String organizationName) throws Exception;
+
+    String getIdOfBiggestPayment();
+
+    LocalDate getDateWithBiggestTotalPayments();
+
+    Map<String, Double> getFinalBalances();
+
+    List<String> getOrganizationsWithNegativeSaldo();
+
+    double getTotalByPurpose(String paymentPurpose);
+
+    // Ad-hoc aggregate through Controller.aggregate: minor-unit totals per reciever of payments of at least minimumSum.
+    Map<String, Long> getTotalsByReciever(double minimumSum, ForkJoinPool pool);
+
+    // Format is the name of a ControllerExport.Format constant, such as CSV or BINARY.
+    void exportBalances(OutputStream output, String format) throws Exception;
+
+    List<String> getPayments(LocalDateTime from, LocalDateTime to);
+
+    double getTotal(LocalDateTime from, LocalDateTime to) throws Exception;
+
+    void snapshot() throws Exception;
+
+    void setLatencySampleInterval(int latencySampleInterval);
+
+    @Override
+    void close() throws Exception;
+}
@@ -0,0 +1,89 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@code addPayment} and {@code addOrganization} on a controller that already holds
+ * {@code payments} payments between {@code organizations} organizations.
+ * Each iteration times one batch of {@value #BATCH} calls against a freshly populated controller;
+ * the arguments are generated up front so only the controller call is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = IngestionBenchmark.BATCH)
+@Measurement(iterations = 5, batchSize = IngestionBenchmark.BATCH)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class IngestionBenchmark {
+
+    static final int BATCH = 100_000;
+
+    @Param({"1000", "100000"})
+    int organizations;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int payments;
+
+    @Param({"HEAP", "COLUMNAR"})
+    String storage;
+
+    private ControllerHandle controller;
+    private int cursor;
+
+    private final String[] senders = new String[BATCH];
+    private final String[] recievers = new String[BATCH];
+    private final String[] ids = new String[BATCH];
+    private final String[] purposes = new String[BATCH];
+    private final LocalDateTime[] dateTimes = new LocalDateTime[BATCH];
+    private final double[] sums = new double[BATCH];
+    private final String[] organizationNames = new String[BATCH];
+    private final String[] registrationNumbers = new String[BATCH];
+
+
+    @Setup(Level.Trial)
+    public void generateBatch() {
+        SyntheticData data = new SyntheticData(SyntheticData.DEFAULT_SEED, organizations);
+        for (int i = 0; i < BATCH; i++) {
+            long payment = (long) payments + i;
+            senders[i] = data.organizationName(data.sender(payment));
+            recievers[i] = data.organizationName(data.reciever(payment));
+            ids[i] = data.paymentId(payment);
+            purposes[i] = data.purpose(payment);
+            dateTimes[i] = data.dateTime(payment);
+            sums[i] = data.sum(payment);
+            organizationNames[i] = data.organizationName(organizations + i);
+            registrationNumbers[i] = data.registrationNumber(organizations + i);
+        }
+    }
+
+
+    @Setup(Level.Iteration)
+    public void populate() throws Exception {
+        controller = Bridge.load().newController(storage);
+        new SyntheticData(SyntheticData.DEFAULT_SEED, organizations).populate(controller, payments);
+        cursor = 0;
+    }
+
+
+    @TearDown(Level.Iteration)
+    public void close() throws Exception {
+        controller.close();
+    }
+
+
+    @Benchmark
+    public void addPayment() throws Exception {
+        int i = cursor++;
+        controller.addPayment(senders[i], recievers[i], ids[i], purposes[i], dateTimes[i], sums[i]);
+    }
+
+
+    @Benchmark
+    public void addOrganization() throws Exception {
+        int i = cursor++;
+        controller.addOrganization(organizationNames[i], registrationNumbers[i], 0);
+    }
+}
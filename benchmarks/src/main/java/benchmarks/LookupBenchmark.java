@@ -0,0 +1,66 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-id lookups against a populated controller, using a fixed pseudo-random sample of existing
+ * payment ids and organization names.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class LookupBenchmark {
+
+    private static final int SAMPLE = 1 << 12;
+
+    @Param({"1000", "100000"})
+    int organizations;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int payments;
+
+    @Param({"HEAP", "COLUMNAR"})
+    String storage;
+
+    private ControllerHandle controller;
+    private final String[] paymentIds = new String[SAMPLE];
+    private final String[] organizationNames = new String[SAMPLE];
+    private int cursor;
+
+
+    @Setup(Level.Trial)
+    public void populate() throws Exception {
+        SyntheticData data = new SyntheticData(SyntheticData.DEFAULT_SEED, organizations);
+        controller = Bridge.load().newController(storage);
+        data.populate(controller, payments);
+        SplittableRandom random = new SplittableRandom(SyntheticData.DEFAULT_SEED);
+        for (int i = 0; i < SAMPLE; i++) {
+            paymentIds[i] = data.paymentId(random.nextInt(payments));
+            organizationNames[i] = data.organizationName(random.nextInt(organizations));
+        }
+    }
+
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        controller.close();
+    }
+
+
+    @Benchmark
+    public double getPaymentSum() throws Exception {
+        return controller.getPaymentSum(paymentIds[cursor++ & (SAMPLE - 1)]);
+    }
+
+
+    @Benchmark
+    public double getBalance() throws Exception {
+        return controller.getBalance(organizationNames[cursor++ & (SAMPLE - 1)]);
+    }
+}
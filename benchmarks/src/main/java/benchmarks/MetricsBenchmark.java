@@ -0,0 +1,68 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the built-in metrics on the cheapest operations, where it is the largest share: a
+ * balance lookup and a duplicate rejection. An interval of 0 only counts calls, 1 also times
+ * every call, and 16, the default, times one call in sixteen.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    private static final int SAMPLE = 1 << 12;
+    private static final LocalDateTime TIME = LocalDateTime.of(2023, 6, 1, 12, 0);
+
+    @Param({"0", "1", "16"})
+    int latencySampleInterval;
+
+    private ControllerHandle controller;
+    private String sender;
+    private String reciever;
+    private String duplicateId;
+    private final String[] organizationNames = new String[SAMPLE];
+    private int cursor;
+
+
+    @Setup(Level.Trial)
+    public void populate() throws Exception {
+        SyntheticData data = new SyntheticData(SyntheticData.DEFAULT_SEED, 1000);
+        controller = Bridge.load().newController();
+        data.populate(controller, 100000);
+        controller.setLatencySampleInterval(latencySampleInterval);
+        sender = data.organizationName(0);
+        reciever = data.organizationName(1);
+        duplicateId = data.paymentId(0);
+        SplittableRandom random = new SplittableRandom(SyntheticData.DEFAULT_SEED);
+        for (int i = 0; i < SAMPLE; i++) {
+            organizationNames[i] = data.organizationName(random.nextInt(1000));
+        }
+    }
+
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        controller.close();
+    }
+
+
+    @Benchmark
+    public double getBalance() throws Exception {
+        return controller.getBalance(organizationNames[cursor++ & (SAMPLE - 1)]);
+    }
+
+
+    @Benchmark
+    public boolean tryAddDuplicatePayment() {
+        return controller.tryAddPayment(sender, reciever, duplicateId, "purpose", TIME, 1);
+    }
+}
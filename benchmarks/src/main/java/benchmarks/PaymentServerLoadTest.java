@@ -0,0 +1,193 @@
+package benchmarks;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed-loop load test of the HTTP front-end: {@code clients} concurrent clients, each with its
+ * own connection, send their next request as soon as the previous response arrives, for
+ * {@code seconds} after a {@code warmup}. Requests mix balance lookups, payments and, rarely, the
+ * full balance listing; the report gives throughput and latency percentiles per request type.
+ * <p>
+ * This is a standalone program rather than a JMH benchmark, since JMH times a method, not a
+ * population of clients:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar benchmarks.PaymentServerLoadTest clients=10000 seconds=30
+ * </pre>
+ * Without {@code url=http://host:port} it starts a server in the same JVM, which then needs two
+ * file descriptors per client; raise {@code ulimit -n} accordingly. That server gets
+ * {@code sun.net.httpserver.nodelay=true} unless the command line says otherwise; a server given by
+ * {@code url} must be started with the flag itself.
+ */
+public final class PaymentServerLoadTest {
+
+    private static final String[] OPERATIONS = {"getBalance", "addPayment", "getFinalBalances"};
+    private static final int GET_BALANCE = 0;
+    private static final int ADD_PAYMENT = 1;
+    private static final int GET_FINAL_BALANCES = 2;
+
+
+    public static void main(String[] args) throws Exception {
+        int clients = 10_000;
+        int seconds = 30;
+        int warmup = 5;
+        int organizations = 1000;
+        String url = null;
+        for (String x : args) {
+            String[] option = x.split("=", 2);
+            if (option.length != 2) throw new IllegalArgumentException("expected name=value, got " + x);
+            switch (option[0]) {
+                case "clients": clients = Integer.parseInt(option[1]); break;
+                case "seconds": seconds = Integer.parseInt(option[1]); break;
+                case "warmup": warmup = Integer.parseInt(option[1]); break;
+                case "organizations": organizations = Integer.parseInt(option[1]); break;
+                case "url": url = option[1]; break;
+                default: throw new IllegalArgumentException("unknown option " + option[0]);
+            }
+        }
+
+        ServerHandle server = null;
+        if (url == null) {
+            // Must be set before the JDK's server is first used; see PaymentServer.
+            if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+            server = Bridge.load().startPaymentServer(0, clients);
+            url = "http://127.0.0.1:" + server.port();
+        }
+        ExecutorService callbacks = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(callbacks).connectTimeout(Duration.ofSeconds(30)).build();
+        try {
+            SyntheticData data = new SyntheticData(SyntheticData.DEFAULT_SEED, organizations);
+            for (int i = 0; i < organizations; i++) {
+                String body = "{\"name\":\"" + data.organizationName(i) + "\",\"registrationNumber\":\"" + data.registrationNumber(i) + "\",\"initialBalance\":" + data.initialBalance(i) + "}";
+                client.send(post(url + "/organizations", body), HttpResponse.BodyHandlers.discarding());
+            }
+
+            long start = System.nanoTime();
+            long measureFrom = start + TimeUnit.SECONDS.toNanos(warmup);
+            long measureTo = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+            CountDownLatch finished = new CountDownLatch(clients);
+            List<Client> population = new ArrayList<>(clients);
+            for (int i = 0; i < clients; i++) {
+                Client x = new Client(i, client, url, data, measureFrom, measureTo, finished);
+                population.add(x);
+                x.next();
+            }
+            finished.await();
+
+            System.out.printf("clients=%d seconds=%d organizations=%d server=%s%s%n", clients, seconds, organizations, url,
+                    server == null ? "" : server.usesVirtualThreads() ? " (virtual threads)" : " (platform threads)");
+            System.out.printf("%-18s %10s %10s %10s %10s %10s %10s %8s%n", "operation", "requests", "req/s", "p50 us", "p99 us", "p99.9 us", "max us", "errors");
+            for (int op = 0; op < OPERATIONS.length; op++) {
+                long errors = 0;
+                int count = 0;
+                for (Client x : population) {
+                    errors += x.errors[op];
+                    count += x.counts[op];
+                }
+                long[] latencies = new long[count];
+                int offset = 0;
+                for (Client x : population) {
+                    System.arraycopy(x.latencies[op], 0, latencies, offset, x.counts[op]);
+                    offset += x.counts[op];
+                }
+                Arrays.sort(latencies);
+                System.out.printf("%-18s %10d %10.0f %10.1f %10.1f %10.1f %10.1f %8d%n", OPERATIONS[op], count, count / (double) seconds,
+                        percentile(latencies, 50), percentile(latencies, 99), percentile(latencies, 99.9), percentile(latencies, 100), errors);
+            }
+        } finally {
+            callbacks.shutdownNow();
+            if (server != null) server.close();
+        }
+    }
+
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1] / 1000.0;
+    }
+
+
+    private static HttpRequest post(String uri, String body) {
+        return HttpRequest.newBuilder(URI.create(uri)).POST(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+
+    // Issues one request at a time; each completion records the latency and sends the next, so no locking is needed.
+    private static class Client {
+
+        private final int id;
+        private final HttpClient client;
+        private final String url;
+        private final SyntheticData data;
+        private final long measureFrom;
+        private final long measureTo;
+        private final CountDownLatch finished;
+        private final SplittableRandom random;
+        final long[][] latencies = new long[OPERATIONS.length][16];
+        final int[] counts = new int[OPERATIONS.length];
+        final long[] errors = new long[OPERATIONS.length];
+        private long payments;
+
+
+        Client(int id, HttpClient client, String url, SyntheticData data, long measureFrom, long measureTo, CountDownLatch finished) {
+            this.id = id;
+            this.client = client;
+            this.url = url;
+            this.data = data;
+            this.measureFrom = measureFrom;
+            this.measureTo = measureTo;
+            this.finished = finished;
+            random = new SplittableRandom(SyntheticData.DEFAULT_SEED + id);
+        }
+
+
+        void next() {
+            long sent = System.nanoTime();
+            if (sent >= measureTo) {
+                finished.countDown();
+                return;
+            }
+            int roll = random.nextInt(1000);
+            int op = roll < 500 ? GET_BALANCE : roll < 999 ? ADD_PAYMENT : GET_FINAL_BALANCES;
+            HttpRequest request;
+            if (op == GET_BALANCE) {
+                request = HttpRequest.newBuilder(URI.create(url + "/organizations/" + data.organizationName(random.nextInt(data.organizations())) + "/balance")).build();
+            } else if (op == ADD_PAYMENT) {
+                long payment = random.nextLong(1L << 40);
+                request = post(url + "/payments", "{\"senderName\":\"" + data.organizationName(data.sender(payment)) + "\",\"recieverName\":\"" +
+                        data.organizationName(data.reciever(payment)) + "\",\"uniqueCode\":\"c" + id + "-" + payments++ + "\",\"paymentPurpose\":\"" +
+                        data.purpose(payment) + "\",\"paymentDateTime\":\"" + data.dateTime(payment) + "\",\"paymentSum\":" + data.sum(payment) + "}");
+            } else {
+                request = HttpRequest.newBuilder(URI.create(url + "/balances")).build();
+            }
+            CompletableFuture<HttpResponse<Void>> response = client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+            response.whenComplete((result, failure) -> {
+                long received = System.nanoTime();
+                if (sent >= measureFrom) {
+                    if (failure != null || result.statusCode() >= 300) errors[op]++;
+                    else record(op, received - sent);
+                }
+                next();
+            });
+        }
+
+
+        private void record(int op, long nanos) {
+            if (counts[op] == latencies[op].length) latencies[op] = Arrays.copyOf(latencies[op], counts[op] * 2);
+            latencies[op][counts[op]++] = nanos;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregate queries over a populated controller.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class QueryBenchmark {
+
+    @Param({"1000", "100000"})
+    int organizations;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int payments;
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2023, 6, 1, 0, 0);
+
+    private ControllerHandle controller;
+
+
+    @Setup(Level.Trial)
+    public void populate() throws Exception {
+        controller = Bridge.load().newController();
+        new SyntheticData(SyntheticData.DEFAULT_SEED, organizations).populate(controller, payments);
+    }
+
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        controller.close();
+    }
+
+
+    @Benchmark
+    public String getIdOfBiggestPayment() {
+        return controller.getIdOfBiggestPayment();
+    }
+
+
+    @Benchmark
+    public LocalDate getDateWithBiggestTotalPayments() {
+        return controller.getDateWithBiggestTotalPayments();
+    }
+
+
+    @Benchmark
+    public Map<String, Double> getFinalBalances() {
+        return controller.getFinalBalances();
+    }
+
+
+    @Benchmark
+    public void exportBalancesCsv() throws Exception {
+        controller.exportBalances(OutputStream.nullOutputStream(), "CSV");
+    }
+
+
+    @Benchmark
+    public List<String> getOrganizationsWithNegativeSaldo() {
+        return controller.getOrganizationsWithNegativeSaldo();
+    }
+
+
+    @Benchmark
+    public double getTotalForOneDay() throws Exception {
+        return controller.getTotal(DAY, DAY.plusDays(1));
+    }
+
+
+    @Benchmark
+    public double getTotalByPurpose() {
+        return controller.getTotalByPurpose("invoice");
+    }
+}
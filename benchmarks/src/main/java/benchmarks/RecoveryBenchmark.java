@@ -0,0 +1,88 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup time of {@code Controller.open}: replaying a journal of {@code payments} payments,
+ * and loading a snapshot of the same state.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class RecoveryBenchmark {
+
+    @Param({"1000", "100000"})
+    int organizations;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int payments;
+
+    private Path journalDirectory;
+    private Path snapshotDirectory;
+
+
+    @Setup(Level.Trial)
+    public void writeData() throws Exception {
+        SyntheticData data = new SyntheticData(SyntheticData.DEFAULT_SEED, organizations);
+        journalDirectory = Files.createTempDirectory("payments-journal");
+        try (ControllerHandle controller = Bridge.load().openController(journalDirectory)) {
+            data.populate(controller, payments);
+        }
+        snapshotDirectory = Files.createTempDirectory("payments-snapshot");
+        try (ControllerHandle controller = Bridge.load().openController(snapshotDirectory)) {
+            data.populate(controller, payments);
+            controller.snapshot();
+        }
+    }
+
+
+    @TearDown(Level.Trial)
+    public void deleteData() throws IOException {
+        delete(journalDirectory);
+        delete(snapshotDirectory);
+    }
+
+
+    @Benchmark
+    public ControllerHandle replayJournal() throws Exception {
+        try (ControllerHandle controller = Bridge.load().openController(journalDirectory)) {
+            return controller;
+        }
+    }
+
+
+    @Benchmark
+    public ControllerHandle loadSnapshot() throws Exception {
+        try (ControllerHandle controller = Bridge.load().openController(snapshotDirectory)) {
+            return controller;
+        }
+    }
+
+
+    private static void delete(Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,56 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Registration number validation: the old per-call {@code Pattern.compile(...).find()}, a
+ * precompiled full-match regex, and {@code RegistrationNumberValidator}. Inputs cycle through
+ * valid and invalid numbers so no variant can short-circuit on one branch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistrationNumberBenchmark {
+
+    private static final String[] INPUTS = {"00110030", "12345678", "0000000A", "1234567", "987654321", "00991234", "elephant", "01003401"};
+    private static final Pattern PRECOMPILED = Pattern.compile("[0-9]{8}");
+
+    private Predicate<String> validator;
+    private int cursor;
+
+
+    @Setup
+    public void setUp() {
+        validator = Bridge.load().registrationNumberValidator();
+    }
+
+
+    @Benchmark
+    public boolean regexCompiledPerCall() {
+        return Pattern.compile("[0-9]{8}").matcher(next()).find();
+    }
+
+
+    @Benchmark
+    public boolean regexPrecompiled() {
+        return PRECOMPILED.matcher(next()).matches();
+    }
+
+
+    @Benchmark
+    public boolean validator() {
+        return validator.test(next());
+    }
+
+
+    private String next() {
+        return INPUTS[cursor++ & (INPUTS.length - 1)];
+    }
+}
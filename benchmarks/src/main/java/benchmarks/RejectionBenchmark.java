@@ -0,0 +1,73 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of rejecting a record: {@code addPayment} with and without exception stack traces, against
+ * the status-code {@code tryAddPayment}. Every call replays an already accepted payment id, so all
+ * of them are rejected as duplicates. Run with {@code -prof gc} to see the allocation difference.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RejectionBenchmark {
+
+    private static final int SAMPLE = 1 << 10;
+
+    @Param({"true", "false"})
+    boolean stackTraces;
+
+    private Bridge bridge;
+    private ControllerHandle controller;
+    private final String[] senders = new String[SAMPLE];
+    private final String[] recievers = new String[SAMPLE];
+    private final String[] paymentIds = new String[SAMPLE];
+    private int cursor;
+
+
+    @Setup(Level.Trial)
+    public void populate() throws Exception {
+        bridge = Bridge.load();
+        bridge.setExceptionStackTraces(stackTraces);
+        SyntheticData data = new SyntheticData(SyntheticData.DEFAULT_SEED, 1000);
+        controller = bridge.newController();
+        data.populate(controller, SAMPLE);
+        for (int i = 0; i < SAMPLE; i++) {
+            senders[i] = data.organizationName(data.sender(i));
+            recievers[i] = data.organizationName(data.reciever(i));
+            paymentIds[i] = data.paymentId(i);
+        }
+    }
+
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        bridge.setExceptionStackTraces(true);
+        controller.close();
+    }
+
+
+    @Benchmark
+    public boolean addPayment() {
+        int payment = cursor++ & (SAMPLE - 1);
+        try {
+            controller.addPayment(senders[payment], recievers[payment], paymentIds[payment], "replay", LocalDateTime.MIN, 1);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+
+    @Benchmark
+    public boolean tryAddPayment() {
+        int payment = cursor++ & (SAMPLE - 1);
+        return controller.tryAddPayment(senders[payment], recievers[payment], paymentIds[payment], "replay", LocalDateTime.MIN, 1);
+    }
+}
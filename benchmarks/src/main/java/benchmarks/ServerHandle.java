@@ -0,0 +1,14 @@
+package benchmarks;
+
+/**
+ * A running {@code PaymentServer} started through {@link Bridge}; closing it also stops its controller.
+ */
+public interface ServerHandle extends AutoCloseable {
+
+    int port();
+
+    boolean usesVirtualThreads();
+
+    @Override
+    void close() throws Exception;
+}
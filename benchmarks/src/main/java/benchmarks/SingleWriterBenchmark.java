@@ -0,0 +1,99 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publish throughput of the ring-buffer front-end. Run with {@code -t} producer threads; each
+ * iteration starts from a fresh controller holding {@code organizations} organizations. Producers
+ * block on a full ring, so the score is within {@code bufferSize} payments of what the writer applied.
+ * Every producer cycles through {@value #IDS_PER_THREAD} ids of its own, so a long iteration
+ * ends up measuring duplicate rejections.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class SingleWriterBenchmark {
+
+    static final int IDS_PER_THREAD = 1 << 20;
+    private static final int SAMPLE = 1 << 12;
+
+    @Param({"1000"})
+    int organizations;
+
+    @Param({"65536"})
+    int bufferSize;
+
+    @Param({"BUSY_SPIN", "YIELDING", "SLEEPING", "BLOCKING"})
+    String waitStrategy;
+
+    private SingleWriterHandle controller;
+    private final AtomicInteger producers = new AtomicInteger();
+    private final String[] senders = new String[SAMPLE];
+    private final String[] recievers = new String[SAMPLE];
+    private final String[] purposes = new String[SAMPLE];
+    private final LocalDateTime[] dateTimes = new LocalDateTime[SAMPLE];
+    private final double[] sums = new double[SAMPLE];
+
+
+    @State(Scope.Thread)
+    public static class Producer {
+
+        final String[] ids = new String[IDS_PER_THREAD];
+        int cursor;
+
+
+        @Setup(Level.Trial)
+        public void generateIds(SingleWriterBenchmark benchmark) {
+            int producer = benchmark.producers.getAndIncrement();
+            for (int i = 0; i < IDS_PER_THREAD; i++) {
+                ids[i] = "t" + producer + "-" + i;
+            }
+        }
+    }
+
+
+    @Setup(Level.Trial)
+    public void generateSample() {
+        SyntheticData data = new SyntheticData(SyntheticData.DEFAULT_SEED, organizations);
+        for (int i = 0; i < SAMPLE; i++) {
+            senders[i] = data.organizationName(data.sender(i));
+            recievers[i] = data.organizationName(data.reciever(i));
+            purposes[i] = data.purpose(i);
+            dateTimes[i] = data.dateTime(i);
+            sums[i] = data.sum(i);
+        }
+    }
+
+
+    @Setup(Level.Iteration)
+    public void populate() throws Exception {
+        SyntheticData data = new SyntheticData(SyntheticData.DEFAULT_SEED, organizations);
+        controller = Bridge.load().newSingleWriterController(bufferSize, waitStrategy);
+        for (int i = 0; i < organizations; i++) {
+            controller.addOrganization(data.organizationName(i), data.registrationNumber(i), data.initialBalance(i));
+        }
+        controller.barrier().get();
+    }
+
+
+    @TearDown(Level.Iteration)
+    public void close() throws Exception {
+        controller.barrier().get();
+        controller.close();
+    }
+
+
+    @Benchmark
+    public Object addPayment(Producer producer) {
+        int i = producer.cursor++;
+        int sample = i & (SAMPLE - 1);
+        return controller.addPayment(senders[sample], recievers[sample], producer.ids[i & (IDS_PER_THREAD - 1)], purposes[sample], dateTimes[sample], sums[sample]);
+    }
+}
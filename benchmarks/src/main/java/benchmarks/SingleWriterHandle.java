@@ -0,0 +1,21 @@
+package benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The operations the benchmarks drive on a {@code SingleWriterController}; see {@link ControllerHandle}
+ * for why the core is reached through an interface.
+ */
+public interface SingleWriterHandle extends AutoCloseable {
+
+    CompletableFuture<?> addOrganization(String name, String registrationNumber, double initialBalance);
+
+    CompletableFuture<?> addPayment(String senderName, String recieverName, String uniqueCode, String paymentPurpose, LocalDateTime paymentDateTime, double paymentSum);
+
+    // Completes once every command published before it has been applied.
+    CompletableFuture<?> barrier();
+
+    @Override
+    void close() throws Exception;
+}
@@ -0,0 +1,109 @@
+package benchmarks;
+
+import java.time.LocalDateTime;
+
+/**
+ * Reproducible synthetic organizations and payments.
+ * <p>
+ * Every attribute is a pure function of the seed and the record index, so any slice of a
+ * 10M-payment data set can be regenerated without keeping it in memory, and two runs with the
+ * same seed see exactly the same data.
+ */
+public final class SyntheticData {
+
+    public static final long DEFAULT_SEED = 0x5EEDL;
+
+    private static final String[] PURPOSES = {"invoice", "salary", "tax", "rent", "refund", "fee", "dividend", "loan repayment"};
+    private static final LocalDateTime LATEST = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final long SPAN_SECONDS = 2L * 365 * 24 * 3600;
+
+    private final long seed;
+    private final int organizations;
+
+
+    public SyntheticData(long seed, int organizations) {
+        if (organizations < 2) throw new IllegalArgumentException("payments need at least two organizations");
+        this.seed = seed;
+        this.organizations = organizations;
+    }
+
+
+    public int organizations() {
+        return organizations;
+    }
+
+
+    public String organizationName(int index) {
+        return "org-" + index;
+    }
+
+
+    public String registrationNumber(int index) {
+        String digits = Integer.toString(index);
+        return "00000000".substring(digits.length()) + digits;
+    }
+
+
+    public double initialBalance(int index) {
+        return (mix(index, 1) % 10_000_000) / 100.0;
+    }
+
+
+    public int sender(long payment) {
+        return (int) (mix(payment, 2) % organizations);
+    }
+
+
+    public int reciever(long payment) {
+        return (int) ((sender(payment) + 1 + mix(payment, 3) % (organizations - 1)) % organizations);
+    }
+
+
+    public String paymentId(long payment) {
+        return "p-" + payment;
+    }
+
+
+    public String purpose(long payment) {
+        return PURPOSES[(int) (mix(payment, 4) % PURPOSES.length)];
+    }
+
+
+    public LocalDateTime dateTime(long payment) {
+        return LATEST.minusSeconds(mix(payment, 5) % SPAN_SECONDS);
+    }
+
+
+    public double sum(long payment) {
+        return (1 + mix(payment, 6) % 1_000_000) / 100.0;
+    }
+
+
+    public void addOrganizations(ControllerHandle controller) throws Exception {
+        for (int i = 0; i < organizations; i++) {
+            controller.addOrganization(organizationName(i), registrationNumber(i), initialBalance(i));
+        }
+    }
+
+
+    public void addPayments(ControllerHandle controller, long from, long to) throws Exception {
+        for (long i = from; i < to; i++) {
+            controller.addPayment(organizationName(sender(i)), organizationName(reciever(i)), paymentId(i), purpose(i), dateTime(i), sum(i));
+        }
+    }
+
+
+    public void populate(ControllerHandle controller, long payments) throws Exception {
+        addOrganizations(controller);
+        addPayments(controller, 0, payments);
+    }
+
+
+    // SplitMix64 finalizer over (seed, index, stream); always non-negative.
+    private long mix(long index, int stream) {
+        long z = seed + index * 0x9E3779B97F4A7C15L + stream * 0xD1B54A32D192ED03L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (z ^ (z >>> 31)) >>> 1;
+    }
+}
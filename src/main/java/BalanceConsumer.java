@@ -0,0 +1,5 @@
+@FunctionalInterface
+public interface BalanceConsumer {
+
+    void accept(String organizationName, long balanceMinorUnits);
+}
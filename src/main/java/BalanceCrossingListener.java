@@ -0,0 +1,9 @@
+/**
+ * Notified when an organization's balance moves below zero or back to zero and above.
+ * Called on the thread that changed the balance, after the change is fully applied.
+ */
+@FunctionalInterface
+public interface BalanceCrossingListener {
+
+    void balanceCrossedZero(String organizationName, long previousBalanceMinorUnits, long balanceMinorUnits);
+}
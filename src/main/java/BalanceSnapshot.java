@@ -0,0 +1,86 @@
+import Exceptions.OrganizationAndPaymentsException;
+import Exceptions.OrganizationCannotBeFoundException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable view of every organization's balance as of one published state of a
+ * {@link Controller}; see {@link Controller#getBalanceSnapshot()}. Each accepted payment, batch and
+ * new organization publishes the next sequence number, so a view never shows one side of a
+ * payment without the other. Views are safe to read from any thread and never block the writer.
+ */
+public class BalanceSnapshot {
+
+    private final long sequence;
+    private final BalanceVersions.Node root;
+    private final int shift;
+    private final int size;
+    private final String[][] names;
+    private final Map<String, Integer> ids;
+
+
+    BalanceSnapshot(long sequence, BalanceVersions.Node root, int shift, int size, String[][] names, Map<String, Integer> ids) {
+        this.sequence = sequence;
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+        this.names = names;
+        this.ids = ids;
+    }
+
+
+    public long getSequence() {
+        return sequence;
+    }
+
+
+    public int getOrganizationCount() {
+        return size;
+    }
+
+
+    public double getBalance(String organizationName) throws OrganizationAndPaymentsException {
+        Integer id = ids.get(organizationName);
+        // The name map is shared with later versions, so an organization added after this one is not part of it.
+        if (id == null || id >= size) throw new OrganizationCannotBeFoundException();
+        return Money.toDouble(leafOf(id)[id & BalanceVersions.MASK]);
+    }
+
+
+    public HashMap<String, Double> getFinalBalances() {
+        HashMap<String, Double> balances = new HashMap<>();
+        forEachBalance((name, balance) -> balances.put(name, Money.toDouble(balance)));
+        return balances;
+    }
+
+
+    // In the order organizations were added, like Controller.getOrganizationsWithNegativeSaldo.
+    public ArrayList<String> getOrganizationsWithNegativeSaldo() {
+        ArrayList<String> negativeBalanceList = new ArrayList<>();
+        forEachBalance((name, balance) -> {
+            if (balance < 0) negativeBalanceList.add(name);
+        });
+        return negativeBalanceList;
+    }
+
+
+    public void forEachBalance(BalanceConsumer consumer) {
+        for (int first = 0; first < size; first += BalanceVersions.WIDTH) {
+            long[] leaf = leafOf(first);
+            for (int id = first; id < Math.min(size, first + BalanceVersions.WIDTH); id++) {
+                consumer.accept(names[id >>> BalanceVersions.NAME_CHUNK_BITS][id & (BalanceVersions.NAME_CHUNK_SIZE - 1)], leaf[id & BalanceVersions.MASK]);
+            }
+        }
+    }
+
+
+    private long[] leafOf(int id) {
+        BalanceVersions.Node node = root;
+        for (int level = shift; level > 0; level -= BalanceVersions.BITS) {
+            node = node.children[(id >>> level) & BalanceVersions.MASK];
+        }
+        return node.balances;
+    }
+}
@@ -0,0 +1,120 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Organization balances kept as a persistent trie, so that published versions stay frozen while
+ * the writer keeps changing the live one. Leaves hold {@value #WIDTH} balances and branches
+ * {@value #WIDTH} children, both tagged with the epoch they were created in, and a write copies
+ * every node on its path that belongs to an earlier epoch.
+ * <p>
+ * The first write after a publish starts a new epoch, so the published {@link BalanceSnapshot}
+ * keeps its nodes and stays readable until it is replaced. A payment therefore copies its two
+ * paths once per published version, and further writes before the next publish reuse the copies.
+ * <p>
+ * Only the writer calls the mutators.
+ */
+public class BalanceVersions {
+
+    static final int BITS = 5;
+    static final int WIDTH = 1 << BITS;
+    static final int MASK = WIDTH - 1;
+    static final int NAME_CHUNK_BITS = 10;
+    static final int NAME_CHUNK_SIZE = 1 << NAME_CHUNK_BITS;
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private String[][] names = new String[16][];
+    private Node root = new Node(0, false);
+    // Bits of the id resolved above the leaves; 0 while a single leaf holds everything.
+    private int shift;
+    private int size;
+    private long epoch;
+    private long sequence;
+    // The last published version, until the first write after it starts a new epoch.
+    private BalanceSnapshot published;
+
+
+    public int size() {
+        return size;
+    }
+
+
+    // The id must be the next one, which is how OrganizationRegistry numbers organizations.
+    public void add(int id, String name, long balance) {
+        if (id != size) throw new IllegalArgumentException("organization ids must be added in order");
+        beginWrite();
+        if (id == WIDTH << shift) {
+            Node grown = new Node(epoch, true);
+            grown.children[0] = root;
+            root = grown;
+            shift += BITS;
+        }
+        if (id >>> NAME_CHUNK_BITS == names.length) names = Arrays.copyOf(names, names.length * 2);
+        if (names[id >>> NAME_CHUNK_BITS] == null) names[id >>> NAME_CHUNK_BITS] = new String[NAME_CHUNK_SIZE];
+        names[id >>> NAME_CHUNK_BITS][id & (NAME_CHUNK_SIZE - 1)] = name;
+        ids.put(name, id);
+        size++;
+        set(id, balance);
+    }
+
+
+    public void set(int id, long balance) {
+        beginWrite();
+        if (root.epoch != epoch) root = root.copy(epoch);
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            int index = (id >>> level) & MASK;
+            Node child = node.children[index];
+            if (child == null) child = new Node(epoch, level > BITS);
+            else if (child.epoch != epoch) child = child.copy(epoch);
+            node.children[index] = child;
+            node = child;
+        }
+        node.balances[id & MASK] = balance;
+    }
+
+
+    public boolean isChanged() {
+        return published == null;
+    }
+
+
+    // The current balances under the next sequence number. Readers must not be handed any other version until this is called again.
+    public BalanceSnapshot publish() {
+        published = new BalanceSnapshot(++sequence, root, shift, size, names, ids);
+        return published;
+    }
+
+
+    private void beginWrite() {
+        if (published == null) return;
+        epoch++;
+        published = null;
+    }
+
+
+    static final class Node {
+
+        final long epoch;
+        final Node[] children;
+        final long[] balances;
+
+
+        Node(long epoch, boolean branch) {
+            this.epoch = epoch;
+            children = branch ? new Node[WIDTH] : null;
+            balances = branch ? null : new long[WIDTH];
+        }
+
+
+        private Node(long epoch, Node[] children, long[] balances) {
+            this.epoch = epoch;
+            this.children = children;
+            this.balances = balances;
+        }
+
+
+        Node copy(long epoch) {
+            return new Node(epoch, children == null ? null : children.clone(), balances == null ? null : balances.clone());
+        }
+    }
+}
@@ -0,0 +1,42 @@
+import Exceptions.OrganizationAndPaymentsException;
+
+public class BatchResult {
+
+    private final OrganizationAndPaymentsException[] rejections;
+    private final int rejectedCount;
+
+
+    public BatchResult(OrganizationAndPaymentsException[] rejections) {
+        this.rejections = rejections;
+        int rejected = 0;
+        for (OrganizationAndPaymentsException x : rejections) {
+            if (x != null) rejected++;
+        }
+        this.rejectedCount = rejected;
+    }
+
+
+    public int size() {
+        return rejections.length;
+    }
+
+
+    public boolean isAccepted(int index) {
+        return rejections[index] == null;
+    }
+
+
+    public OrganizationAndPaymentsException getRejection(int index) {
+        return rejections[index];
+    }
+
+
+    public int getAcceptedCount() {
+        return rejections.length - rejectedCount;
+    }
+
+
+    public int getRejectedCount() {
+        return rejectedCount;
+    }
+}
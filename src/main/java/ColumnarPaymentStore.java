@@ -0,0 +1,290 @@
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Payment store that keeps every field in its own primitive column instead of one object per
+ * payment. Organizations are referenced by id, timestamps are kept as UTC epoch seconds plus
+ * nanos, purposes are dictionary-encoded and unique codes live off-heap in direct buffers, so
+ * the heap holds no per-payment objects for the collector to trace. {@link Payment} objects are
+ * built on demand when a query asks for one.
+ */
+public class ColumnarPaymentStore implements PaymentStore {
+
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int FIRST_ARENA_BITS = 16;
+    private static final int MAX_ARENA_BITS = 24;
+
+    private final OrganizationRegistry organizations;
+    private final StringDictionary purposes;
+
+    // Column chunks are filled once and never moved, so a prefix handed to another thread stays valid while new payments are added.
+    private int[][] senders = new int[16][];
+    private int[][] recievers = new int[16][];
+    private int[][] purposeCodes = new int[16][];
+    private long[][] epochSeconds = new long[16][];
+    private int[][] nanos = new int[16][];
+    private long[][] sums = new long[16][];
+    private long[][] codeAddresses = new long[16][];
+    private int size;
+
+    // A code is stored as its length followed by its chars; its address holds the arena index in the high half and the offset in the low half.
+    private ByteBuffer[] arenas = new ByteBuffer[8];
+    private int arenaCount;
+    private int arenaOffset;
+
+    // Open addressing from code to position + 1, with the code's hash alongside so most probes never read the arena.
+    private int[] slots = new int[1 << 10];
+    private int[] slotHashes = new int[1 << 10];
+
+
+    public ColumnarPaymentStore(OrganizationRegistry organizations, StringDictionary purposes) {
+        this.organizations = organizations;
+        this.purposes = purposes;
+    }
+
+
+    @Override
+    public boolean contains(String uniqueCode) {
+        return indexOf(uniqueCode) >= 0;
+    }
+
+
+    // -1 when no payment has the code.
+    public int indexOf(String uniqueCode) {
+        int hash = spread(uniqueCode.hashCode());
+        int mask = slots.length - 1;
+        for (int i = hash & mask; slots[i] != 0; i = (i + 1) & mask) {
+            if (slotHashes[i] == hash && codeEquals(slots[i] - 1, uniqueCode)) return slots[i] - 1;
+        }
+        return -1;
+    }
+
+
+    @Override
+    public Payment get(String uniqueCode) {
+        int position = indexOf(uniqueCode);
+        return position < 0 ? null : materialize(position, uniqueCode);
+    }
+
+
+    @Override
+    public Payment get(int position) {
+        checkPosition(position);
+        return materialize(position, getUniqueCode(position));
+    }
+
+
+    @Override
+    public String getUniqueCode(int position) {
+        checkPosition(position);
+        return readCode(arenas, codeAddresses[position >>> CHUNK_BITS][position & CHUNK_MASK]);
+    }
+
+
+    @Override
+    public long getPaymentSumMinor(int position) {
+        checkPosition(position);
+        return sums[position >>> CHUNK_BITS][position & CHUNK_MASK];
+    }
+
+
+    @Override
+    public void add(Payment payment, int purposeCode) {
+        int chunk = size >>> CHUNK_BITS;
+        int index = size & CHUNK_MASK;
+        if (index == 0) addChunk(chunk);
+        LocalDateTime paymentDateTime = payment.getPaymentDateTime();
+        senders[chunk][index] = payment.getSenderOrganization().getId();
+        recievers[chunk][index] = payment.getRecieverOrganization().getId();
+        purposeCodes[chunk][index] = purposeCode;
+        epochSeconds[chunk][index] = paymentDateTime.toEpochSecond(ZoneOffset.UTC);
+        nanos[chunk][index] = paymentDateTime.getNano();
+        sums[chunk][index] = payment.getPaymentSumMinor();
+        codeAddresses[chunk][index] = writeCode(payment.getUniqueCode());
+        if ((long) (size + 1) * 4 > (long) slots.length * 3) rehash(slots.length * 2);
+        insert(spread(payment.getUniqueCode().hashCode()), size);
+        size++;
+    }
+
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    // Organizations and purposes are captured with the prefix, so the view never reads state that is still being written; their arrays are append-only, so nothing is copied.
+    @Override
+    public List<Payment> getPayments() {
+        int prefixSize = size;
+        int[][] prefixSenders = senders;
+        int[][] prefixRecievers = recievers;
+        int[][] prefixPurposeCodes = purposeCodes;
+        long[][] prefixEpochSeconds = epochSeconds;
+        int[][] prefixNanos = nanos;
+        long[][] prefixSums = sums;
+        long[][] prefixCodeAddresses = codeAddresses;
+        ByteBuffer[] prefixArenas = arenas;
+        String[] prefixPurposes = purposes.prefix();
+        Organization[] prefixOrganizations = organizations.prefix();
+        return new AbstractList<Payment>() {
+            @Override
+            public Payment get(int position) {
+                if (position < 0 || position >= prefixSize) throw new IndexOutOfBoundsException("position " + position + ", size " + prefixSize);
+                int chunk = position >>> CHUNK_BITS;
+                int index = position & CHUNK_MASK;
+                return Payment.validated(prefixOrganizations[prefixSenders[chunk][index]], prefixOrganizations[prefixRecievers[chunk][index]],
+                        readCode(prefixArenas, prefixCodeAddresses[chunk][index]), prefixPurposes[prefixPurposeCodes[chunk][index]],
+                        LocalDateTime.ofEpochSecond(prefixEpochSeconds[chunk][index], prefixNanos[chunk][index], ZoneOffset.UTC), prefixSums[chunk][index]);
+            }
+
+            @Override
+            public int size() {
+                return prefixSize;
+            }
+        };
+    }
+
+
+    // Reads the columns in place, up to the size when iteration starts; like the other reads, for the thread that adds payments.
+    @Override
+    public Iterator<Payment> iterator() {
+        int end = size;
+        return new Iterator<Payment>() {
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                return position < end;
+            }
+
+            @Override
+            public Payment next() {
+                if (position >= end) throw new NoSuchElementException();
+                int current = position++;
+                return materialize(current, readCode(arenas, codeAddresses[current >>> CHUNK_BITS][current & CHUNK_MASK]));
+            }
+        };
+    }
+
+
+    private Payment materialize(int position, String uniqueCode) {
+        int chunk = position >>> CHUNK_BITS;
+        int index = position & CHUNK_MASK;
+        return Payment.validated(organizations.get(senders[chunk][index]), organizations.get(recievers[chunk][index]), uniqueCode,
+                purposes.decode(purposeCodes[chunk][index]), LocalDateTime.ofEpochSecond(epochSeconds[chunk][index], nanos[chunk][index], ZoneOffset.UTC), sums[chunk][index]);
+    }
+
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= size) throw new IndexOutOfBoundsException("position " + position + ", size " + size);
+    }
+
+
+    private void addChunk(int chunk) {
+        if (chunk == senders.length) {
+            int length = chunk * 2;
+            senders = Arrays.copyOf(senders, length);
+            recievers = Arrays.copyOf(recievers, length);
+            purposeCodes = Arrays.copyOf(purposeCodes, length);
+            epochSeconds = Arrays.copyOf(epochSeconds, length);
+            nanos = Arrays.copyOf(nanos, length);
+            sums = Arrays.copyOf(sums, length);
+            codeAddresses = Arrays.copyOf(codeAddresses, length);
+        }
+        senders[chunk] = new int[CHUNK_SIZE];
+        recievers[chunk] = new int[CHUNK_SIZE];
+        purposeCodes[chunk] = new int[CHUNK_SIZE];
+        epochSeconds[chunk] = new long[CHUNK_SIZE];
+        nanos[chunk] = new int[CHUNK_SIZE];
+        sums[chunk] = new long[CHUNK_SIZE];
+        codeAddresses[chunk] = new long[CHUNK_SIZE];
+    }
+
+
+    private long writeCode(String uniqueCode) {
+        int length = Integer.BYTES + Character.BYTES * uniqueCode.length();
+        if (arenaCount == 0 || arenaOffset + length > arenas[arenaCount - 1].capacity()) {
+            if (arenaCount == arenas.length) arenas = Arrays.copyOf(arenas, arenaCount * 2);
+            // Arenas start small and double, so a store with few payments does not reserve much direct memory.
+            int capacity = 1 << Math.min(FIRST_ARENA_BITS + arenaCount, MAX_ARENA_BITS);
+            arenas[arenaCount++] = ByteBuffer.allocateDirect(Math.max(capacity, length));
+            arenaOffset = 0;
+        }
+        ByteBuffer arena = arenas[arenaCount - 1];
+        arena.putInt(arenaOffset, uniqueCode.length());
+        for (int i = 0; i < uniqueCode.length(); i++) {
+            arena.putChar(arenaOffset + Integer.BYTES + Character.BYTES * i, uniqueCode.charAt(i));
+        }
+        long address = (long) (arenaCount - 1) << 32 | arenaOffset;
+        arenaOffset += length;
+        return address;
+    }
+
+
+    private static String readCode(ByteBuffer[] arenas, long address) {
+        ByteBuffer arena = arenas[(int) (address >>> 32)];
+        int offset = (int) address;
+        char[] chars = new char[arena.getInt(offset)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = arena.getChar(offset + Integer.BYTES + Character.BYTES * i);
+        }
+        return new String(chars);
+    }
+
+
+    private boolean codeEquals(int position, String uniqueCode) {
+        long address = codeAddresses[position >>> CHUNK_BITS][position & CHUNK_MASK];
+        ByteBuffer arena = arenas[(int) (address >>> 32)];
+        int offset = (int) address;
+        if (arena.getInt(offset) != uniqueCode.length()) return false;
+        for (int i = 0; i < uniqueCode.length(); i++) {
+            if (arena.getChar(offset + Integer.BYTES + Character.BYTES * i) != uniqueCode.charAt(i)) return false;
+        }
+        return true;
+    }
+
+
+    // Same value as String.hashCode, computed from the stored chars.
+    private int codeHash(int position) {
+        long address = codeAddresses[position >>> CHUNK_BITS][position & CHUNK_MASK];
+        ByteBuffer arena = arenas[(int) (address >>> 32)];
+        int offset = (int) address;
+        int hash = 0;
+        for (int i = 0, length = arena.getInt(offset); i < length; i++) {
+            hash = 31 * hash + arena.getChar(offset + Integer.BYTES + Character.BYTES * i);
+        }
+        return spread(hash);
+    }
+
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        slotHashes = new int[capacity];
+        for (int i = 0; i < size; i++) {
+            insert(codeHash(i), i);
+        }
+    }
+
+
+    private void insert(int hash, int position) {
+        int mask = slots.length - 1;
+        int i = hash & mask;
+        while (slots[i] != 0) i = (i + 1) & mask;
+        slots[i] = position + 1;
+        slotHashes[i] = hash;
+    }
+
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
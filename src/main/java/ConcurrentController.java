@@ -0,0 +1,307 @@
+import Exceptions.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ConcurrentController {
+
+    private static final int DEFAULT_STRIPES = 1024;
+
+    private final ReentrantLock[] locks;
+    // A payment is kept by the shard of the lower of its two stripes, guarded by that stripe's lock, so no index is shared between stripes.
+    private final Shard[] shards;
+    // Each shard's day totals stay within an equal share of the range, so a day's total across all shards cannot overflow.
+    private final long dayTotalLimit;
+    // Codes are claimed here before the balances change; payments are published only once they have.
+    private final Set<String> claimedCodes = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, Payment> paymentsByCode = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Organization> organizationsByName = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Organization> organizationsByRegistrationNumber = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Organization> organizations = new ConcurrentLinkedQueue<>();
+
+
+    public ConcurrentController() {
+        this(DEFAULT_STRIPES);
+    }
+
+
+    public ConcurrentController(int stripes) {
+        if (stripes < 1) throw new IllegalArgumentException("stripes must be positive");
+        int size = 1;
+        while (size < stripes) size <<= 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < locks.length; i++) locks[i] = new ReentrantLock();
+        shards = new Shard[size];
+        dayTotalLimit = Long.MAX_VALUE / size;
+    }
+
+
+    public void addPayment(String senderName, String recieverName, String uniqueCode, String paymentPurpose, LocalDateTime paymentDateTime, double paymentSum) throws OrganizationAndPaymentsException {
+        if (claimedCodes.contains(uniqueCode)) throw new DuplicatePaymentException();
+        Organization recieverOrganization = organizationsByName.get(recieverName);
+        Organization senderOrganization = organizationsByName.get(senderName);
+        if (recieverOrganization == null || senderOrganization == null) throw new OrganizationCannotBeFoundException();
+        Payment payment = new Payment(senderOrganization, recieverOrganization, uniqueCode, paymentPurpose, paymentDateTime, paymentSum);
+        if (!claimedCodes.add(uniqueCode)) throw new DuplicatePaymentException();
+
+        // Both stripes are always taken lowest index first, so two opposite payments cannot deadlock.
+        int senderStripe = stripeOf(senderName);
+        int recieverStripe = stripeOf(recieverName);
+        int firstStripe = Math.min(senderStripe, recieverStripe);
+        ReentrantLock first = locks[firstStripe];
+        ReentrantLock second = locks[Math.max(senderStripe, recieverStripe)];
+        first.lock();
+        if (second != first) second.lock();
+        try {
+            long senderBalance = Money.subtract(senderOrganization.getBalanceMinor(), payment.getPaymentSumMinor());
+            long recieverBalance = Money.add(recieverOrganization.getBalanceMinor(), payment.getPaymentSumMinor());
+            if (shards[firstStripe] == null) shards[firstStripe] = new Shard();
+            Shard shard = shards[firstStripe];
+            if (payment.getPaymentSumMinor() > dayTotalLimit - shard.dailyTotals.getTotalMinor(paymentDateTime.toLocalDate())) throw new BalanceOverflowException();
+            shard.add(payment);
+            senderOrganization.setBalanceMinor(senderBalance);
+            recieverOrganization.setBalanceMinor(recieverBalance);
+            paymentsByCode.put(uniqueCode, payment);
+        } catch (BalanceOverflowException e) {
+            claimedCodes.remove(uniqueCode);
+            throw e;
+        } finally {
+            if (second != first) second.unlock();
+            first.unlock();
+        }
+    }
+
+
+    public String getPaymentPurpose(String paymentId) throws OrganizationAndPaymentsException {
+        return findPayment(paymentId).getPaymentPurpose();
+    }
+
+
+    public LocalDateTime getPaymentDateTime(String paymentId) throws OrganizationAndPaymentsException {
+        return findPayment(paymentId).getPaymentDateTime();
+    }
+
+
+    public double getPaymentSum(String paymentId) throws OrganizationAndPaymentsException {
+        return findPayment(paymentId).getPaymentSum();
+    }
+
+
+    public String getSenderName(String paymentId) throws OrganizationAndPaymentsException {
+        return findPayment(paymentId).getSenderOrganization().getOrganizationName();
+    }
+
+
+    public String getRecieverName(String paymentId) throws OrganizationAndPaymentsException {
+        return findPayment(paymentId).getRecieverOrganization().getOrganizationName();
+    }
+
+
+    public void addOrganization(String name, String registrationNumber, double initialBalance) throws OrganizationAndPaymentsException {
+        synchronized (organizations) {
+            if (organizationsByName.containsKey(name)) throw new DuplicateOrganizationException();
+            if (organizationsByRegistrationNumber.containsKey(registrationNumber)) throw new DuplicateRegistrationNumberException();
+            Organization organization = new Organization(name, registrationNumber, initialBalance);
+            organizations.add(organization);
+            organizationsByRegistrationNumber.put(registrationNumber, organization);
+            organizationsByName.put(name, organization);
+        }
+    }
+
+
+    public String getRegistrationNumber(String organizationName) throws OrganizationAndPaymentsException {
+        return findOrganization(organizationName).getRegistrationNumber();
+    }
+
+
+    public double getBalance(String organizationName) throws OrganizationAndPaymentsException {
+        return Money.toDouble(balanceOf(findOrganization(organizationName)));
+    }
+
+
+    // Equal sums in different shards come in shard order rather than the order they were added.
+    public String getIdOfBiggestPayment() {
+        Payment biggest = null;
+        for (int i = 0; i < locks.length; i++) {
+            Payment candidate;
+            locks[i].lock();
+            try {
+                candidate = shards[i] == null ? null : shards[i].getBiggest();
+            } finally {
+                locks[i].unlock();
+            }
+            if (candidate != null && (biggest == null || candidate.getPaymentSumMinor() > biggest.getPaymentSumMinor())) biggest = candidate;
+        }
+        return biggest == null ? null : biggest.getUniqueCode();
+    }
+
+
+    // Each shard's best k, merged; equal sums in different shards come in shard order.
+    public ArrayList<String> getTopPayments(int k) {
+        if (k < 0) throw new IllegalArgumentException("k must not be negative");
+        ArrayList<Payment> candidates = new ArrayList<>();
+        for (int i = 0; i < locks.length; i++) {
+            candidates.addAll(topOfShard(i, k));
+        }
+        ArrayList<String> topPaymentIds = new ArrayList<>();
+        for (int position : TopPayments.selectTop(k, candidates.size(), i -> candidates.get(i).getPaymentSumMinor())) {
+            topPaymentIds.add(candidates.get(position).getUniqueCode());
+        }
+        return topPaymentIds;
+    }
+
+
+    // Equal totals go to the earlier day.
+    public LocalDate getDateWithBiggestTotalPayments() {
+        HashMap<LocalDate, long[]> totals = new HashMap<>();
+        for (int i = 0; i < locks.length; i++) {
+            locks[i].lock();
+            try {
+                // Shard totals are capped at an equal share of the range, so their sum cannot overflow.
+                if (shards[i] != null) shards[i].dailyTotals.forEachTotal((date, total) -> {
+                    long[] sum = totals.computeIfAbsent(date, d -> new long[1]);
+                    sum[0] = Math.addExact(sum[0], total);
+                });
+            } finally {
+                locks[i].unlock();
+            }
+        }
+        LocalDate biggestDate = null;
+        long biggestTotal = 0;
+        for (Map.Entry<LocalDate, long[]> x : totals.entrySet()) {
+            long total = x.getValue()[0];
+            if (total > biggestTotal || total == biggestTotal && biggestDate != null && x.getKey().isBefore(biggestDate)) {
+                biggestDate = x.getKey();
+                biggestTotal = total;
+            }
+        }
+        return biggestDate;
+    }
+
+
+    public HashMap<String, Double> getFinalBalances() {
+        HashMap<String, Double> currentBalanceMap = new HashMap<>();
+        for (Organization x : organizations) {
+            currentBalanceMap.put(x.getOrganizationName(), Money.toDouble(balanceOf(x)));
+        }
+        return currentBalanceMap;
+    }
+
+
+    public void forEachBalance(BalanceConsumer consumer) {
+        for (Organization x : organizations) {
+            consumer.accept(x.getOrganizationName(), balanceOf(x));
+        }
+    }
+
+
+    public ArrayList<String> getOrganizationsWithNegativeSaldo() {
+        ArrayList<String> negativeBalanceList = new ArrayList<>();
+        for (Organization x : organizations) {
+            if (balanceOf(x) < 0) negativeBalanceList.add(x.getOrganizationName());
+        }
+        return negativeBalanceList;
+    }
+
+
+    private long balanceOf(Organization organization) {
+        ReentrantLock lock = locks[stripeOf(organization.getOrganizationName())];
+        lock.lock();
+        try {
+            return organization.getBalanceMinor();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    // Beyond what the shard's index keeps, the selection runs on a prefix taken under the lock, so writers do not wait for it.
+    private List<Payment> topOfShard(int stripe, int k) {
+        Payment[] prefix;
+        int count;
+        locks[stripe].lock();
+        try {
+            Shard shard = shards[stripe];
+            if (shard == null) return Collections.emptyList();
+            if (k <= shard.topPayments.getCapacity() || shard.size <= shard.topPayments.getCapacity()) return shard.get(shard.topPayments.getTop(k, shard.size, shard::getPaymentSumMinor));
+            prefix = shard.payments;
+            count = shard.size;
+        } finally {
+            locks[stripe].unlock();
+        }
+        int[] positions = TopPayments.selectTop(k, count, i -> prefix[i].getPaymentSumMinor());
+        ArrayList<Payment> top = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            top.add(prefix[position]);
+        }
+        return top;
+    }
+
+
+    private int stripeOf(String organizationName) {
+        int h = organizationName.hashCode();
+        return (h ^ (h >>> 16)) & (locks.length - 1);
+    }
+
+
+    private Payment findPayment(String paymentId) throws OrganizationAndPaymentsException {
+        Payment payment = paymentsByCode.get(paymentId);
+        if (payment == null) throw new PaymentCannotBeFoundException();
+        return payment;
+    }
+
+
+    private Organization findOrganization(String organizationName) throws OrganizationAndPaymentsException {
+        Organization organization = organizationsByName.get(organizationName);
+        if (organization == null) throw new OrganizationCannotBeFoundException();
+        return organization;
+    }
+
+
+    // Payments appended under one stripe's lock. A slot is never written again once filled, and growth copies to a new array, so a prefix read under the lock stays valid after it is released.
+    private static final class Shard {
+
+        final TopPayments topPayments = new TopPayments();
+        final DailyTotals dailyTotals = new DailyTotals();
+        Payment[] payments = new Payment[16];
+        int size;
+
+
+        // The totals go first, and they reject a payment before anything changes.
+        void add(Payment payment) throws BalanceOverflowException {
+            dailyTotals.add(payment.getPaymentDateTime(), payment.getPaymentSumMinor());
+            topPayments.add(size, payment.getPaymentSumMinor());
+            if (size == payments.length) payments = Arrays.copyOf(payments, size * 2);
+            payments[size++] = payment;
+        }
+
+
+        long getPaymentSumMinor(int position) {
+            return payments[position].getPaymentSumMinor();
+        }
+
+
+        Payment getBiggest() {
+            int biggest = topPayments.getBiggest();
+            return biggest < 0 ? null : payments[biggest];
+        }
+
+
+        List<Payment> get(int[] positions) {
+            ArrayList<Payment> selected = new ArrayList<>(positions.length);
+            for (int position : positions) {
+                selected.add(payments[position]);
+            }
+            return selected;
+        }
+    }
+}
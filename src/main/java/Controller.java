@@ -1,11 +1,31 @@
 import Exceptions.*;
+import javax.management.JMException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
-
-public class Controller {
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+
+public class Controller implements Closeable {
 
 
     public enum Found {
@@ -15,185 +35,861 @@ public class Controller {
     }
 
 
-    private ArrayList<Payment> payments = new ArrayList<>();
-    private ArrayList<Organization> organizations = new ArrayList<>();
+    private OrganizationRegistry organizations = new OrganizationRegistry();
+    private StringDictionary purposes = new StringDictionary();
+    private PaymentStore payments;
+    private PurposeTotals purposeTotals = new PurposeTotals();
+    private TimeIndex timeIndex = new TimeIndex();
+    private PaymentHistory history = new PaymentHistory();
+    private DailyTotals dailyTotals = new DailyTotals();
+    private TopPayments topPayments = new TopPayments();
+    private PaymentIdFilter idFilter;
+    // While idFilter is over capacity: its larger replacement, filled from the store a slice per payment. idFilter keeps answering until it is complete.
+    private PaymentIdFilter nextIdFilter;
+    private int nextIdFilterPosition;
+    private IdempotencyWindow idempotencyWindow;
+    private NegativeBalances negativeBalances = new NegativeBalances();
+    private BalanceCrossingListener balanceCrossingListener;
+    private PaymentJournal journal;
+    private boolean synchronousCommit;
+    private long journalFirstSequence;
+    private Path directory;
+    private ExecutorService snapshotExecutor;
+    private final BalanceVersions balanceVersions = new BalanceVersions();
+    private volatile BalanceSnapshot balanceSnapshot = balanceVersions.publish();
+    private final ControllerMetrics metrics = new ControllerMetrics(() -> payments.size(), () -> organizations.size(), () -> purposes.size());
+
+    private static final int ID_FILTER_GROWTH_SLICE = 4;
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+
+    public Controller() {
+        this(PaymentStorage.HEAP);
+    }
 
 
-    public void addPayment(String senderName, String recieverName, String uniqueCode, String paymentPurpose, LocalDateTime paymentDateTime, double paymentSum) throws OrganizationAndPaymentsException {
-        Found organizationFound = Found.FALSE;
-        Organization senderOrganization = null;
-        Organization recieverOrganization = null;
-        for (Payment x : payments) {
-            if (x.getUniqueCode().equals(uniqueCode)) throw new DuplicatePaymentException();
+    public Controller(PaymentStorage storage) {
+        payments = storage.create(organizations, purposes);
+    }
+
+
+    private Controller(ControllerSnapshot snapshot, PaymentStorage storage) throws BalanceOverflowException {
+        this(storage);
+        for (Organization x : snapshot.getOrganizations()) {
+            organizations.add(x);
+            balanceVersions.add(x.getId(), x.getOrganizationName(), x.getBalanceMinor());
+            if (x.getBalanceMinor() < 0) negativeBalances.add(x.getId());
+        }
+        for (Payment x : snapshot.getPayments()) {
+            timeIndex.add(x.getPaymentDateTime(), payments.size(), x.getPaymentSumMinor());
+            history.add(x.getSenderOrganization().getId(), x.getRecieverOrganization().getId(), payments.size());
+            payments.add(x, registerPurpose(x));
         }
-        for (Organization x : organizations) {
-            if (x.getOrganizationName().equals(recieverName)) {
-                organizationFound = Found.HALFTRUE;
-                recieverOrganization = x;
-                x.setBalance(x.getBalance()+paymentSum);
-                break;
+        dailyTotals = snapshot.getDailyTotals();
+        topPayments = snapshot.getTopPayments();
+        idFilter = snapshot.getIdFilter();
+        publishBalances();
+    }
+
+
+    /**
+     * Loads the latest snapshot in the directory, if any, and replays only the journal records written after it.
+     * From then on every accepted change is journaled there. By default a change is acknowledged once it is in the
+     * journal's buffer, and the buffer is fsynced in groups, so a crash can lose what was acknowledged in the last
+     * {@link PaymentJournal#DEFAULT_GROUP_COMMIT_MILLIS} ms; see {@link #setSynchronousCommit(boolean)}.
+     */
+    public static Controller open(Path directory) throws IOException {
+        return open(directory, PaymentStorage.HEAP);
+    }
+
+
+    public static Controller open(Path directory, PaymentStorage storage) throws IOException {
+        Files.createDirectories(directory);
+        TreeMap<Long, Path> snapshots = listFiles(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        TreeMap<Long, Path> segments = listFiles(directory, JOURNAL_PREFIX, JOURNAL_SUFFIX);
+        Controller controller = new Controller(storage);
+        long sequence = 0;
+        if (!snapshots.isEmpty()) {
+            ControllerSnapshot snapshot = ControllerSnapshot.read(snapshots.lastEntry().getValue());
+            try {
+                controller = new Controller(snapshot, storage);
+            } catch (BalanceOverflowException e) {
+                throw new IOException("snapshot restore failed", e);
             }
+            sequence = snapshot.getLastSequence();
+        }
+        JournalReplay replay = controller.new JournalReplay();
+        Map.Entry<Long, Path> active = segments.pollLastEntry();
+        for (Map.Entry<Long, Path> x : segments.entrySet()) {
+            Long next = segments.higherKey(x.getKey());
+            if (next == null ? active.getKey() <= sequence + 1 : next <= sequence + 1) continue;
+            checkContiguous(sequence, x.getKey());
+            sequence = PaymentJournal.replay(x.getValue(), sequence, replay);
         }
-        for (Organization x : organizations) {
-            if (x.getOrganizationName().equals(senderName) && organizationFound == Found.HALFTRUE) {
-                senderOrganization = x;
-                organizationFound = Found.TRUE;
-                x.setBalance(x.getBalance()-paymentSum);
-                break;
+        if (active != null) checkContiguous(sequence, active.getKey());
+        long activeFirstSequence = active == null ? sequence + 1 : active.getKey();
+        Path activeFile = active == null ? directory.resolve(segmentName(activeFirstSequence)) : active.getValue();
+        controller.journal = PaymentJournal.open(activeFile, sequence, replay);
+        controller.journalFirstSequence = activeFirstSequence;
+        controller.directory = directory;
+        controller.publishBalances();
+        return controller;
+    }
+
+
+    /**
+     * Captures the current state and writes it to a new snapshot on a background thread.
+     * The journal is rolled to a fresh segment at the capture point; once the snapshot is on disk,
+     * older segments and snapshots are deleted.
+     */
+    public CompletableFuture<Path> snapshot() throws IOException {
+        long start = metrics.start();
+        try {
+            if (journal == null) throw new IllegalStateException("controller was not opened from a data directory");
+            List<Organization> capturedOrganizations = new ArrayList<>(organizations.getOrganizations());
+            long sequence = journal.getLastSequence();
+            ControllerSnapshot snapshot = new ControllerSnapshot(sequence, capturedOrganizations, captureBalances(capturedOrganizations), payments.getPayments(), dailyTotals.copy(), topPayments.copy(), idFilter == null ? null : idFilter.copy());
+            if (journalFirstSequence <= sequence) {
+                journal.close();
+                journal = PaymentJournal.open(directory.resolve(segmentName(sequence + 1)), sequence, null);
+                journalFirstSequence = sequence + 1;
+            }
+            if (snapshotExecutor == null) {
+                snapshotExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "controller-snapshot-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
             }
+            Path snapshotDirectory = directory;
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    Path file = snapshotDirectory.resolve(String.format("%s%019d%s", SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+                    snapshot.write(file);
+                    for (Map.Entry<Long, Path> x : listFiles(snapshotDirectory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).headMap(sequence).entrySet()) {
+                        Files.deleteIfExists(x.getValue());
+                    }
+                    for (Map.Entry<Long, Path> x : listFiles(snapshotDirectory, JOURNAL_PREFIX, JOURNAL_SUFFIX).headMap(sequence, true).entrySet()) {
+                        Files.deleteIfExists(x.getValue());
+                    }
+                    return file;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, snapshotExecutor);
+        } finally {
+            metrics.record(ControllerMetrics.Operation.SNAPSHOT, start);
         }
-        if (organizationFound != Found.TRUE) throw new OrganizationCannotBeFoundException();
-        payments.add(new Payment(senderOrganization, recieverOrganization, uniqueCode, paymentPurpose, paymentDateTime, paymentSum));
     }
 
 
-    public String getPaymentPurpose(String paymentId) throws OrganizationAndPaymentsException {
-        String paymentPurpose = null;
-        boolean paymentFound = false;
-        for (Payment x : payments) {
-            if (x.getUniqueCode().equals(paymentId)) {
-                paymentPurpose = x.getPaymentPurpose();
-                paymentFound = true;
+    // Captures balances and payments as they are now, for streaming out from any thread; see ControllerExport.
+    public ControllerExport export() {
+        long start = metrics.start();
+        try {
+            List<Organization> capturedOrganizations = new ArrayList<>(organizations.getOrganizations());
+            return new ControllerExport(capturedOrganizations, captureBalances(capturedOrganizations), payments.getPayments(), purposes.toArray());
+        } finally {
+            metrics.record(ControllerMetrics.Operation.EXPORT, start);
+        }
+    }
+
+
+    public void addPayment(String senderName, String recieverName, String uniqueCode, String paymentPurpose, LocalDateTime paymentDateTime, double paymentSum) throws OrganizationAndPaymentsException {
+        long start = metrics.start();
+        try {
+            PaymentStatus status = applyPayment(senderName, recieverName, uniqueCode, paymentPurpose, paymentDateTime, paymentSum);
+            if (status != PaymentStatus.ACCEPTED) {
+                metrics.rejected(status);
+                throw status.newException();
             }
+        } finally {
+            publishBalances();
+            metrics.record(ControllerMetrics.Operation.ADD_PAYMENT, start);
         }
-        if (!paymentFound) throw new PaymentCannotBeFoundException();
-        return paymentPurpose;
     }
 
 
-    public LocalDateTime getPaymentDateTime(String paymentId) throws OrganizationAndPaymentsException {
-        LocalDateTime date = null;
-        boolean checker = false;
-        for (Payment x : payments) {
-            if (x.getUniqueCode().equals(paymentId)) {
-                date = x.getPaymentDateTime();
-                checker = true;
+    // Same checks and effects as addPayment, but a rejection is reported as a status code and allocates nothing.
+    public PaymentStatus tryAddPayment(String senderName, String recieverName, String uniqueCode, String paymentPurpose, LocalDateTime paymentDateTime, double paymentSum) {
+        long start = metrics.start();
+        try {
+            PaymentStatus status = applyPayment(senderName, recieverName, uniqueCode, paymentPurpose, paymentDateTime, paymentSum);
+            if (status != PaymentStatus.ACCEPTED) metrics.rejected(status);
+            return status;
+        } finally {
+            publishBalances();
+            metrics.record(ControllerMetrics.Operation.TRY_ADD_PAYMENT, start);
+        }
+    }
+
+
+    public BatchResult addPayments(Collection<PaymentRequest> requests) {
+        long start = metrics.start();
+        try {
+            OrganizationAndPaymentsException[] rejections = new OrganizationAndPaymentsException[requests.size()];
+            ArrayList<Payment> accepted = new ArrayList<>(requests.size());
+            HashSet<String> acceptedCodes = new HashSet<>();
+            IdentityHashMap<Organization, long[]> balances = new IdentityHashMap<>();
+            HashMap<LocalDate, long[]> dayTotals = new HashMap<>();
+            HashMap<String, long[]> purposeTotalsByPurpose = new HashMap<>();
+            int index = 0;
+            for (PaymentRequest x : requests) {
+                try {
+                    String uniqueCode = x.getUniqueCode();
+                    if (acceptedCodes.contains(uniqueCode)) throw new DuplicatePaymentException();
+                    long paymentSumMinor = Payment.toMinorUnits(x.getPaymentSum());
+                    PaymentStatus previous = idempotencyWindow == null ? null : idempotencyWindow.check(x.getSenderName(), x.getRecieverName(), uniqueCode, x.getPaymentPurpose(), x.getPaymentDateTime(), paymentSumMinor);
+                    // A retry of a remembered payment succeeds again without being applied twice.
+                    if (previous == PaymentStatus.ACCEPTED) {
+                        index++;
+                        continue;
+                    }
+                    if (previous != null) throw previous.newException();
+                    Payment payment = newPayment(x.getSenderName(), x.getRecieverName(), uniqueCode, x.getPaymentPurpose(), x.getPaymentDateTime(), paymentSumMinor);
+                    long[] recieverBalance = balances.computeIfAbsent(payment.getRecieverOrganization(), organization -> new long[]{organization.getBalanceMinor(), organization.getBalanceMinor()});
+                    long[] senderBalance = balances.computeIfAbsent(payment.getSenderOrganization(), organization -> new long[]{organization.getBalanceMinor(), organization.getBalanceMinor()});
+                    long newRecieverBalance = Money.add(recieverBalance[0], payment.getPaymentSumMinor());
+                    long newSenderBalance = Money.subtract(senderBalance[0], payment.getPaymentSumMinor());
+                    long[] dayTotal = dayTotals.computeIfAbsent(payment.getPaymentDateTime().toLocalDate(), date -> new long[]{dailyTotals.getTotalMinor(date)});
+                    long newDayTotal = Money.add(dayTotal[0], payment.getPaymentSumMinor());
+                    long[] purposeTotal = purposeTotalsByPurpose.computeIfAbsent(payment.getPaymentPurpose(), purpose -> new long[]{purposeTotals.getTotalMinor(purposes.find(purpose))});
+                    long newPurposeTotal = Money.add(purposeTotal[0], payment.getPaymentSumMinor());
+                    recieverBalance[0] = newRecieverBalance;
+                    senderBalance[0] = newSenderBalance;
+                    dayTotal[0] = newDayTotal;
+                    purposeTotal[0] = newPurposeTotal;
+                    acceptedCodes.add(uniqueCode);
+                    accepted.add(payment);
+                } catch (OrganizationAndPaymentsException e) {
+                    rejections[index] = e;
+                }
+                index++;
+            }
+            for (Payment x : accepted) {
+                journal(x);
+            }
+            commitJournal();
+            for (Map.Entry<Organization, long[]> x : balances.entrySet()) {
+                setBalance(x.getKey(), x.getValue()[0]);
+            }
+            for (Payment x : accepted) {
+                registerAccepted(x);
+                if (idempotencyWindow != null) idempotencyWindow.remember(x);
+            }
+            // Only net crossings are reported: a balance that dips below zero and recovers within the batch was never visible.
+            for (Map.Entry<Organization, long[]> x : balances.entrySet()) {
+                notifyCrossing(x.getKey(), x.getValue()[1]);
             }
+            for (OrganizationAndPaymentsException x : rejections) {
+                if (x != null) metrics.rejected(x);
+            }
+            return new BatchResult(rejections);
+        } finally {
+            publishBalances();
+            metrics.record(ControllerMetrics.Operation.ADD_PAYMENTS, start);
+        }
+    }
+
+
+    public String getPaymentPurpose(String paymentId) throws OrganizationAndPaymentsException {
+        long start = metrics.start();
+        try {
+            return findPayment(paymentId).getPaymentPurpose();
+        } finally {
+            metrics.record(ControllerMetrics.Operation.GET_PAYMENT_PURPOSE, start);
+        }
+    }
+
+
+    public LocalDateTime getPaymentDateTime(String paymentId) throws OrganizationAndPaymentsException {
+        long start = metrics.start();
+        try {
+            return findPayment(paymentId).getPaymentDateTime();
+        } finally {
+            metrics.record(ControllerMetrics.Operation.GET_PAYMENT_DATE_TIME, start);
         }
-        if (!checker) throw new PaymentCannotBeFoundException();
-        return date;
     }
 
 
     public double getPaymentSum(String paymentId) throws OrganizationAndPaymentsException {
-        double sum = 0;
-        boolean paymentFound = false;
-        for (Payment x : payments) {
-            if (x.getUniqueCode().equals(paymentId)) {
-                sum = x.getPaymentSum();
-                paymentFound = true;
-            }
+        long start = metrics.start();
+        try {
+            return findPayment(paymentId).getPaymentSum();
+        } finally {
+            metrics.record(ControllerMetrics.Operation.GET_PAYMENT_SUM, start);
         }
-        if (!paymentFound) throw new PaymentCannotBeFoundException();
-        return sum;
     }
 
 
     public String getSenderName(String paymentId) throws OrganizationAndPaymentsException {
-        String senderName = null;
-        boolean paymentFound = false;
-        for (Payment x : payments) {
-            if (x.getUniqueCode().equals(paymentId)) {
-                senderName = x.getSenderOrganization().getOrganizationName();
-                paymentFound = true;
-            }
+        long start = metrics.start();
+        try {
+            return findPayment(paymentId).getSenderOrganization().getOrganizationName();
+        } finally {
+            metrics.record(ControllerMetrics.Operation.GET_SENDER_NAME, start);
         }
-        if (!paymentFound) throw new PaymentCannotBeFoundException();
-        return senderName;
     }
 
 
     public String getRecieverName(String paymentId) throws OrganizationAndPaymentsException {
-        String recieverName = null;
-        boolean paymentFound = false;
-        for (Payment x : payments) {
-            if (x.getUniqueCode().equals(paymentId)) {
-                recieverName = x.getRecieverOrganization().getOrganizationName();
-                paymentFound = true;
-            }
+        long start = metrics.start();
+        try {
+            return findPayment(paymentId).getRecieverOrganization().getOrganizationName();
+        } finally {
+            metrics.record(ControllerMetrics.Operation.GET_RECIEVER_NAME, start);
         }
-        if (!paymentFound) throw new PaymentCannotBeFoundException();
-        return recieverName;
     }
 
 
     public void addOrganization(String name, String registrationNumber, double initialBalance) throws OrganizationAndPaymentsException {
-        for (Organization x : organizations) {
-            if (x.getOrganizationName().equals(name)) throw new DuplicateOrganizationException();
-            else if (x.getRegistrationNumber().equals(registrationNumber)) throw new DuplicateRegistrationNumberException();
+        long start = metrics.start();
+        try {
+            if (organizations.getByName(name) != null) throw metrics.rejected(new DuplicateOrganizationException());
+            if (organizations.getByRegistrationNumber(registrationNumber) != null) throw metrics.rejected(new DuplicateRegistrationNumberException());
+            Organization organization;
+            try {
+                organization = new Organization(name, registrationNumber, initialBalance);
+            } catch (OrganizationAndPaymentsException e) {
+                throw metrics.rejected(e);
+            }
+            register(organization);
+            notifyCrossing(organization, 0);
+        } finally {
+            publishBalances();
+            metrics.record(ControllerMetrics.Operation.ADD_ORGANIZATION, start);
         }
-        organizations.add(new Organization(name, registrationNumber, initialBalance));
-
     }
 
 
     public String getRegistrationNumber(String organizationName) throws OrganizationAndPaymentsException {
-        for (Organization x : organizations) {
-            if (x.getOrganizationName().equals(organizationName)) return x.getRegistrationNumber();
+        long start = metrics.start();
+        try {
+            return findOrganization(organizationName).getRegistrationNumber();
+        } finally {
+            metrics.record(ControllerMetrics.Operation.GET_REGISTRATION_NUMBER, start);
         }
-        throw new OrganizationCannotBeFoundException();
-
     }
 
 
     public double getBalance(String organizationName) throws OrganizationAndPaymentsException {
-        for (Organization x : organizations) {
-            if (x.getOrganizationName().equals(organizationName)) return x.getBalance();
+        long start = metrics.start();
+        try {
+            return findOrganization(organizationName).getBalance();
+        } finally {
+            metrics.record(ControllerMetrics.Operation.GET_BALANCE, start);
         }
-        throw new OrganizationCannotBeFoundException();
     }
 
 
     public String getIdOfBiggestPayment() {
-        double highestPayment = 0;
-        String paymentId = null;
-        for (Payment x : payments) {
-            if (x.getPaymentSum() > highestPayment) {
-                highestPayment = x.getPaymentSum();
-                paymentId = x.getUniqueCode();
+        long start = metrics.start();
+        try {
+            int position = topPayments.getBiggest();
+            return position < 0 ? null : payments.getUniqueCode(position);
+        } finally {
+            metrics.record(ControllerMetrics.Operation.GET_ID_OF_BIGGEST_PAYMENT, start);
+        }
+    }
+
+
+    public ArrayList<String> getTopPayments(int k) {
+        long start = metrics.start();
+        try {
+            ArrayList<String> topPaymentIds = new ArrayList<>();
+            for (int position : topPayments.getTop(k, payments)) {
+                topPaymentIds.add(payments.getUniqueCode(position));
             }
+            return topPaymentIds;
+        } finally {
+            metrics.record(ControllerMetrics.Operation.GET_TOP_PAYMENTS, start);
         }
-        return paymentId;
     }
 
 
     public LocalDate getDateWithBiggestTotalPayments() {
-        double totalPayments = 0;
-        double biggestTotalPayment = 0;
-        LocalDate biggestTotalPaymentDate = null;
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        for(Payment x : payments) {
-            for(Payment y: payments){
-                if(formatter.format(x.getPaymentDateTime()).equals(formatter.format(y.getPaymentDateTime()))){
-                    totalPayments += x.getPaymentSum();
-                }
+        long start = metrics.start();
+        try {
+            return dailyTotals.getDateWithBiggestTotal();
+        } finally {
+            metrics.record(ControllerMetrics.Operation.GET_DATE_WITH_BIGGEST_TOTAL_PAYMENTS, start);
+        }
+    }
+
+
+    // Ids of the payments made from (inclusive) to (exclusive), ordered by payment time.
+    public ArrayList<String> getPayments(LocalDateTime from, LocalDateTime to) {
+        long start = metrics.start();
+        try {
+            if (from.isAfter(to)) throw new IllegalArgumentException("from must not be after to");
+            int[] positions = timeIndex.getPositions(from, to);
+            ArrayList<String> paymentIds = new ArrayList<>(positions.length);
+            for (int position : positions) {
+                paymentIds.add(payments.getUniqueCode(position));
             }
-            if(totalPayments > biggestTotalPayment) {
-                biggestTotalPayment = totalPayments;
-                biggestTotalPaymentDate = x.getPaymentDateTime().toLocalDate();
+            return paymentIds;
+        } finally {
+            metrics.record(ControllerMetrics.Operation.GET_PAYMENTS, start);
+        }
+    }
+
+
+    public double getTotal(LocalDateTime from, LocalDateTime to) throws BalanceOverflowException {
+        long start = metrics.start();
+        try {
+            if (from.isAfter(to)) throw new IllegalArgumentException("from must not be after to");
+            return Money.toDouble(timeIndex.getTotalMinor(from, to));
+        } finally {
+            metrics.record(ControllerMetrics.Operation.GET_TOTAL, start);
+        }
+    }
+
+
+    // Payments the organization sent, oldest first, starting at the cursor; the first page starts at 0.
+    public PaymentPage getOutgoingPayments(String organizationName, int cursor, int limit) throws OrganizationAndPaymentsException {
+        long start = metrics.start();
+        try {
+            checkPage(cursor, limit);
+            int id = findOrganization(organizationName).getId();
+            return toPage(history.getOutgoing(id, cursor, limit), cursor, history.getOutgoingCount(id));
+        } finally {
+            metrics.record(ControllerMetrics.Operation.GET_OUTGOING_PAYMENTS, start);
+        }
+    }
+
+
+    public PaymentPage getIncomingPayments(String organizationName, int cursor, int limit) throws OrganizationAndPaymentsException {
+        long start = metrics.start();
+        try {
+            checkPage(cursor, limit);
+            int id = findOrganization(organizationName).getId();
+            return toPage(history.getIncoming(id, cursor, limit), cursor, history.getIncomingCount(id));
+        } finally {
+            metrics.record(ControllerMetrics.Operation.GET_INCOMING_PAYMENTS, start);
+        }
+    }
+
+
+    /**
+     * Groups the payments accepted so far that pass the filter and reduces each group with the collector,
+     * splitting the work across the common fork-join pool. Meant for ad-hoc questions no index answers,
+     * such as the count of large payments per receiver.
+     */
+    public <K, R> HashMap<K, R> aggregate(Predicate<? super Payment> filter, Function<? super Payment, ? extends K> groupingKey, Collector<? super Payment, ?, R> reducer) {
+        return aggregate(filter, groupingKey, reducer, ForkJoinPool.commonPool());
+    }
+
+
+    public <K, R> HashMap<K, R> aggregate(Predicate<? super Payment> filter, Function<? super Payment, ? extends K> groupingKey, Collector<? super Payment, ?, R> reducer, ForkJoinPool pool) {
+        long start = metrics.start();
+        try {
+            return PaymentAggregator.aggregate(payments.getPayments(), filter, groupingKey, reducer, pool);
+        } finally {
+            metrics.record(ControllerMetrics.Operation.AGGREGATE, start);
+        }
+    }
+
+
+    public double getTotalByPurpose(String paymentPurpose) {
+        long start = metrics.start();
+        try {
+            return Money.toDouble(purposeTotals.getTotalMinor(purposes.find(paymentPurpose)));
+        } finally {
+            metrics.record(ControllerMetrics.Operation.GET_TOTAL_BY_PURPOSE, start);
+        }
+    }
+
+
+    public HashMap<String, Double> getTotalsByPurpose() {
+        long start = metrics.start();
+        try {
+            HashMap<String, Double> totals = new HashMap<>();
+            for (int i = 0; i < purposes.size(); i++) {
+                totals.put(purposes.decode(i), Money.toDouble(purposeTotals.getTotalMinor(i)));
             }
-            totalPayments = 0;
+            return totals;
+        } finally {
+            metrics.record(ControllerMetrics.Operation.GET_TOTALS_BY_PURPOSE, start);
         }
-        return biggestTotalPaymentDate;
     }
 
 
     public HashMap<String, Double> getFinalBalances() {
-        HashMap<String, Double> currentBalanceMap = new HashMap<>();
-        for (Organization x : organizations) {
-            currentBalanceMap.put(x.getOrganizationName(), x.getBalance());
+        long start = metrics.start();
+        try {
+            HashMap<String, Double> currentBalanceMap = new HashMap<>();
+            for (Organization x : organizations) {
+                currentBalanceMap.put(x.getOrganizationName(), x.getBalance());
+            }
+            return currentBalanceMap;
+        } finally {
+            metrics.record(ControllerMetrics.Operation.GET_FINAL_BALANCES, start);
+        }
+    }
+
+
+    public void forEachBalance(BalanceConsumer consumer) {
+        long start = metrics.start();
+        try {
+            for (Organization x : organizations) {
+                consumer.accept(x.getOrganizationName(), x.getBalanceMinor());
+            }
+        } finally {
+            metrics.record(ControllerMetrics.Operation.FOR_EACH_BALANCE, start);
         }
-        return currentBalanceMap;
     }
 
 
     public ArrayList<String> getOrganizationsWithNegativeSaldo() {
-        ArrayList<String> negativeBalanceList = new ArrayList<>();
-        for (Organization x : organizations) {
-            if (x.getBalance() < 0) negativeBalanceList.add(x.getOrganizationName());
+        long start = metrics.start();
+        try {
+            int[] ids = negativeBalances.toArray();
+            ArrayList<String> negativeBalanceList = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                negativeBalanceList.add(organizations.get(id).getOrganizationName());
+            }
+            return negativeBalanceList;
+        } finally {
+            metrics.record(ControllerMetrics.Operation.GET_ORGANIZATIONS_WITH_NEGATIVE_SALDO, start);
         }
-        return negativeBalanceList;
     }
-}
 
 
+    /**
+     * The balances as of the last accepted change, tagged with its sequence number. Unlike the other
+     * methods this one may be called from any thread while the controller is being written to, and
+     * the view it returns never changes. It neither locks nor waits: a caller that arrives while a
+     * change is being applied gets the view published just before that change.
+     */
+    public BalanceSnapshot getBalanceSnapshot() {
+        return balanceSnapshot;
+    }
+
+
+    public ControllerMetrics getMetrics() {
+        return metrics;
+    }
+
+
+    /**
+     * Puts a Bloom filter of payment codes in front of the duplicate check, for stores whose exact index is
+     * costly to probe. It adds a hash and a cache miss to every accepted payment, so it is off by default.
+     * Once enabled it is written with every snapshot and comes back enabled when the directory is opened again.
+     * Enabling it adds every stored code in this call; after that it grows a few codes per payment.
+     */
+    public void setPaymentIdFilterEnabled(boolean enabled) {
+        if (enabled == (idFilter != null)) return;
+        idFilter = null;
+        nextIdFilter = null;
+        if (enabled) {
+            idFilter = newIdFilter();
+            for (int i = 0; i < payments.size(); i++) {
+                idFilter.add(payments.getUniqueCode(i));
+            }
+        }
+    }
+
+
+    public boolean isPaymentIdFilterEnabled() {
+        return idFilter != null;
+    }
+
+
+    // When on, a payment, batch or organization is fsynced to the journal before the call returns: nothing acknowledged is lost in a crash, at one fsync per call.
+    public void setSynchronousCommit(boolean synchronousCommit) {
+        this.synchronousCommit = synchronousCommit;
+    }
+
+
+    public boolean isSynchronousCommit() {
+        return synchronousCommit;
+    }
+
+
+    // Replaces the current window; null removes it. Payments accepted by addPayment, tryAddPayment and addPayments are all remembered.
+    public void setIdempotencyWindow(IdempotencyWindow window) {
+        idempotencyWindow = window;
+    }
+
+
+    // Replaces the current listener; null removes it. Organizations added with a negative balance count as a crossing.
+    public void setBalanceCrossingListener(BalanceCrossingListener listener) {
+        balanceCrossingListener = listener;
+    }
+
+
+    private PaymentStatus applyPayment(String senderName, String recieverName, String uniqueCode, String paymentPurpose, LocalDateTime paymentDateTime, double paymentSum) {
+        long paymentSumMinor = Payment.toMinorUnits(paymentSum);
+        if (idempotencyWindow != null) {
+            PaymentStatus previous = idempotencyWindow.check(senderName, recieverName, uniqueCode, paymentPurpose, paymentDateTime, paymentSumMinor);
+            if (previous != null) return previous;
+        }
+        if (isDuplicate(uniqueCode)) return PaymentStatus.DUPLICATE_PAYMENT;
+        Organization recieverOrganization = organizations.getByName(recieverName);
+        Organization senderOrganization = organizations.getByName(senderName);
+        if (recieverOrganization == null || senderOrganization == null) return PaymentStatus.ORGANIZATION_NOT_FOUND;
+        PaymentStatus status = Payment.validate(senderOrganization, recieverOrganization, uniqueCode, paymentPurpose, paymentDateTime, paymentSumMinor);
+        if (status != PaymentStatus.ACCEPTED) return status;
+        long previousRecieverBalance = recieverOrganization.getBalanceMinor();
+        long previousSenderBalance = senderOrganization.getBalanceMinor();
+        if (Money.addOverflows(previousRecieverBalance, paymentSumMinor) || Money.subtractOverflows(previousSenderBalance, paymentSumMinor)) return PaymentStatus.BALANCE_OVERFLOW;
+        if (dailyTotals.addOverflows(paymentDateTime, paymentSumMinor) || purposeTotals.addOverflows(purposes.find(paymentPurpose), paymentSumMinor)) return PaymentStatus.BALANCE_OVERFLOW;
+        long recieverBalance = previousRecieverBalance + paymentSumMinor;
+        long senderBalance = previousSenderBalance - paymentSumMinor;
+        Payment payment = Payment.validated(senderOrganization, recieverOrganization, uniqueCode, paymentPurpose, paymentDateTime, paymentSumMinor);
+        journal(payment);
+        commitJournal();
+        setBalance(recieverOrganization, recieverBalance);
+        setBalance(senderOrganization, senderBalance);
+        registerAccepted(payment);
+        if (idempotencyWindow != null) idempotencyWindow.remember(payment);
+        publishBalances();
+        notifyCrossing(recieverOrganization, previousRecieverBalance);
+        notifyCrossing(senderOrganization, previousSenderBalance);
+        return PaymentStatus.ACCEPTED;
+    }
+
+
+    private Payment findPayment(String paymentId) throws OrganizationAndPaymentsException {
+        Payment payment = payments.get(paymentId);
+        if (payment == null) throw metrics.rejected(new PaymentCannotBeFoundException());
+        return payment;
+    }
+
+
+    private static void checkPage(int cursor, int limit) {
+        if (cursor < 0) throw new IllegalArgumentException("cursor must not be negative");
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive");
+    }
+
+
+    private PaymentPage toPage(int[] positions, int cursor, int count) {
+        ArrayList<String> paymentIds = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            paymentIds.add(payments.getUniqueCode(position));
+        }
+        int nextCursor = cursor + positions.length;
+        return new PaymentPage(paymentIds, nextCursor, nextCursor < count);
+    }
+
+
+    private Organization findOrganization(String organizationName) throws OrganizationAndPaymentsException {
+        Organization organization = organizations.getByName(organizationName);
+        if (organization == null) throw metrics.rejected(new OrganizationCannotBeFoundException());
+        return organization;
+    }
+
+
+    // Both totals are checked before either changes, so a payment they reject is not left half indexed.
+    private void register(Payment payment) throws BalanceOverflowException {
+        checkTotals(payment);
+        int purposeCode = registerPurpose(payment);
+        dailyTotals.add(payment.getPaymentDateTime(), payment.getPaymentSumMinor());
+        topPayments.add(payments.size(), payment.getPaymentSumMinor());
+        timeIndex.add(payment.getPaymentDateTime(), payments.size(), payment.getPaymentSumMinor());
+        history.add(payment.getSenderOrganization().getId(), payment.getRecieverOrganization().getId(), payments.size());
+        payments.add(payment, purposeCode);
+        if (idFilter != null) {
+            idFilter.add(payment.getUniqueCode());
+            growIdFilter();
+        }
+    }
+
+
+    private void checkTotals(Payment payment) throws BalanceOverflowException {
+        if (dailyTotals.addOverflows(payment.getPaymentDateTime(), payment.getPaymentSumMinor()) || purposeTotals.addOverflows(purposes.find(payment.getPaymentPurpose()), payment.getPaymentSumMinor())) throw new BalanceOverflowException();
+    }
+
+
+    // For payments whose totals were checked along with the balances, before anything was applied.
+    private void registerAccepted(Payment payment) {
+        try {
+            register(payment);
+        } catch (BalanceOverflowException e) {
+            throw new IllegalStateException("payment totals were checked before the payment was applied", e);
+        }
+    }
+
+
+    // Copying a few stored codes per payment, faster than payments arrive, keeps the cost of doubling spread out instead of landing on one payment.
+    private void growIdFilter() {
+        if (nextIdFilter == null) {
+            if (!idFilter.isFull()) return;
+            nextIdFilter = newIdFilter();
+            nextIdFilterPosition = 0;
+        }
+        int end = Math.min(payments.size(), nextIdFilterPosition + ID_FILTER_GROWTH_SLICE);
+        for (; nextIdFilterPosition < end; nextIdFilterPosition++) {
+            nextIdFilter.add(payments.getUniqueCode(nextIdFilterPosition));
+        }
+        if (nextIdFilterPosition == payments.size()) {
+            idFilter = nextIdFilter;
+            nextIdFilter = null;
+        }
+    }
+
+
+    // Most codes are new, so the filter answers them without a probe into the store.
+    private boolean isDuplicate(String uniqueCode) {
+        if (idFilter != null && !idFilter.mightContain(uniqueCode)) return false;
+        return payments.contains(uniqueCode);
+    }
+
+
+    // Doubling keeps the re-adding amortized to a constant per payment, as with a growing array.
+    private PaymentIdFilter newIdFilter() {
+        return new PaymentIdFilter((int) Math.min(Integer.MAX_VALUE, Math.max(PaymentIdFilter.DEFAULT_CAPACITY, 2L * payments.size())));
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        if (snapshotExecutor != null) {
+            snapshotExecutor.shutdown();
+            try {
+                snapshotExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            metrics.unregisterMBean();
+        } catch (JMException e) {
+            throw new IOException(e);
+        }
+        if (journal != null) journal.close();
+    }
+
+
+    private static long[] captureBalances(List<Organization> organizations) {
+        long[] balances = new long[organizations.size()];
+        for (int i = 0; i < balances.length; i++) {
+            balances[i] = organizations.get(i).getBalanceMinor();
+        }
+        return balances;
+    }
+
+
+    // Each segment is named after its first sequence, which must follow straight on from what was already recovered.
+    private static void checkContiguous(long lastSequence, long firstSequence) throws IOException {
+        if (firstSequence > lastSequence + 1) throw new IOException("journal records " + (lastSequence + 1) + " to " + (firstSequence - 1) + " are missing");
+    }
+
+
+    private static String segmentName(long firstSequence) {
+        return String.format("%s%019d%s", JOURNAL_PREFIX, firstSequence, JOURNAL_SUFFIX);
+    }
+
+
+    private static TreeMap<Long, Path> listFiles(Path directory, String prefix, String suffix) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path x : stream) {
+                String name = x.getFileName().toString();
+                files.put(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())), x);
+            }
+        }
+        return files;
+    }
+
+
+    private Payment newPayment(String senderName, String recieverName, String uniqueCode, String paymentPurpose, LocalDateTime paymentDateTime, long paymentSumMinor) throws OrganizationAndPaymentsException {
+        if (isDuplicate(uniqueCode)) throw new DuplicatePaymentException();
+        Organization recieverOrganization = organizations.getByName(recieverName);
+        Organization senderOrganization = organizations.getByName(senderName);
+        if (recieverOrganization == null || senderOrganization == null) throw new OrganizationCannotBeFoundException();
+        return Payment.withMinorUnits(senderOrganization, recieverOrganization, uniqueCode, paymentPurpose, paymentDateTime, paymentSumMinor);
+    }
+
+
+    private void register(Organization organization) {
+        if (journal != null) {
+            try {
+                journal.appendOrganization(organization.getOrganizationName(), organization.getRegistrationNumber(), organization.getBalanceMinor());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            commitJournal();
+        }
+        organizations.add(organization);
+        balanceVersions.add(organization.getId(), organization.getOrganizationName(), organization.getBalanceMinor());
+        if (organization.getBalanceMinor() < 0) negativeBalances.add(organization.getId());
+    }
+
+
+    private int registerPurpose(Payment payment) throws BalanceOverflowException {
+        int purposeCode = purposes.encode(payment.getPaymentPurpose());
+        payment.setPaymentPurpose(purposes.decode(purposeCode));
+        purposeTotals.add(purposeCode, payment.getPaymentSumMinor());
+        return purposeCode;
+    }
+
+
+    private void setBalance(Organization organization, long balance) {
+        organization.setBalanceMinor(balance);
+        balanceVersions.set(organization.getId(), balance);
+        if (balance < 0) negativeBalances.add(organization.getId());
+        else negativeBalances.remove(organization.getId());
+    }
+
+
+    // Also called when a change fails halfway, so whatever was applied does not stay hidden from readers.
+    private void publishBalances() {
+        if (balanceVersions.isChanged()) balanceSnapshot = balanceVersions.publish();
+    }
+
+
+    private void notifyCrossing(Organization organization, long previousBalance) {
+        long balance = organization.getBalanceMinor();
+        if (balanceCrossingListener != null && (previousBalance < 0) != (balance < 0)) {
+            balanceCrossingListener.balanceCrossedZero(organization.getOrganizationName(), previousBalance, balance);
+        }
+    }
+
+
+    private void journal(Payment payment) {
+        if (journal == null) return;
+        try {
+            journal.appendPayment(payment.getSenderOrganization().getOrganizationName(), payment.getRecieverOrganization().getOrganizationName(),
+                    payment.getUniqueCode(), payment.getPaymentPurpose(), payment.getPaymentDateTime(), payment.getPaymentSumMinor());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    // Called after journaling and before the change is applied, so a failed fsync leaves the change unapplied.
+    private void commitJournal() {
+        if (journal == null || !synchronousCommit) return;
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    private class JournalReplay implements JournalListener {
+
+        @Override
+        public void organizationAdded(String name, String registrationNumber, long initialBalanceMinor) throws OrganizationAndPaymentsException {
+            register(Organization.withMinorUnits(name, registrationNumber, initialBalanceMinor));
+        }
+
+        @Override
+        public void paymentAdded(String senderName, String recieverName, String uniqueCode, String paymentPurpose, LocalDateTime paymentDateTime, long paymentSumMinor) throws OrganizationAndPaymentsException {
+            Payment payment = newPayment(senderName, recieverName, uniqueCode, paymentPurpose, paymentDateTime, paymentSumMinor);
+            Organization recieverOrganization = payment.getRecieverOrganization();
+            Organization senderOrganization = payment.getSenderOrganization();
+            long recieverBalance = Money.add(recieverOrganization.getBalanceMinor(), paymentSumMinor);
+            long senderBalance = Money.subtract(senderOrganization.getBalanceMinor(), paymentSumMinor);
+            checkTotals(payment);
+            setBalance(recieverOrganization, recieverBalance);
+            setBalance(senderOrganization, senderBalance);
+            registerAccepted(payment);
+        }
+    }
+}
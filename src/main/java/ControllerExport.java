@@ -0,0 +1,286 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Balances and payments captured from a {@link Controller} at one point in time, written out as
+ * a stream instead of being materialized. The capture copies only the organization list and
+ * balances; payments are an immutable prefix of the store, so the export can be written from any
+ * thread while the controller keeps accepting payments, and shows none of them.
+ * <p>
+ * CSV output uses the same columns as {@link PaymentImporter}, so an exported payment file can
+ * be imported again. Binary output is a magic number followed by varint-prefixed records; payments
+ * refer to organizations and purposes through tables written ahead of them.
+ */
+public class ControllerExport {
+
+    public enum Format {
+        CSV,
+        BINARY,
+    }
+
+
+    static final int BALANCES_MAGIC = 0x45424C31;
+    static final int PAYMENTS_MAGIC = 0x45505931;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final List<Organization> organizations;
+    private final long[] balances;
+    private final List<Payment> payments;
+    private final String[] purposes;
+
+
+    ControllerExport(List<Organization> organizations, long[] balances, List<Payment> payments, String[] purposes) {
+        this.organizations = organizations;
+        this.balances = balances;
+        this.payments = payments;
+        this.purposes = purposes;
+    }
+
+
+    public int getOrganizationCount() {
+        return organizations.size();
+    }
+
+
+    public int getPaymentCount() {
+        return payments.size();
+    }
+
+
+    public void writeBalances(OutputStream output, Format format) throws IOException {
+        writeBalances(Channels.newChannel(output), format);
+    }
+
+
+    public void writeBalances(WritableByteChannel channel, Format format) throws IOException {
+        ExportBuffer buffer = new ExportBuffer(channel);
+        if (format == Format.CSV) {
+            buffer.putAscii("organizationName,registrationNumber,balance\n");
+            for (int i = 0; i < organizations.size(); i++) {
+                Organization x = organizations.get(i);
+                buffer.putCsvField(x.getOrganizationName());
+                buffer.putByte(',');
+                buffer.putCsvField(x.getRegistrationNumber());
+                buffer.putByte(',');
+                buffer.putDecimal(balances[i]);
+                buffer.putByte('\n');
+            }
+        } else {
+            buffer.putInt(BALANCES_MAGIC);
+            buffer.putVarLong(organizations.size());
+            for (int i = 0; i < organizations.size(); i++) {
+                Organization x = organizations.get(i);
+                buffer.putString(x.getOrganizationName());
+                buffer.putString(x.getRegistrationNumber());
+                buffer.putVarLong(zigZag(balances[i]));
+            }
+        }
+        buffer.flush();
+    }
+
+
+    public void writePayments(OutputStream output, Format format) throws IOException {
+        writePayments(Channels.newChannel(output), format);
+    }
+
+
+    public void writePayments(WritableByteChannel channel, Format format) throws IOException {
+        ExportBuffer buffer = new ExportBuffer(channel);
+        if (format == Format.CSV) {
+            buffer.putAscii("senderName,recieverName,uniqueCode,paymentPurpose,paymentDateTime,paymentSum\n");
+            for (Payment x : payments) {
+                buffer.putCsvField(x.getSenderOrganization().getOrganizationName());
+                buffer.putByte(',');
+                buffer.putCsvField(x.getRecieverOrganization().getOrganizationName());
+                buffer.putByte(',');
+                buffer.putCsvField(x.getUniqueCode());
+                buffer.putByte(',');
+                buffer.putCsvField(x.getPaymentPurpose());
+                buffer.putByte(',');
+                buffer.putAscii(x.getPaymentDateTime().toString());
+                buffer.putByte(',');
+                buffer.putDecimal(x.getPaymentSumMinor());
+                buffer.putByte('\n');
+            }
+        } else {
+            HashMap<String, Integer> purposeCodes = new HashMap<>();
+            buffer.putInt(PAYMENTS_MAGIC);
+            buffer.putVarLong(organizations.size());
+            for (Organization x : organizations) {
+                buffer.putString(x.getOrganizationName());
+            }
+            buffer.putVarLong(purposes.length);
+            for (int i = 0; i < purposes.length; i++) {
+                buffer.putString(purposes[i]);
+                purposeCodes.put(purposes[i], i);
+            }
+            buffer.putVarLong(payments.size());
+            for (Payment x : payments) {
+                LocalDateTime paymentDateTime = x.getPaymentDateTime();
+                buffer.putVarLong(x.getSenderOrganization().getId());
+                buffer.putVarLong(x.getRecieverOrganization().getId());
+                buffer.putString(x.getUniqueCode());
+                buffer.putVarLong(purposeCodes.get(x.getPaymentPurpose()));
+                buffer.putVarLong(zigZag(paymentDateTime.toEpochSecond(ZoneOffset.UTC)));
+                buffer.putVarLong(paymentDateTime.getNano());
+                buffer.putVarLong(x.getPaymentSumMinor());
+            }
+        }
+        buffer.flush();
+    }
+
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+
+    // Encodes straight into one reused buffer, draining it to the channel whenever it fills.
+    private static class ExportBuffer {
+
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final byte[] digits = new byte[20];
+
+
+        ExportBuffer(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+
+        void putByte(int value) throws IOException {
+            if (!buffer.hasRemaining()) drain();
+            buffer.put((byte) value);
+        }
+
+
+        void putInt(int value) throws IOException {
+            if (buffer.remaining() < Integer.BYTES) drain();
+            buffer.putInt(value);
+        }
+
+
+        void putVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                putByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            putByte((int) value);
+        }
+
+
+        void putAscii(String value) throws IOException {
+            for (int i = 0; i < value.length(); i++) {
+                putByte(value.charAt(i));
+            }
+        }
+
+
+        void putString(String value) throws IOException {
+            putVarLong(utf8Length(value));
+            putUtf8(value);
+        }
+
+
+        // Quoted only when the value holds a separator, a quote or a line break.
+        void putCsvField(String value) throws IOException {
+            boolean quoted = false;
+            for (int i = 0; i < value.length() && !quoted; i++) {
+                char x = value.charAt(i);
+                quoted = x == ',' || x == '"' || x == '\n' || x == '\r';
+            }
+            if (!quoted) {
+                putUtf8(value);
+                return;
+            }
+            putByte('"');
+            putUtf8(value.replace("\"", "\"\""));
+            putByte('"');
+        }
+
+
+        // Minor units as a plain decimal with Money.MINOR_UNITS precision, without going through double.
+        void putDecimal(long minorUnits) throws IOException {
+            if (minorUnits < 0) putByte('-');
+            long units = Math.abs(minorUnits / Money.MINOR_UNITS);
+            long fraction = Math.abs(minorUnits % Money.MINOR_UNITS);
+            int start = digits.length;
+            do {
+                digits[--start] = (byte) ('0' + units % 10);
+                units /= 10;
+            } while (units > 0);
+            if (buffer.remaining() < digits.length - start) drain();
+            buffer.put(digits, start, digits.length - start);
+            putByte('.');
+            for (int scale = Money.MINOR_UNITS / 10; scale > 0; scale /= 10) {
+                putByte('0' + (int) (fraction / scale % 10));
+            }
+        }
+
+
+        void flush() throws IOException {
+            drain();
+        }
+
+
+        private void putUtf8(String value) throws IOException {
+            int i = 0;
+            // Plain ASCII is copied without per-byte capacity checks while the buffer has room for it.
+            if (buffer.remaining() < value.length()) drain();
+            if (buffer.remaining() >= value.length()) {
+                while (i < value.length() && value.charAt(i) < 0x80) buffer.put((byte) value.charAt(i++));
+            }
+            for (; i < value.length(); i++) {
+                int x = value.charAt(i);
+                if (Character.isHighSurrogate((char) x) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    x = Character.toCodePoint((char) x, value.charAt(++i));
+                }
+                if (x < 0x80) {
+                    putByte(x);
+                } else if (x < 0x800) {
+                    putByte(0xC0 | x >>> 6);
+                    putByte(0x80 | x & 0x3F);
+                } else if (x < 0x10000) {
+                    putByte(0xE0 | x >>> 12);
+                    putByte(0x80 | x >>> 6 & 0x3F);
+                    putByte(0x80 | x & 0x3F);
+                } else {
+                    putByte(0xF0 | x >>> 18);
+                    putByte(0x80 | x >>> 12 & 0x3F);
+                    putByte(0x80 | x >>> 6 & 0x3F);
+                    putByte(0x80 | x & 0x3F);
+                }
+            }
+        }
+
+
+        private static int utf8Length(String value) {
+            int length = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char x = value.charAt(i);
+                if (x < 0x80) length++;
+                else if (x < 0x800) length += 2;
+                else if (Character.isHighSurrogate(x) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    length += 4;
+                    i++;
+                } else length += 3;
+            }
+            return length;
+        }
+
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+    }
+}
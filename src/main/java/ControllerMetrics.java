@@ -0,0 +1,248 @@
+import Exceptions.OrganizationAndPaymentsException;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Call counts and latencies of each public {@link Controller} operation, rejection counts by
+ * exception type, and the sizes of the stores. Every controller owns one; read it with
+ * {@link #snapshot()} or over JMX after {@link #registerMBean(String)}.
+ * <p>
+ * Counting is a {@link LongAdder} increment. Timing a call takes two {@link System#nanoTime()}
+ * reads, which cost more than the cheapest operations themselves on some hosts, so only every
+ * n-th call of each controller is timed into the latency histograms. The interval defaults to
+ * {@value #DEFAULT_LATENCY_SAMPLE_INTERVAL}, can be set for all controllers with the
+ * {@value #LATENCY_SAMPLE_INTERVAL_PROPERTY} system property, and can be changed per controller;
+ * 1 times every call and 0 turns timing off. A sampled histogram estimates the percentiles well
+ * but can miss a rare outlier, so its maximum is a lower bound.
+ */
+public final class ControllerMetrics implements ControllerMetricsMXBean {
+
+    public enum Operation {
+        ADD_ORGANIZATION,
+        ADD_PAYMENT,
+        TRY_ADD_PAYMENT,
+        ADD_PAYMENTS,
+        GET_PAYMENT_PURPOSE,
+        GET_PAYMENT_DATE_TIME,
+        GET_PAYMENT_SUM,
+        GET_SENDER_NAME,
+        GET_RECIEVER_NAME,
+        GET_REGISTRATION_NUMBER,
+        GET_BALANCE,
+        GET_ID_OF_BIGGEST_PAYMENT,
+        GET_TOP_PAYMENTS,
+        GET_DATE_WITH_BIGGEST_TOTAL_PAYMENTS,
+        GET_PAYMENTS,
+        GET_TOTAL,
+        GET_OUTGOING_PAYMENTS,
+        GET_INCOMING_PAYMENTS,
+        AGGREGATE,
+        GET_TOTAL_BY_PURPOSE,
+        GET_TOTALS_BY_PURPOSE,
+        GET_FINAL_BALANCES,
+        FOR_EACH_BALANCE,
+        GET_ORGANIZATIONS_WITH_NEGATIVE_SALDO,
+        SNAPSHOT,
+        EXPORT,
+    }
+
+
+    public static final String LATENCY_SAMPLE_INTERVAL_PROPERTY = "payments.metrics.latencySampleInterval";
+
+    public static final int DEFAULT_LATENCY_SAMPLE_INTERVAL = 16;
+
+    public static final String MBEAN_DOMAIN = "enfilde.payments";
+
+    static final long NOT_TIMED = Long.MIN_VALUE;
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final PaymentStatus[] STATUSES = PaymentStatus.values();
+
+    private final LongAdder[] operationCounts = new LongAdder[OPERATIONS.length];
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    private final LongAdder[] statusRejections = new LongAdder[STATUSES.length];
+    private final ConcurrentHashMap<Class<? extends OrganizationAndPaymentsException>, LongAdder> otherRejections = new ConcurrentHashMap<>();
+    private final IntSupplier paymentCount;
+    private final IntSupplier organizationCount;
+    private final IntSupplier purposeCount;
+    private volatile int latencySampleInterval;
+    private volatile int sampleMask;
+    private int calls;
+    private volatile ObjectName objectName;
+
+
+    ControllerMetrics(IntSupplier paymentCount, IntSupplier organizationCount, IntSupplier purposeCount) {
+        this.paymentCount = paymentCount;
+        this.organizationCount = organizationCount;
+        this.purposeCount = purposeCount;
+        setLatencySampleInterval(Integer.getInteger(LATENCY_SAMPLE_INTERVAL_PROPERTY, DEFAULT_LATENCY_SAMPLE_INTERVAL));
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            operationCounts[i] = new LongAdder();
+            latencies[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < STATUSES.length; i++) {
+            statusRejections[i] = new LongAdder();
+        }
+    }
+
+
+    // Start of a call; pass the result to record when the call ends.
+    long start() {
+        int mask = sampleMask;
+        return mask >= 0 && (++calls & mask) == 0 ? System.nanoTime() : NOT_TIMED;
+    }
+
+
+    void record(Operation operation, long start) {
+        operationCounts[operation.ordinal()].increment();
+        if (start != NOT_TIMED) latencies[operation.ordinal()].record(System.nanoTime() - start);
+    }
+
+
+    void rejected(PaymentStatus status) {
+        statusRejections[status.ordinal()].increment();
+    }
+
+
+    // Counts the rejection and hands the exception back, so callers can write throw metrics.rejected(new ...).
+    <E extends OrganizationAndPaymentsException> E rejected(E exception) {
+        otherRejections.computeIfAbsent(exception.getClass(), type -> new LongAdder()).increment();
+        return exception;
+    }
+
+
+    public MetricsSnapshot snapshot() {
+        HashMap<Operation, Long> counts = new HashMap<>();
+        HashMap<Operation, LatencyHistogram> copiedLatencies = new HashMap<>();
+        for (Operation x : OPERATIONS) {
+            counts.put(x, operationCounts[x.ordinal()].sum());
+            copiedLatencies.put(x, latencies[x.ordinal()].copy());
+        }
+        HashMap<Class<? extends OrganizationAndPaymentsException>, Long> rejections = new HashMap<>();
+        for (PaymentStatus x : STATUSES) {
+            long count = statusRejections[x.ordinal()].sum();
+            if (count > 0) rejections.merge(x.getExceptionType(), count, Long::sum);
+        }
+        for (Map.Entry<Class<? extends OrganizationAndPaymentsException>, LongAdder> x : otherRejections.entrySet()) {
+            rejections.merge(x.getKey(), x.getValue().sum(), Long::sum);
+        }
+        return new MetricsSnapshot(counts, rejections, copiedLatencies, paymentCount.getAsInt(), organizationCount.getAsInt(), purposeCount.getAsInt());
+    }
+
+
+    /**
+     * Registers these metrics with the platform MBean server as
+     * {@code enfilde.payments:type=Controller,name=<name>}; the controller unregisters them on close.
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName registered = new ObjectName(MBEAN_DOMAIN + ":type=Controller,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, registered);
+        ObjectName previous = objectName;
+        objectName = registered;
+        if (previous != null) ManagementFactory.getPlatformMBeanServer().unregisterMBean(previous);
+        return registered;
+    }
+
+
+    public void unregisterMBean() throws JMException {
+        ObjectName registered = objectName;
+        if (registered == null) return;
+        objectName = null;
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+    }
+
+
+    @Override
+    public int getLatencySampleInterval() {
+        return latencySampleInterval;
+    }
+
+
+    // Rounded up to a power of two.
+    @Override
+    public void setLatencySampleInterval(int latencySampleInterval) {
+        if (latencySampleInterval < 0 || latencySampleInterval > 1 << 30) throw new IllegalArgumentException("latencySampleInterval must be between 0 and 2^30");
+        int interval = latencySampleInterval <= 1 ? latencySampleInterval : Integer.highestOneBit(latencySampleInterval - 1) << 1;
+        this.latencySampleInterval = interval;
+        sampleMask = interval - 1;
+    }
+
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        HashMap<String, Long> counts = new HashMap<>();
+        for (Operation x : OPERATIONS) {
+            counts.put(x.name(), operationCounts[x.ordinal()].sum());
+        }
+        return counts;
+    }
+
+
+    @Override
+    public Map<String, Long> getRejectionCounts() {
+        HashMap<String, Long> counts = new HashMap<>();
+        for (Map.Entry<Class<? extends OrganizationAndPaymentsException>, Long> x : snapshot().getRejections().entrySet()) {
+            counts.put(x.getKey().getSimpleName(), x.getValue());
+        }
+        return counts;
+    }
+
+
+    @Override
+    public Map<String, Long> getLatencyP50Nanos() {
+        return latencyMap(histogram -> histogram.getValueAtPercentile(50));
+    }
+
+
+    @Override
+    public Map<String, Long> getLatencyP99Nanos() {
+        return latencyMap(histogram -> histogram.getValueAtPercentile(99));
+    }
+
+
+    @Override
+    public Map<String, Long> getLatencyP999Nanos() {
+        return latencyMap(histogram -> histogram.getValueAtPercentile(99.9));
+    }
+
+
+    @Override
+    public Map<String, Long> getLatencyMaxNanos() {
+        return latencyMap(LatencyHistogram::getMaxNanos);
+    }
+
+
+    @Override
+    public int getPaymentCount() {
+        return paymentCount.getAsInt();
+    }
+
+
+    @Override
+    public int getOrganizationCount() {
+        return organizationCount.getAsInt();
+    }
+
+
+    @Override
+    public int getPurposeCount() {
+        return purposeCount.getAsInt();
+    }
+
+
+    private Map<String, Long> latencyMap(ToLongFunction<LatencyHistogram> statistic) {
+        HashMap<String, Long> values = new HashMap<>();
+        for (Operation x : OPERATIONS) {
+            values.put(x.name(), statistic.applyAsLong(latencies[x.ordinal()]));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,30 @@
+import java.util.Map;
+
+/**
+ * JMX view of {@link ControllerMetrics}. Maps are keyed by operation name or by the simple name of
+ * the rejection exception; latency maps hold nanoseconds per operation.
+ */
+public interface ControllerMetricsMXBean {
+
+    Map<String, Long> getOperationCounts();
+
+    Map<String, Long> getRejectionCounts();
+
+    Map<String, Long> getLatencyP50Nanos();
+
+    Map<String, Long> getLatencyP99Nanos();
+
+    Map<String, Long> getLatencyP999Nanos();
+
+    Map<String, Long> getLatencyMaxNanos();
+
+    int getPaymentCount();
+
+    int getOrganizationCount();
+
+    int getPurposeCount();
+
+    int getLatencySampleInterval();
+
+    void setLatencySampleInterval(int latencySampleInterval);
+}
@@ -0,0 +1,141 @@
+import Exceptions.OrganizationAndPaymentsException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Point-in-time copy of a {@link Controller}: organizations with their balances, payments in
+ * insertion order and the derived daily totals, top payments and payment code filter, tagged with
+ * the last journal sequence it covers.
+ */
+public class ControllerSnapshot {
+
+    static final int MAGIC = 0x50534E31;
+    static final int END_MARKER = 0x454E4421;
+
+    private final long lastSequence;
+    private final List<Organization> organizations;
+    private final long[] balances;
+    private final List<Payment> payments;
+    private final DailyTotals dailyTotals;
+    private final TopPayments topPayments;
+    private final PaymentIdFilter idFilter;
+
+
+    ControllerSnapshot(long lastSequence, List<Organization> organizations, long[] balances, List<Payment> payments, DailyTotals dailyTotals, TopPayments topPayments, PaymentIdFilter idFilter) {
+        this.lastSequence = lastSequence;
+        this.organizations = organizations;
+        this.balances = balances;
+        this.payments = payments;
+        this.dailyTotals = dailyTotals;
+        this.topPayments = topPayments;
+        this.idFilter = idFilter;
+    }
+
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+
+    public List<Organization> getOrganizations() {
+        return organizations;
+    }
+
+
+    public List<Payment> getPayments() {
+        return payments;
+    }
+
+
+    public DailyTotals getDailyTotals() {
+        return dailyTotals;
+    }
+
+
+    public TopPayments getTopPayments() {
+        return topPayments;
+    }
+
+
+    // Null when the controller had no filter enabled, or the snapshot predates persisting it.
+    public PaymentIdFilter getIdFilter() {
+        return idFilter;
+    }
+
+
+    // Written to a temporary file first and renamed into place, so a crash never leaves a half-written snapshot behind.
+    public void write(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (SnapshotOutput output = new SnapshotOutput(temporary)) {
+            output.putInt(MAGIC);
+            output.putLong(lastSequence);
+            output.putInt(organizations.size());
+            for (int i = 0; i < organizations.size(); i++) {
+                Organization x = organizations.get(i);
+                output.putString(x.getOrganizationName());
+                output.putString(x.getRegistrationNumber());
+                output.putLong(balances[i]);
+            }
+            output.putInt(payments.size());
+            for (Payment x : payments) {
+                output.putInt(x.getSenderOrganization().getId());
+                output.putInt(x.getRecieverOrganization().getId());
+                output.putString(x.getUniqueCode());
+                output.putString(x.getPaymentPurpose());
+                output.putLong(x.getPaymentDateTime().toEpochSecond(ZoneOffset.UTC));
+                output.putInt(x.getPaymentDateTime().getNano());
+                output.putLong(x.getPaymentSumMinor());
+            }
+            dailyTotals.writeTo(output);
+            topPayments.writeTo(output);
+            output.putInt(idFilter != null ? 1 : 0);
+            if (idFilter != null) idFilter.writeTo(output);
+            output.putInt(END_MARKER);
+            output.force();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    public static ControllerSnapshot read(Path file) throws IOException {
+        try (SnapshotInput input = new SnapshotInput(file)) {
+            if (input.getInt() != MAGIC) throw new IOException("not a controller snapshot: " + file);
+            long lastSequence = input.getLong();
+            int organizationCount = input.getInt();
+            ArrayList<Organization> organizations = new ArrayList<>(organizationCount);
+            long[] balances = new long[organizationCount];
+            for (int i = 0; i < organizationCount; i++) {
+                String name = input.getString();
+                String registrationNumber = input.getString();
+                balances[i] = input.getLong();
+                Organization organization = Organization.withMinorUnits(name, registrationNumber, balances[i]);
+                organization.setId(i);
+                organizations.add(organization);
+            }
+            int paymentCount = input.getInt();
+            ArrayList<Payment> payments = new ArrayList<>(paymentCount);
+            for (int i = 0; i < paymentCount; i++) {
+                Organization senderOrganization = organizations.get(input.getInt());
+                Organization recieverOrganization = organizations.get(input.getInt());
+                String uniqueCode = input.getString();
+                String paymentPurpose = input.getString();
+                LocalDateTime paymentDateTime = LocalDateTime.ofEpochSecond(input.getLong(), input.getInt(), ZoneOffset.UTC);
+                payments.add(Payment.withMinorUnits(senderOrganization, recieverOrganization, uniqueCode, paymentPurpose, paymentDateTime, input.getLong()));
+            }
+            DailyTotals dailyTotals = DailyTotals.readFrom(input);
+            TopPayments topPayments = TopPayments.readFrom(input);
+            PaymentIdFilter idFilter = input.getInt() != 0 ? PaymentIdFilter.readFrom(input) : null;
+            if (input.getInt() != END_MARKER) throw new IOException("snapshot is truncated: " + file);
+            return new ControllerSnapshot(lastSequence, organizations, balances, payments, dailyTotals, topPayments, idFilter);
+        } catch (OrganizationAndPaymentsException | IndexOutOfBoundsException e) {
+            throw new IOException("corrupt snapshot: " + file, e);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * Work run against a {@link Controller} on the writer thread of a {@link SingleWriterController}.
+ */
+@FunctionalInterface
+public interface ControllerTask<T> {
+
+    T run(Controller controller) throws Exception;
+}
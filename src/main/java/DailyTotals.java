@@ -0,0 +1,157 @@
+import Exceptions.BalanceOverflowException;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.function.ObjLongConsumer;
+
+public class DailyTotals {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] days = newDays(16);
+    private long[] totals = new long[16];
+    private int[] firstSeen = new int[16];
+    private int size;
+    private int biggestSlot = -1;
+
+
+    // A new day starts from zero and cannot overflow, so a rejected sum leaves the totals as they were.
+    public void add(LocalDateTime paymentDateTime, long paymentSumMinor) throws BalanceOverflowException {
+        int slot = slotOf(paymentDateTime.toLocalDate().toEpochDay());
+        totals[slot] = Money.add(totals[slot], paymentSumMinor);
+        if (biggestSlot < 0 || isBigger(slot, biggestSlot)) biggestSlot = slot;
+    }
+
+
+    public boolean addOverflows(LocalDateTime paymentDateTime, long paymentSumMinor) {
+        return Money.addOverflows(getTotalMinor(paymentDateTime.toLocalDate()), paymentSumMinor);
+    }
+
+
+    public long getTotalMinor(LocalDate date) {
+        int slot = find(date.toEpochDay());
+        return slot < 0 ? 0 : totals[slot];
+    }
+
+
+    public LocalDate getDateWithBiggestTotal() {
+        if (biggestSlot < 0 || totals[biggestSlot] <= 0) return null;
+        return LocalDate.ofEpochDay(days[biggestSlot]);
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+
+    // In no particular order.
+    public void forEachTotal(ObjLongConsumer<LocalDate> consumer) {
+        for (int i = 0; i < days.length; i++) {
+            if (days[i] != EMPTY) consumer.accept(LocalDate.ofEpochDay(days[i]), totals[i]);
+        }
+    }
+
+
+    public DailyTotals copy() {
+        DailyTotals copy = new DailyTotals();
+        copy.days = days.clone();
+        copy.totals = totals.clone();
+        copy.firstSeen = firstSeen.clone();
+        copy.size = size;
+        copy.biggestSlot = biggestSlot;
+        return copy;
+    }
+
+
+    public void writeTo(SnapshotOutput output) throws IOException {
+        output.putInt(size);
+        for (int i = 0; i < days.length; i++) {
+            if (days[i] == EMPTY) continue;
+            output.putLong(days[i]);
+            output.putLong(totals[i]);
+            output.putInt(firstSeen[i]);
+        }
+    }
+
+
+    public static DailyTotals readFrom(SnapshotInput input) throws IOException {
+        DailyTotals dailyTotals = new DailyTotals();
+        int count = input.getInt();
+        for (int i = 0; i < count; i++) {
+            int slot = dailyTotals.slotOf(input.getLong());
+            dailyTotals.totals[slot] = input.getLong();
+            dailyTotals.firstSeen[slot] = input.getInt();
+            if (dailyTotals.biggestSlot < 0 || dailyTotals.isBigger(slot, dailyTotals.biggestSlot)) dailyTotals.biggestSlot = slot;
+        }
+        return dailyTotals;
+    }
+
+
+    // Ties go to the day that received its first payment earliest, as the old per-payment scan did.
+    private boolean isBigger(int slot, int otherSlot) {
+        if (totals[slot] != totals[otherSlot]) return totals[slot] > totals[otherSlot];
+        return firstSeen[slot] < firstSeen[otherSlot];
+    }
+
+
+    private int find(long epochDay) {
+        int mask = days.length - 1;
+        for (int i = hash(epochDay) & mask; ; i = (i + 1) & mask) {
+            if (days[i] == epochDay) return i;
+            if (days[i] == EMPTY) return -1;
+        }
+    }
+
+
+    private int slotOf(long epochDay) {
+        int mask = days.length - 1;
+        int i = hash(epochDay) & mask;
+        for (; days[i] != EMPTY; i = (i + 1) & mask) {
+            if (days[i] == epochDay) return i;
+        }
+        if ((size + 1) * 4 > days.length * 3) {
+            grow();
+            return slotOf(epochDay);
+        }
+        days[i] = epochDay;
+        firstSeen[i] = size++;
+        return i;
+    }
+
+
+    private void grow() {
+        long[] oldDays = days;
+        long[] oldTotals = totals;
+        int[] oldFirstSeen = firstSeen;
+        int biggest = biggestSlot;
+        days = newDays(oldDays.length * 2);
+        totals = new long[days.length];
+        firstSeen = new int[days.length];
+        biggestSlot = -1;
+        int mask = days.length - 1;
+        for (int j = 0; j < oldDays.length; j++) {
+            if (oldDays[j] == EMPTY) continue;
+            int i = hash(oldDays[j]) & mask;
+            while (days[i] != EMPTY) i = (i + 1) & mask;
+            days[i] = oldDays[j];
+            totals[i] = oldTotals[j];
+            firstSeen[i] = oldFirstSeen[j];
+            if (j == biggest) biggestSlot = i;
+        }
+    }
+
+
+    private static long[] newDays(int capacity) {
+        long[] days = new long[capacity];
+        Arrays.fill(days, EMPTY);
+        return days;
+    }
+
+
+    private static int hash(long epochDay) {
+        long h = epochDay * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,7 @@
+package Exceptions;
+
+public class BalanceOverflowException extends OrganizationAndPaymentsException {
+    public BalanceOverflowException() {
+        super("BalanceOverflow");
+    }
+}
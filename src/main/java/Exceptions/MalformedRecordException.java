@@ -0,0 +1,7 @@
+package Exceptions;
+
+public class MalformedRecordException extends OrganizationAndPaymentsException {
+    public MalformedRecordException() {
+        super("MalformedRecord");
+    }
+}
@@ -1,6 +1,12 @@
 package Exceptions;
 
 public class OrganizationAndPaymentsException extends Exception{
+
+    // Rejections are routine on ingestion feeds, so capturing a stack trace for each one can be switched off.
+    public static final String STACK_TRACES_PROPERTY = "payments.exceptions.stackTraces";
+
+    private static volatile boolean stackTracesEnabled = Boolean.parseBoolean(System.getProperty(STACK_TRACES_PROPERTY, "true"));
+
     public OrganizationAndPaymentsException() {
         super();
     }
@@ -20,4 +26,17 @@ public class OrganizationAndPaymentsException extends Exception{
     protected OrganizationAndPaymentsException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
         super(message, cause, enableSuppression, writableStackTrace);
     }
-}
\ No newline at end of file
+
+    public static boolean isStackTracesEnabled() {
+        return stackTracesEnabled;
+    }
+
+    public static void setStackTracesEnabled(boolean enabled) {
+        stackTracesEnabled = enabled;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return stackTracesEnabled ? super.fillInStackTrace() : this;
+    }
+}
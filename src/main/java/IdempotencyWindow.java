@@ -0,0 +1,89 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+/**
+ * Recently accepted payments by code, so a retry of the same payment is answered with its original
+ * result without going near the balances. Entries leave oldest first, once they are older than the
+ * time to live or the window is full; a retry arriving after that meets the ordinary duplicate check.
+ */
+public class IdempotencyWindow {
+
+    private final int maxEntries;
+    private final long timeToLiveNanos;
+    private final LongSupplier clock;
+    private final HashMap<String, Entry> entries = new HashMap<>();
+    // Entries share one time to live, so insertion order is also expiry order.
+    private final ArrayDeque<Entry> order = new ArrayDeque<>();
+
+
+    public IdempotencyWindow(int maxEntries, Duration timeToLive) {
+        this(maxEntries, timeToLive, System::nanoTime);
+    }
+
+
+    IdempotencyWindow(int maxEntries, Duration timeToLive, LongSupplier clock) {
+        if (maxEntries < 1) throw new IllegalArgumentException("maxEntries must be positive");
+        if (timeToLive.isNegative() || timeToLive.isZero()) throw new IllegalArgumentException("timeToLive must be positive");
+        this.maxEntries = maxEntries;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.clock = clock;
+    }
+
+
+    // ACCEPTED for a retry of a remembered payment, DUPLICATE_PAYMENT when its code was used for a different one, null when the code is not in the window.
+    public PaymentStatus check(String senderName, String recieverName, String uniqueCode, String paymentPurpose, LocalDateTime paymentDateTime, long paymentSumMinor) {
+        expire(clock.getAsLong());
+        Entry entry = entries.get(uniqueCode);
+        if (entry == null) return null;
+        Payment payment = entry.payment;
+        boolean same = payment.getPaymentSumMinor() == paymentSumMinor
+                && payment.getSenderOrganization().getOrganizationName().equals(senderName)
+                && payment.getRecieverOrganization().getOrganizationName().equals(recieverName)
+                && Objects.equals(payment.getPaymentPurpose(), paymentPurpose)
+                && payment.getPaymentDateTime().equals(paymentDateTime);
+        return same ? PaymentStatus.ACCEPTED : PaymentStatus.DUPLICATE_PAYMENT;
+    }
+
+
+    public void remember(Payment payment) {
+        // Only newly accepted payments are remembered, and their codes are never in the window already.
+        Entry entry = new Entry(payment, clock.getAsLong() + timeToLiveNanos);
+        entries.put(payment.getUniqueCode(), entry);
+        order.addLast(entry);
+        if (order.size() > maxEntries) evict();
+    }
+
+
+    public int size() {
+        return entries.size();
+    }
+
+
+    private void expire(long now) {
+        while (!order.isEmpty() && order.peekFirst().expiresAt - now <= 0) {
+            evict();
+        }
+    }
+
+
+    private void evict() {
+        entries.remove(order.pollFirst().payment.getUniqueCode());
+    }
+
+
+    private static final class Entry {
+
+        final Payment payment;
+        final long expiresAt;
+
+
+        Entry(Payment payment, long expiresAt) {
+            this.payment = payment;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+import Exceptions.OrganizationAndPaymentsException;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Outcome of a {@link PaymentImporter} run: how many records were read and accepted, how many
+ * were rejected for each reason, and how fast the input went through.
+ */
+public class ImportReport {
+
+    private final long recordCount;
+    private final long acceptedCount;
+    private final long bytesRead;
+    private final long elapsedNanos;
+    private final Map<Class<? extends OrganizationAndPaymentsException>, Long> rejections;
+
+
+    public ImportReport(long recordCount, long acceptedCount, long bytesRead, long elapsedNanos, Map<Class<? extends OrganizationAndPaymentsException>, Long> rejections) {
+        this.recordCount = recordCount;
+        this.acceptedCount = acceptedCount;
+        this.bytesRead = bytesRead;
+        this.elapsedNanos = elapsedNanos;
+        this.rejections = Collections.unmodifiableMap(rejections);
+    }
+
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+
+    public long getAcceptedCount() {
+        return acceptedCount;
+    }
+
+
+    public long getRejectedCount() {
+        return recordCount - acceptedCount;
+    }
+
+
+    public long getRejectedCount(Class<? extends OrganizationAndPaymentsException> reason) {
+        return rejections.getOrDefault(reason, 0L);
+    }
+
+
+    public Map<Class<? extends OrganizationAndPaymentsException>, Long> getRejections() {
+        return rejections;
+    }
+
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+
+    public double getRecordsPerSecond() {
+        return elapsedNanos == 0 ? 0 : recordCount * 1e9 / elapsedNanos;
+    }
+
+
+    public double getMegabytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : bytesRead * 1e9 / elapsedNanos / (1 << 20);
+    }
+
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(String.format("%d records, %d accepted, %d rejected in %.3f s (%.0f records/s, %.1f MB/s)",
+                recordCount, acceptedCount, getRejectedCount(), elapsedNanos / 1e9, getRecordsPerSecond(), getMegabytesPerSecond()));
+        for (Map.Entry<Class<? extends OrganizationAndPaymentsException>, Long> x : rejections.entrySet()) {
+            text.append(System.lineSeparator()).append("  ").append(x.getKey().getSimpleName()).append(": ").append(x.getValue());
+        }
+        return text.toString();
+    }
+}
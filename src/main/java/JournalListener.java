@@ -0,0 +1,8 @@
+import java.time.LocalDateTime;
+
+public interface JournalListener {
+
+    void organizationAdded(String name, String registrationNumber, long initialBalanceMinor) throws Exception;
+
+    void paymentAdded(String senderName, String recieverName, String uniqueCode, String paymentPurpose, LocalDateTime paymentDateTime, long paymentSumMinor) throws Exception;
+}
@@ -0,0 +1,105 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of latencies in nanoseconds, in the layout HdrHistogram uses: values below
+ * {@value #SUB_BUCKET_COUNT} get a bucket each, and every power of two above that is split into
+ * {@value #HALF_SUB_BUCKET_COUNT} equal buckets, so any recorded value is reported within about
+ * 3% of itself. Values above {@value #MAX_TRACKABLE_NANOS}ns (about 68 seconds) are clamped.
+ * Recording is one atomic increment and never allocates.
+ */
+public final class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 6;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT >> 1;
+    static final long MAX_TRACKABLE_NANOS = (1L << 36) - 1;
+    static final int BUCKET_COUNT = index(MAX_TRACKABLE_NANOS) + 1;
+
+    private final AtomicLongArray counts;
+    private volatile long maxNanos;
+
+
+    LatencyHistogram() {
+        counts = new AtomicLongArray(BUCKET_COUNT);
+    }
+
+
+    private LatencyHistogram(AtomicLongArray counts, long maxNanos) {
+        this.counts = counts;
+        this.maxNanos = maxNanos;
+    }
+
+
+    void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_TRACKABLE_NANOS);
+        counts.getAndIncrement(index(value));
+        if (value > maxNanos) maxNanos = value;
+    }
+
+
+    // A copy that later recordings do not change; counts recorded while copying may or may not be in it.
+    LatencyHistogram copy() {
+        AtomicLongArray copied = new AtomicLongArray(BUCKET_COUNT);
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copied.lazySet(i, counts.get(i));
+        }
+        return new LatencyHistogram(copied, maxNanos);
+    }
+
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+
+    // The smallest bucket bound that at least the given percentage of recorded values fall under; 0 when empty.
+    public long getValueAtPercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) throw new IllegalArgumentException("percentile must be between 0 and 100");
+        long count = getCount();
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(highestEquivalentValue(i), maxNanos);
+        }
+        return maxNanos;
+    }
+
+
+    public double getMeanNanos() {
+        long count = 0;
+        double total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long bucketCount = counts.get(i);
+            if (bucketCount == 0) continue;
+            count += bucketCount;
+            total += bucketCount * (double) Math.min(highestEquivalentValue(i), maxNanos);
+        }
+        return count == 0 ? 0 : total / count;
+    }
+
+
+    static int index(long value) {
+        if (value < SUB_BUCKET_COUNT) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return shift * HALF_SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) return index;
+        int shift = index / HALF_SUB_BUCKET_COUNT - 1;
+        long subBucket = index - shift * HALF_SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,70 @@
+import Exceptions.OrganizationAndPaymentsException;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Point-in-time copy of a {@link ControllerMetrics}: counts and latencies per operation since the
+ * controller was created, rejections by exception type, and the store sizes when it was taken.
+ */
+public class MetricsSnapshot {
+
+    private final Map<ControllerMetrics.Operation, Long> operationCounts;
+    private final Map<Class<? extends OrganizationAndPaymentsException>, Long> rejections;
+    private final Map<ControllerMetrics.Operation, LatencyHistogram> latencies;
+    private final int paymentCount;
+    private final int organizationCount;
+    private final int purposeCount;
+
+
+    MetricsSnapshot(Map<ControllerMetrics.Operation, Long> operationCounts, Map<Class<? extends OrganizationAndPaymentsException>, Long> rejections,
+                    Map<ControllerMetrics.Operation, LatencyHistogram> latencies, int paymentCount, int organizationCount, int purposeCount) {
+        this.operationCounts = Collections.unmodifiableMap(operationCounts);
+        this.rejections = Collections.unmodifiableMap(rejections);
+        this.latencies = Collections.unmodifiableMap(latencies);
+        this.paymentCount = paymentCount;
+        this.organizationCount = organizationCount;
+        this.purposeCount = purposeCount;
+    }
+
+
+    public long getOperationCount(ControllerMetrics.Operation operation) {
+        return operationCounts.get(operation);
+    }
+
+
+    public Map<ControllerMetrics.Operation, Long> getOperationCounts() {
+        return operationCounts;
+    }
+
+
+    public long getRejectedCount(Class<? extends OrganizationAndPaymentsException> reason) {
+        return rejections.getOrDefault(reason, 0L);
+    }
+
+
+    public Map<Class<? extends OrganizationAndPaymentsException>, Long> getRejections() {
+        return rejections;
+    }
+
+
+    // Holds only the sampled calls; see ControllerMetrics.
+    public LatencyHistogram getLatency(ControllerMetrics.Operation operation) {
+        return latencies.get(operation);
+    }
+
+
+    public int getPaymentCount() {
+        return paymentCount;
+    }
+
+
+    public int getOrganizationCount() {
+        return organizationCount;
+    }
+
+
+    public int getPurposeCount() {
+        return purposeCount;
+    }
+}
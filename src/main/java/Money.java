@@ -0,0 +1,52 @@
+import Exceptions.BalanceOverflowException;
+
+public final class Money {
+
+    public static final int MINOR_UNITS = 100;
+
+    private static final double LIMIT = 0x1p63;
+
+
+    private Money() {
+    }
+
+
+    public static boolean isRepresentable(double amount) {
+        return Math.abs(amount * MINOR_UNITS) < LIMIT;
+    }
+
+
+    public static long toMinorUnits(double amount) {
+        if (!isRepresentable(amount)) throw new ArithmeticException("amount out of range: " + amount);
+        return Math.round(amount * MINOR_UNITS);
+    }
+
+
+    public static double toDouble(long minorUnits) {
+        return (double) minorUnits / MINOR_UNITS;
+    }
+
+
+    public static long add(long balance, long amount) throws BalanceOverflowException {
+        if (addOverflows(balance, amount)) throw new BalanceOverflowException();
+        return balance + amount;
+    }
+
+
+    public static long subtract(long balance, long amount) throws BalanceOverflowException {
+        if (subtractOverflows(balance, amount)) throw new BalanceOverflowException();
+        return balance - amount;
+    }
+
+
+    public static boolean addOverflows(long balance, long amount) {
+        long result = balance + amount;
+        return ((balance ^ result) & (amount ^ result)) < 0;
+    }
+
+
+    public static boolean subtractOverflows(long balance, long amount) {
+        long result = balance - amount;
+        return ((balance ^ amount) & (balance ^ result)) < 0;
+    }
+}
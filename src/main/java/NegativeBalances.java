@@ -0,0 +1,51 @@
+import java.util.Arrays;
+
+/**
+ * Ids of the organizations whose balance is below zero. Membership is updated as balances
+ * cross zero, so listing them costs O(k log k) in the number of members instead of a scan
+ * over every organization.
+ */
+public class NegativeBalances {
+
+    private int[] members = new int[16];
+    private int[] slots = new int[16];
+    private int size;
+
+
+    public boolean contains(int id) {
+        return id < slots.length && slots[id] != 0;
+    }
+
+
+    public void add(int id) {
+        if (contains(id)) return;
+        if (id >= slots.length) slots = Arrays.copyOf(slots, Math.max(id + 1, slots.length * 2));
+        if (size == members.length) members = Arrays.copyOf(members, size * 2);
+        members[size++] = id;
+        slots[id] = size;
+    }
+
+
+    public void remove(int id) {
+        if (!contains(id)) return;
+        // The last member takes over the freed slot, so removal stays O(1).
+        int slot = slots[id] - 1;
+        int last = members[--size];
+        members[slot] = last;
+        slots[last] = slot + 1;
+        slots[id] = 0;
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+
+    // Ascending ids, which is the order organizations were added in.
+    public int[] toArray() {
+        int[] ids = Arrays.copyOf(members, size);
+        Arrays.sort(ids);
+        return ids;
+    }
+}
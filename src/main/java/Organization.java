@@ -1,33 +1,36 @@
+import Exceptions.BalanceOverflowException;
 import Exceptions.EmptyOrganizationNameException;
 import Exceptions.InvalidRegistrationNumberFormatException;
 import Exceptions.OrganizationAndPaymentsException;
 
 import java.util.ArrayList;
-import java.util.regex.*;
 
 public class Organization {
 
     private String  organizationName;
     private String registrationNumber;
-    private double balance;
+    private long balance;
+    private int id = -1;
 
 
     public Organization(String organizationName,String registrationNumber,double balance) throws OrganizationAndPaymentsException {
 
         if(organizationName.isEmpty()) throw new EmptyOrganizationNameException();
-        if(!valNumber(registrationNumber)) throw new InvalidRegistrationNumberFormatException();
+        if(!RegistrationNumberValidator.isValid(registrationNumber)) throw new InvalidRegistrationNumberFormatException();
+        if(!Money.isRepresentable(balance)) throw new BalanceOverflowException();
         this.organizationName = organizationName;
         this.registrationNumber = registrationNumber;
-        this.balance = balance;
+        this.balance = Money.toMinorUnits(balance);
 
     }
-    private boolean valNumber(String input) {
-        String phoneRegex = "[0-9]{8}";
-        Pattern phonePattern = Pattern.compile(phoneRegex);
-        Matcher matcher = phonePattern.matcher(input);
-        return matcher.find();
+
+    static Organization withMinorUnits(String organizationName, String registrationNumber, long balance) throws OrganizationAndPaymentsException {
+        Organization organization = new Organization(organizationName, registrationNumber, 0);
+        organization.balance = balance;
+        return organization;
     }
 
+
     public String getOrganizationName() {
         return organizationName;
     }
@@ -38,10 +41,26 @@ public class Organization {
 
 
     public double getBalance() {
+        return Money.toDouble(balance);
+    }
+
+    public long getBalanceMinor() {
         return balance;
     }
 
     public void setBalance(double balance) {
+        this.balance = Money.toMinorUnits(balance);
+    }
+
+    public void setBalanceMinor(long balance) {
         this.balance = balance;
     }
-}
\ No newline at end of file
+
+    int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+}
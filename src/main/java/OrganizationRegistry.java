@@ -0,0 +1,60 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+public class OrganizationRegistry implements Iterable<Organization> {
+
+    private HashMap<String, Organization> organizationsByName = new HashMap<>();
+    private HashMap<String, Organization> organizationsByRegistrationNumber = new HashMap<>();
+    private Organization[] organizations = new Organization[16];
+    private int size;
+
+
+    public Organization getByName(String organizationName) {
+        return organizationsByName.get(organizationName);
+    }
+
+
+    public Organization getByRegistrationNumber(String registrationNumber) {
+        return organizationsByRegistrationNumber.get(registrationNumber);
+    }
+
+
+    public Organization get(int id) {
+        if (id < 0 || id >= size) throw new IndexOutOfBoundsException("id " + id + ", size " + size);
+        return organizations[id];
+    }
+
+
+    public void add(Organization organization) {
+        organization.setId(size);
+        organizationsByName.put(organization.getOrganizationName(), organization);
+        organizationsByRegistrationNumber.put(organization.getRegistrationNumber(), organization);
+        if (size == organizations.length) organizations = Arrays.copyOf(organizations, size * 2);
+        organizations[size++] = organization;
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+
+    public List<Organization> getOrganizations() {
+        return Collections.unmodifiableList(Arrays.asList(organizations).subList(0, size));
+    }
+
+
+    @Override
+    public Iterator<Organization> iterator() {
+        return getOrganizations().iterator();
+    }
+
+
+    // Organizations indexed by id, for ids below the current size; like StringDictionary.prefix, never changed in place.
+    Organization[] prefix() {
+        return organizations;
+    }
+}
@@ -8,25 +8,92 @@ public class Payment {
    private String uniqueCode;
    private String paymentPurpose;
    private LocalDateTime paymentDateTime;
-   private double paymentSum;
+   private long paymentSum;
+
+   private static volatile LocalDateTime lastNow = LocalDateTime.MIN;
 
    public Payment(Organization senderOrganization, Organization recieverOrganization, String uniqueCode, String paymentPurpose,LocalDateTime paymentDateTime, double paymentSum) throws OrganizationAndPaymentsException {
+      this(senderOrganization, recieverOrganization, uniqueCode, paymentPurpose, paymentDateTime, toMinorUnits(paymentSum));
+   }
 
-      if(senderOrganization.getOrganizationName().equals(recieverOrganization.getOrganizationName())) throw new PaymentForItselfException();
-      if(uniqueCode.isEmpty()) throw new EmptyPaymentIdException();
-      if(paymentPurpose.isEmpty()) throw new EmptyPaymentPurposeException();
-      if(paymentDateTime.isAfter(LocalDateTime.now())) throw new InvalidPaymentTimeException();
-      if (paymentSum <= 0) throw new InvalidPaymentSumException();
+   private Payment(Organization senderOrganization, Organization recieverOrganization, String uniqueCode, String paymentPurpose,LocalDateTime paymentDateTime, long paymentSumMinor) throws OrganizationAndPaymentsException {
+
+      PaymentStatus status = validate(senderOrganization, recieverOrganization, uniqueCode, paymentPurpose, paymentDateTime, paymentSumMinor);
+      if (status != PaymentStatus.ACCEPTED) throw status.newException();
 
       this.uniqueCode = uniqueCode;
       this.paymentPurpose = paymentPurpose;
       this.paymentDateTime = paymentDateTime;
-      this.paymentSum = paymentSum;
+      this.paymentSum = paymentSumMinor;
       this.senderOrganization = senderOrganization;
       this.recieverOrganization = recieverOrganization;
 
    }
 
+   private Payment() {
+   }
+
+   // For arguments validate() has already accepted.
+   static Payment validated(Organization senderOrganization, Organization recieverOrganization, String uniqueCode, String paymentPurpose,LocalDateTime paymentDateTime, long paymentSumMinor) {
+      Payment payment = new Payment();
+      payment.uniqueCode = uniqueCode;
+      payment.paymentPurpose = paymentPurpose;
+      payment.paymentDateTime = paymentDateTime;
+      payment.paymentSum = paymentSumMinor;
+      payment.senderOrganization = senderOrganization;
+      payment.recieverOrganization = recieverOrganization;
+      return payment;
+   }
+
+   static Payment withMinorUnits(Organization senderOrganization, Organization recieverOrganization, String uniqueCode, String paymentPurpose,LocalDateTime paymentDateTime, long paymentSumMinor) throws OrganizationAndPaymentsException {
+      return new Payment(senderOrganization, recieverOrganization, uniqueCode, paymentPurpose, paymentDateTime, paymentSumMinor);
+   }
+
+   // Same checks, in the same order, as the constructor, without allocating on rejection.
+   static PaymentStatus validate(Organization senderOrganization, Organization recieverOrganization, String uniqueCode, String paymentPurpose,LocalDateTime paymentDateTime, long paymentSumMinor) {
+      if(isSameOrganization(senderOrganization, recieverOrganization)) return PaymentStatus.PAYMENT_FOR_ITSELF;
+      return validateDetails(uniqueCode, paymentPurpose, paymentDateTime, paymentSumMinor);
+   }
+
+   // The checks that need no controller state, for callers that only have the organization names.
+   static PaymentStatus validateFields(String senderName, String recieverName, String uniqueCode, String paymentPurpose,LocalDateTime paymentDateTime, long paymentSumMinor) {
+      if(senderName.equals(recieverName)) return PaymentStatus.PAYMENT_FOR_ITSELF;
+      return validateDetails(uniqueCode, paymentPurpose, paymentDateTime, paymentSumMinor);
+   }
+
+   private static PaymentStatus validateDetails(String uniqueCode, String paymentPurpose,LocalDateTime paymentDateTime, long paymentSumMinor) {
+      if(uniqueCode.isEmpty()) return PaymentStatus.EMPTY_PAYMENT_ID;
+      if(paymentPurpose.isEmpty()) return PaymentStatus.EMPTY_PAYMENT_PURPOSE;
+      if(isInFuture(paymentDateTime)) return PaymentStatus.INVALID_PAYMENT_TIME;
+      if (paymentSumMinor <= 0) return PaymentStatus.INVALID_PAYMENT_SUM;
+      return PaymentStatus.ACCEPTED;
+   }
+
+   // A registry holds one object per name and its id is the name's code, so registered organizations never need a string comparison.
+   private static boolean isSameOrganization(Organization senderOrganization, Organization recieverOrganization) {
+      if (senderOrganization == recieverOrganization) return true;
+      if (senderOrganization.getId() >= 0 && recieverOrganization.getId() >= 0) return false;
+      return senderOrganization.getOrganizationName().equals(recieverOrganization.getOrganizationName());
+   }
+
+   // A time not after a previously observed "now" has already shown on the wall clock, so the clock is only read
+   // again for times past that point.
+   private static boolean isInFuture(LocalDateTime paymentDateTime) {
+      if (!paymentDateTime.isAfter(lastNow)) return false;
+      LocalDateTime now = LocalDateTime.now();
+      lastNow = now;
+      return paymentDateTime.isAfter(now);
+   }
+
+   // Swaps in the dictionary's instance of an equal purpose, so stored payments share one string per distinct purpose.
+   void setPaymentPurpose(String paymentPurpose) {
+      this.paymentPurpose = paymentPurpose;
+   }
+
+   static long toMinorUnits(double paymentSum) {
+      return Money.isRepresentable(paymentSum) ? Money.toMinorUnits(paymentSum) : 0;
+   }
+
    public Organization getSenderOrganization() {
       return senderOrganization;
    }
@@ -48,6 +115,10 @@ public class Payment {
    }
 
    public double getPaymentSum() {
+      return Money.toDouble(paymentSum);
+   }
+
+   public long getPaymentSumMinor() {
       return paymentSum;
    }
 
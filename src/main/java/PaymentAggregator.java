@@ -0,0 +1,94 @@
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+
+/**
+ * Grouped aggregation over a list of payments on a {@link ForkJoinPool}. The list is split in
+ * halves down to chunks of {@value #LEAF_SIZE} payments; each chunk is grouped into its own map
+ * of collector accumulators, and sibling maps are merged with the collector's combiner on the way
+ * back up. The list must not change while the aggregation runs, which holds for the prefix views
+ * a {@link PaymentStore} hands out.
+ */
+public final class PaymentAggregator {
+
+    static final int LEAF_SIZE = 1 << 14;
+
+
+    private PaymentAggregator() {
+    }
+
+
+    public static <K, A, R> HashMap<K, R> aggregate(List<Payment> payments, Predicate<? super Payment> filter, Function<? super Payment, ? extends K> groupingKey,
+                                                    Collector<? super Payment, A, R> reducer, ForkJoinPool pool) {
+        HashMap<K, A> accumulators = pool.invoke(new Task<K, A>(payments, 0, payments.size(), filter, groupingKey, reducer));
+        HashMap<K, R> results = new HashMap<>(accumulators.size() * 2);
+        for (Map.Entry<K, A> x : accumulators.entrySet()) {
+            results.put(x.getKey(), reducer.finisher().apply(x.getValue()));
+        }
+        return results;
+    }
+
+
+    private static class Task<K, A> extends RecursiveTask<HashMap<K, A>> {
+
+        private final List<Payment> payments;
+        private final int from;
+        private final int to;
+        private final Predicate<? super Payment> filter;
+        private final Function<? super Payment, ? extends K> groupingKey;
+        private final Collector<? super Payment, A, ?> reducer;
+
+
+        Task(List<Payment> payments, int from, int to, Predicate<? super Payment> filter, Function<? super Payment, ? extends K> groupingKey, Collector<? super Payment, A, ?> reducer) {
+            this.payments = payments;
+            this.from = from;
+            this.to = to;
+            this.filter = filter;
+            this.groupingKey = groupingKey;
+            this.reducer = reducer;
+        }
+
+
+        @Override
+        protected HashMap<K, A> compute() {
+            if (to - from <= LEAF_SIZE) {
+                HashMap<K, A> accumulators = new HashMap<>();
+                BiConsumer<A, ? super Payment> accumulator = reducer.accumulator();
+                for (int i = from; i < to; i++) {
+                    Payment x = payments.get(i);
+                    if (!filter.test(x)) continue;
+                    K key = groupingKey.apply(x);
+                    A group = accumulators.computeIfAbsent(key, unused -> reducer.supplier().get());
+                    accumulate(accumulator, group, x);
+                }
+                return accumulators;
+            }
+            int middle = (from + to) >>> 1;
+            Task<K, A> left = new Task<K, A>(payments, from, middle, filter, groupingKey, reducer);
+            left.fork();
+            HashMap<K, A> right = new Task<K, A>(payments, middle, to, filter, groupingKey, reducer).compute();
+            return merge(left.join(), right);
+        }
+
+
+        // Left holds the earlier payments, so it stays first in the combiner for order-sensitive collectors.
+        private HashMap<K, A> merge(HashMap<K, A> left, HashMap<K, A> right) {
+            for (Map.Entry<K, A> x : right.entrySet()) {
+                left.merge(x.getKey(), x.getValue(), reducer.combiner()::apply);
+            }
+            return left;
+        }
+
+
+        @SuppressWarnings("unchecked")
+        private static <A> void accumulate(BiConsumer<A, ? super Payment> accumulator, A group, Payment payment) {
+            ((BiConsumer<A, Payment>) accumulator).accept(group, payment);
+        }
+    }
+}
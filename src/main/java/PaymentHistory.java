@@ -0,0 +1,69 @@
+import java.util.Arrays;
+
+/**
+ * Positions of each organization's outgoing and incoming payments, indexed by organization id.
+ * Lists only grow and positions only increase, so an index into a list is a stable cursor and
+ * listing a page costs the page size, not the total number of payments.
+ */
+public class PaymentHistory {
+
+    private static final int[] EMPTY = new int[0];
+
+    private int[][] outgoing = new int[16][];
+    private int[] outgoingSizes = new int[16];
+    private int[][] incoming = new int[16][];
+    private int[] incomingSizes = new int[16];
+
+
+    public void add(int senderId, int recieverId, int position) {
+        ensureOrganization(Math.max(senderId, recieverId));
+        outgoing[senderId] = append(outgoing[senderId], outgoingSizes[senderId]++, position);
+        incoming[recieverId] = append(incoming[recieverId], incomingSizes[recieverId]++, position);
+    }
+
+
+    public int getOutgoingCount(int organizationId) {
+        return organizationId < outgoingSizes.length ? outgoingSizes[organizationId] : 0;
+    }
+
+
+    public int getIncomingCount(int organizationId) {
+        return organizationId < incomingSizes.length ? incomingSizes[organizationId] : 0;
+    }
+
+
+    public int[] getOutgoing(int organizationId, int cursor, int limit) {
+        if (organizationId >= outgoing.length) return EMPTY;
+        return page(outgoing[organizationId], outgoingSizes[organizationId], cursor, limit);
+    }
+
+
+    public int[] getIncoming(int organizationId, int cursor, int limit) {
+        if (organizationId >= incoming.length) return EMPTY;
+        return page(incoming[organizationId], incomingSizes[organizationId], cursor, limit);
+    }
+
+
+    private void ensureOrganization(int organizationId) {
+        if (organizationId < outgoing.length) return;
+        int length = Math.max(organizationId + 1, outgoing.length * 2);
+        outgoing = Arrays.copyOf(outgoing, length);
+        outgoingSizes = Arrays.copyOf(outgoingSizes, length);
+        incoming = Arrays.copyOf(incoming, length);
+        incomingSizes = Arrays.copyOf(incomingSizes, length);
+    }
+
+
+    private static int[] append(int[] positions, int size, int position) {
+        if (positions == null) positions = new int[4];
+        else if (size == positions.length) positions = Arrays.copyOf(positions, size * 2);
+        positions[size] = position;
+        return positions;
+    }
+
+
+    private static int[] page(int[] positions, int size, int cursor, int limit) {
+        if (cursor >= size) return EMPTY;
+        return Arrays.copyOfRange(positions, cursor, cursor + Math.min(limit, size - cursor));
+    }
+}
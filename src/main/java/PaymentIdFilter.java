@@ -0,0 +1,138 @@
+import java.io.IOException;
+
+/**
+ * Blocked Bloom filter over payment codes, so most new codes are known to be new without probing
+ * the payment store. Each code sets {@link #HASHES} bits inside one 512-bit block, which keeps a
+ * lookup to a single cache line. The filter only ever gains bits; once it holds more codes than it
+ * was sized for, its owner replaces it with a larger one.
+ */
+public class PaymentIdFilter {
+
+    static final int DEFAULT_CAPACITY = 1 << 16;
+    static final int HASHES = 8;
+    private static final int CODES_PER_BLOCK = 32;
+    private static final int BLOCK_WORDS = 8;
+    static final int MAX_BLOCKS = 1 << 26;
+
+    private final long[] bits;
+    private final int blockMask;
+    private final int maxBlocks;
+    private int size;
+
+
+    public PaymentIdFilter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+
+    public PaymentIdFilter(int capacity) {
+        this(blocksFor(capacity, MAX_BLOCKS), MAX_BLOCKS);
+    }
+
+
+    private PaymentIdFilter(int blocks, int maxBlocks) {
+        bits = new long[blocks * BLOCK_WORDS];
+        blockMask = blocks - 1;
+        this.maxBlocks = maxBlocks;
+    }
+
+
+    // A lower maxBlocks lets tests reach the largest filter without allocating 4 GB.
+    static PaymentIdFilter withMaxBlocks(int capacity, int maxBlocks) {
+        return new PaymentIdFilter(blocksFor(capacity, maxBlocks), maxBlocks);
+    }
+
+
+    public boolean mightContain(String uniqueCode) {
+        long hash = hash(uniqueCode);
+        int block = ((int) (hash >>> 32) & blockMask) * BLOCK_WORDS;
+        for (int i = 0; i < HASHES; i++) {
+            hash = hash * 0x9E3779B97F4A7C15L + 0x632BE59BD9B4E019L;
+            int bit = (int) (hash >>> 55);
+            if ((bits[block + (bit >>> 6)] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+
+    public void add(String uniqueCode) {
+        long hash = hash(uniqueCode);
+        int block = ((int) (hash >>> 32) & blockMask) * BLOCK_WORDS;
+        for (int i = 0; i < HASHES; i++) {
+            hash = hash * 0x9E3779B97F4A7C15L + 0x632BE59BD9B4E019L;
+            int bit = (int) (hash >>> 55);
+            bits[block + (bit >>> 6)] |= 1L << bit;
+        }
+        size++;
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+
+    // The largest filter holds 2^31 codes, one more than an int can count.
+    public int getCapacity() {
+        return capacityOf(blockMask + 1);
+    }
+
+
+    // Past capacity the false-positive rate climbs quickly; the bits stay correct, only less useful.
+    public boolean isFull() {
+        return size > getCapacity() && blockMask + 1 < maxBlocks;
+    }
+
+
+    public PaymentIdFilter copy() {
+        PaymentIdFilter copy = new PaymentIdFilter(blockMask + 1, maxBlocks);
+        System.arraycopy(bits, 0, copy.bits, 0, bits.length);
+        copy.size = size;
+        return copy;
+    }
+
+
+    // The block count rather than the capacity, which is clamped for the largest filter.
+    public void writeTo(SnapshotOutput output) throws IOException {
+        output.putInt(blockMask + 1);
+        output.putInt(size);
+        for (long x : bits) {
+            output.putLong(x);
+        }
+    }
+
+
+    public static PaymentIdFilter readFrom(SnapshotInput input) throws IOException {
+        int blocks = input.getInt();
+        if (blocks < 1 || blocks > MAX_BLOCKS || Integer.bitCount(blocks) != 1) throw new IOException("corrupt payment id filter block count " + blocks);
+        PaymentIdFilter filter = new PaymentIdFilter(blocks, MAX_BLOCKS);
+        filter.size = input.getInt();
+        for (int i = 0; i < filter.bits.length; i++) {
+            filter.bits[i] = input.getLong();
+        }
+        return filter;
+    }
+
+
+    static int capacityOf(int blocks) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) blocks * CODES_PER_BLOCK);
+    }
+
+
+    private static int blocksFor(int capacity, int maxBlocks) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        return Math.min(maxBlocks, Integer.highestOneBit(Math.max(1, (capacity - 1) / CODES_PER_BLOCK)) << 1);
+    }
+
+
+    // FNV-1a over the chars with a murmur finalizer; String.hashCode has too few bits for a hundred million codes.
+    static long hash(String uniqueCode) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < uniqueCode.length(); i++) {
+            hash = (hash ^ uniqueCode.charAt(i)) * 0x100000001B3L;
+        }
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+}
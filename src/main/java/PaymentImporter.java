@@ -0,0 +1,263 @@
+import Exceptions.OrganizationAndPaymentsException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams payment records from a file into a {@link Controller}.
+ * <p>
+ * A reader thread cuts the input into chunks at record boundaries and hands each to a pool of
+ * parser threads, which parse the records and run the checks that need no controller state.
+ * The calling thread applies the parsed records in input order through
+ * {@link Controller#tryAddPayment}, so the controller is only ever touched by one thread.
+ * At most {@code chunksInFlight} chunks are parsed or waiting to be applied at any time; the
+ * reader blocks beyond that, which bounds memory to roughly {@code chunksInFlight * chunkSize}.
+ * <p>
+ * A record that fails a stateless check is reported under that check even if a controller check,
+ * such as the duplicate check, would also reject it.
+ */
+public class PaymentImporter {
+
+    public enum Format {
+        CSV,
+        JSON_LINES,
+    }
+
+
+    public static final int DEFAULT_CHUNK_SIZE = 4 << 20;
+
+    private static final Future<ParsedChunk> END = CompletableFuture.completedFuture(null);
+    private static final long HAND_OFF_POLL_MILLIS = 10;
+
+    private final Controller controller;
+    private final int parallelism;
+    private final int chunkSize;
+    private final int chunksInFlight;
+
+
+    public PaymentImporter(Controller controller) {
+        this(controller, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+
+    public PaymentImporter(Controller controller, int parallelism, int chunkSize, int chunksInFlight) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be positive");
+        if (chunkSize < 1) throw new IllegalArgumentException("chunk size must be positive");
+        if (chunksInFlight < 1) throw new IllegalArgumentException("chunks in flight must be positive");
+        this.controller = controller;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.chunksInFlight = chunksInFlight;
+    }
+
+
+    public ImportReport importFile(Path file, Format format) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return importFrom(channel, format);
+        }
+    }
+
+
+    public ImportReport importFrom(ReadableByteChannel channel, Format format) throws IOException {
+        long start = System.nanoTime();
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService parsers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "payment-import-parser-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArrayBlockingQueue<Future<ParsedChunk>> chunks = new ArrayBlockingQueue<>(chunksInFlight);
+        AtomicBoolean stopped = new AtomicBoolean();
+        Thread reader = new Thread(() -> read(channel, format, parsers, chunks, stopped), "payment-import-reader");
+        reader.setDaemon(true);
+        reader.start();
+        long recordCount = 0;
+        long acceptedCount = 0;
+        long bytesRead = 0;
+        HashMap<Class<? extends OrganizationAndPaymentsException>, long[]> rejections = new HashMap<>();
+        try {
+            for (ParsedChunk chunk = chunks.take().get(); chunk != null; chunk = chunks.take().get()) {
+                bytesRead += chunk.bytes;
+                for (int i = 0; i < chunk.requests.size(); i++) {
+                    recordCount++;
+                    Class<? extends OrganizationAndPaymentsException> reason = chunk.rejections.get(i);
+                    if (reason == null) {
+                        PaymentRequest x = chunk.requests.get(i);
+                        PaymentStatus status = controller.tryAddPayment(x.getSenderName(), x.getRecieverName(), x.getUniqueCode(), x.getPaymentPurpose(), x.getPaymentDateTime(), x.getPaymentSum());
+                        if (status.isAccepted()) {
+                            acceptedCount++;
+                            continue;
+                        }
+                        reason = status.getExceptionType();
+                    }
+                    rejections.computeIfAbsent(reason, type -> new long[1])[0]++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("payment import was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            // Interrupting the reader would close the caller's channel if it is interruptible; the flag stops it after its current read instead.
+            stopped.set(true);
+            parsers.shutdownNow();
+        }
+        LinkedHashMap<Class<? extends OrganizationAndPaymentsException>, Long> counts = new LinkedHashMap<>();
+        for (Map.Entry<Class<? extends OrganizationAndPaymentsException>, long[]> x : rejections.entrySet()) {
+            counts.put(x.getKey(), x.getValue()[0]);
+        }
+        return new ImportReport(recordCount, acceptedCount, bytesRead, System.nanoTime() - start, counts);
+    }
+
+
+    private void read(ReadableByteChannel channel, Format format, ExecutorService parsers, BlockingQueue<Future<ParsedChunk>> chunks, AtomicBoolean stopped) {
+        Future<ParsedChunk> last = END;
+        long bytesHanded = 0;
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+            while (!stopped.get() && channel.read(buffer) >= 0) {
+                if (buffer.hasRemaining()) continue;
+                int end = lastRecordEnd(buffer, format);
+                if (end < 0) {
+                    // A single record is longer than the chunk, so the chunk grows to hold it.
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+                    continue;
+                }
+                byte[] bytes = Arrays.copyOf(buffer.array(), end);
+                boolean first = bytesHanded == 0;
+                if (!handOff(chunks, parsers.submit(() -> parse(bytes, format, first)), stopped)) return;
+                bytesHanded += end;
+                buffer.flip().position(end);
+                buffer.compact();
+            }
+            if (buffer.position() > 0) {
+                byte[] bytes = Arrays.copyOf(buffer.array(), buffer.position());
+                boolean first = bytesHanded == 0;
+                if (!handOff(chunks, parsers.submit(() -> parse(bytes, format, first)), stopped)) return;
+            }
+        } catch (IOException | RuntimeException e) {
+            last = CompletableFuture.failedFuture(e);
+        } catch (InterruptedException e) {
+            // Nothing interrupts the reader on purpose; if something does, it just stops.
+            return;
+        }
+        try {
+            handOff(chunks, last, stopped);
+        } catch (InterruptedException e) {
+            // As above.
+        }
+    }
+
+
+    // Waits for room in the queue; false once the apply stage has stopped and no one will take the chunk.
+    private static boolean handOff(BlockingQueue<Future<ParsedChunk>> chunks, Future<ParsedChunk> chunk, AtomicBoolean stopped) throws InterruptedException {
+        while (!stopped.get()) {
+            if (chunks.offer(chunk, HAND_OFF_POLL_MILLIS, TimeUnit.MILLISECONDS)) return true;
+        }
+        return false;
+    }
+
+
+    // Length of the buffered input up to and including its last record-ending line break, or -1 if there is none.
+    private static int lastRecordEnd(ByteBuffer buffer, Format format) {
+        byte[] bytes = buffer.array();
+        if (format == Format.CSV) {
+            // Chunks start at record boundaries, so the quote state is known from the front.
+            int end = -1;
+            boolean quoted = false;
+            for (int i = 0; i < buffer.position(); i++) {
+                if (bytes[i] == '"') quoted = !quoted;
+                else if (bytes[i] == '\n' && !quoted) end = i + 1;
+            }
+            return end;
+        }
+        for (int i = buffer.position() - 1; i >= 0; i--) {
+            if (bytes[i] == '\n') return i + 1;
+        }
+        return -1;
+    }
+
+
+    // Index of the line break ending the record that starts at start, or limit if there is none.
+    // A CSV line break inside quotes belongs to the field; an escaped quote flips the state twice, so counting quotes is enough.
+    private static int recordEnd(byte[] bytes, int start, int limit, Format format) {
+        boolean quoted = false;
+        for (int i = start; i < limit; i++) {
+            if (bytes[i] == '"' && format == Format.CSV) quoted = !quoted;
+            else if (bytes[i] == '\n' && !quoted) return i;
+        }
+        return limit;
+    }
+
+
+    // Only the first line of the first chunk may be a CSV header.
+    private static ParsedChunk parse(byte[] bytes, Format format, boolean first) {
+        ParsedChunk chunk = new ParsedChunk(bytes.length);
+        int lineStart = 0;
+        boolean mayBeHeader = first && format == Format.CSV;
+        while (lineStart < bytes.length) {
+            int lineEnd = recordEnd(bytes, lineStart, bytes.length, format);
+            int end = lineEnd > lineStart && bytes[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+            String line = new String(bytes, lineStart, end - lineStart, StandardCharsets.UTF_8);
+            lineStart = lineEnd + 1;
+            if (mayBeHeader) {
+                mayBeHeader = false;
+                if (PaymentRecordParser.isCsvHeader(line)) continue;
+            }
+            if (line.isBlank()) continue;
+            try {
+                PaymentRequest request = format == Format.CSV ? PaymentRecordParser.parseCsv(line) : PaymentRecordParser.parseJson(line);
+                PaymentStatus status = Payment.validateFields(request.getSenderName(), request.getRecieverName(), request.getUniqueCode(), request.getPaymentPurpose(),
+                        request.getPaymentDateTime(), Payment.toMinorUnits(request.getPaymentSum()));
+                chunk.add(request, status.getExceptionType());
+            } catch (OrganizationAndPaymentsException e) {
+                chunk.add(null, e.getClass());
+            }
+        }
+        return chunk;
+    }
+
+
+    private static class ParsedChunk {
+
+        private final long bytes;
+        private final ArrayList<PaymentRequest> requests = new ArrayList<>();
+        // Null where the record passed every stateless check.
+        private final ArrayList<Class<? extends OrganizationAndPaymentsException>> rejections = new ArrayList<>();
+
+
+        ParsedChunk(long bytes) {
+            this.bytes = bytes;
+        }
+
+
+        void add(PaymentRequest request, Class<? extends OrganizationAndPaymentsException> rejection) {
+            requests.add(request);
+            rejections.add(rejection);
+        }
+    }
+}
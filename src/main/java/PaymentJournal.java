@@ -0,0 +1,371 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log of accepted organizations and payments.
+ * <p>
+ * Records are buffered in memory and handed to a background thread, which writes and fsyncs them
+ * once {@code groupCommitRecords} are pending or {@code groupCommitMillis} have passed, so callers
+ * never wait for the disk unless they ask to through {@link #sync()}. If a background write fails,
+ * the journal is failed for good: every later append, sync and close throws, and the flusher thread
+ * ends by rethrowing the failure to its uncaught exception handler.
+ * Each record is {@code [length][sequence][type][payload][crc32]}, with consecutive sequence numbers.
+ * A torn or corrupt tail left by a crash is dropped when the journal is opened again; a segment that
+ * is only replayed was closed before the next one started, so damage anywhere in it is an error.
+ */
+public class PaymentJournal implements Closeable {
+
+    public static final int DEFAULT_GROUP_COMMIT_RECORDS = 1024;
+    public static final long DEFAULT_GROUP_COMMIT_MILLIS = 5;
+
+    static final int MAGIC = 0x504A4E31;
+    static final int HEADER_SIZE = 4;
+    static final byte ORGANIZATION = 1;
+    static final byte PAYMENT = 2;
+
+    private static final int RECORD_OVERHEAD = 4 + 8 + 1 + 4;
+
+    private final FileChannel channel;
+    private final int groupCommitRecords;
+    private final long groupCommitMillis;
+    private final Thread flusher;
+    private final CRC32 crc = new CRC32();
+    private final Object commitLock = new Object();
+
+    private ByteBuffer active = ByteBuffer.allocate(1 << 20);
+    private ByteBuffer spare = ByteBuffer.allocate(1 << 20);
+    private int recordStart;
+    private int pendingRecords;
+    private long nextSequence;
+    private long durableSequence;
+    private IOException failure;
+    private boolean closed;
+
+
+    private PaymentJournal(FileChannel channel, long nextSequence, int groupCommitRecords, long groupCommitMillis) {
+        this.channel = channel;
+        this.nextSequence = nextSequence;
+        this.durableSequence = nextSequence - 1;
+        this.groupCommitRecords = groupCommitRecords;
+        this.groupCommitMillis = groupCommitMillis;
+        this.flusher = new Thread(this::runFlusher, "payment-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+
+    public static PaymentJournal open(Path file, JournalListener listener) throws IOException {
+        return open(file, 0, listener);
+    }
+
+
+    public static PaymentJournal open(Path file, long afterSequence, JournalListener listener) throws IOException {
+        return open(file, afterSequence, listener, DEFAULT_GROUP_COMMIT_RECORDS, DEFAULT_GROUP_COMMIT_MILLIS);
+    }
+
+
+    // Records up to afterSequence are already reflected elsewhere (a snapshot or an earlier segment) and are not replayed.
+    public static PaymentJournal open(Path file, long afterSequence, JournalListener listener, int groupCommitRecords, long groupCommitMillis) throws IOException {
+        if (groupCommitRecords < 1 || groupCommitMillis < 1) throw new IllegalArgumentException("group commit limits must be positive");
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long nextSequence = afterSequence + 1;
+            if (channel.size() < HEADER_SIZE) {
+                channel.truncate(0);
+                channel.write(ByteBuffer.allocate(HEADER_SIZE).putInt(0, MAGIC), 0);
+                channel.force(true);
+            } else {
+                long[] end = replay(channel, afterSequence, listener, true);
+                nextSequence = end[1] + 1;
+                if (end[0] < channel.size()) {
+                    channel.truncate(end[0]);
+                    channel.force(true);
+                }
+            }
+            channel.position(channel.size());
+            return new PaymentJournal(channel, nextSequence, groupCommitRecords, groupCommitMillis);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+
+    public static long replay(Path file, JournalListener listener) throws IOException {
+        return replay(file, 0, listener);
+    }
+
+
+    public static long replay(Path file, long afterSequence, JournalListener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) return afterSequence;
+            return replay(channel, afterSequence, listener, false)[1];
+        }
+    }
+
+
+    public synchronized long appendOrganization(String name, String registrationNumber, long initialBalanceMinor) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] registrationNumberBytes = registrationNumber.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = beginRecord(ORGANIZATION, 8 + nameBytes.length + registrationNumberBytes.length + 8);
+        putString(buffer, nameBytes);
+        putString(buffer, registrationNumberBytes);
+        buffer.putLong(initialBalanceMinor);
+        return endRecord(buffer);
+    }
+
+
+    public synchronized long appendPayment(String senderName, String recieverName, String uniqueCode, String paymentPurpose, LocalDateTime paymentDateTime, long paymentSumMinor) throws IOException {
+        byte[] senderBytes = senderName.getBytes(StandardCharsets.UTF_8);
+        byte[] recieverBytes = recieverName.getBytes(StandardCharsets.UTF_8);
+        byte[] codeBytes = uniqueCode.getBytes(StandardCharsets.UTF_8);
+        byte[] purposeBytes = paymentPurpose.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = beginRecord(PAYMENT, 16 + senderBytes.length + recieverBytes.length + codeBytes.length + purposeBytes.length + 8 + 4 + 8);
+        putString(buffer, senderBytes);
+        putString(buffer, recieverBytes);
+        putString(buffer, codeBytes);
+        putString(buffer, purposeBytes);
+        buffer.putLong(paymentDateTime.toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(paymentDateTime.getNano());
+        buffer.putLong(paymentSumMinor);
+        return endRecord(buffer);
+    }
+
+
+    public synchronized long getLastSequence() {
+        return nextSequence - 1;
+    }
+
+
+    public synchronized long getDurableSequence() {
+        return durableSequence;
+    }
+
+
+    public void sync() throws IOException {
+        commit();
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            commit();
+        } finally {
+            channel.close();
+        }
+    }
+
+
+    private ByteBuffer beginRecord(byte type, int payloadSize) throws IOException {
+        if (closed) throw new IOException("journal is closed");
+        if (failure != null) throw new IOException("journal write failed", failure);
+        int recordSize = RECORD_OVERHEAD + payloadSize;
+        if (active.remaining() < recordSize) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(active.capacity() * 2, active.position() + recordSize));
+            active.flip();
+            bigger.put(active);
+            active = bigger;
+        }
+        recordStart = active.position();
+        active.putInt(payloadSize);
+        active.putLong(nextSequence);
+        active.put(type);
+        return active;
+    }
+
+
+    private long endRecord(ByteBuffer buffer) {
+        crc.reset();
+        crc.update(buffer.array(), recordStart + 4, buffer.position() - recordStart - 4);
+        buffer.putInt((int) crc.getValue());
+        if (++pendingRecords >= groupCommitRecords) notifyAll();
+        return nextSequence++;
+    }
+
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+
+    private void runFlusher() {
+        while (true) {
+            synchronized (this) {
+                long deadline = System.currentTimeMillis() + groupCommitMillis;
+                long remaining = groupCommitMillis;
+                while (!closed && pendingRecords < groupCommitRecords && remaining > 0) {
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException e) {
+                        // Without the flusher nothing more would reach the disk, so appends must start failing.
+                        failure = new InterruptedIOException("journal flusher was interrupted");
+                        throw new UncheckedIOException(failure);
+                    }
+                    remaining = deadline - System.currentTimeMillis();
+                }
+                if (closed) return;
+            }
+            try {
+                commit();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+
+    private void commit() throws IOException {
+        synchronized (commitLock) {
+            ByteBuffer batch;
+            long lastSequence;
+            synchronized (this) {
+                if (failure != null) throw new IOException("journal write failed", failure);
+                if (pendingRecords == 0) return;
+                batch = active;
+                active = spare;
+                spare = batch;
+                pendingRecords = 0;
+                lastSequence = nextSequence - 1;
+            }
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) channel.write(batch);
+                channel.force(false);
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                }
+                throw e;
+            } finally {
+                batch.clear();
+            }
+            synchronized (this) {
+                durableSequence = lastSequence;
+            }
+        }
+    }
+
+
+    // Stops at the first damaged record if dropTornTail is set, and fails on it otherwise.
+    private static long[] replay(FileChannel channel, long afterSequence, JournalListener listener, boolean dropTornTail) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        if (header.getInt(0) != MAGIC) throw new IOException("not a payment journal");
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        CRC32 crc = new CRC32();
+        long position = HEADER_SIZE;
+        long lastSequence = afterSequence;
+        long previousSequence = -1;
+        long fileSize = channel.size();
+        buffer.limit(0);
+        while (position < fileSize) {
+            if (buffer.remaining() < 4 && !fill(channel, buffer, position, 4)) {
+                if (dropTornTail) break;
+                throw new IOException("journal record at offset " + position + " is truncated");
+            }
+            int payloadSize = buffer.getInt(buffer.position());
+            if (payloadSize < 0 || payloadSize > fileSize) {
+                if (dropTornTail) break;
+                throw new IOException("journal record at offset " + position + " has a corrupt length");
+            }
+            int recordSize = RECORD_OVERHEAD + payloadSize;
+            if (buffer.remaining() < recordSize) {
+                if (buffer.capacity() < recordSize) {
+                    buffer = ByteBuffer.allocate(Integer.highestOneBit(recordSize) << 1).limit(0);
+                }
+                if (!fill(channel, buffer, position, recordSize)) {
+                    if (dropTornTail) break;
+                    throw new IOException("journal record at offset " + position + " is truncated");
+                }
+            }
+            int start = buffer.position();
+            crc.reset();
+            crc.update(buffer.array(), start + 4, recordSize - 8);
+            if ((int) crc.getValue() != buffer.getInt(start + recordSize - 4)) {
+                if (dropTornTail) break;
+                throw new IOException("journal record at offset " + position + " fails its checksum");
+            }
+            buffer.getInt();
+            long sequence = buffer.getLong();
+            byte type = buffer.get();
+            // A record with a valid checksum was written whole, so a jump is not a torn tail either way.
+            if (previousSequence >= 0 && sequence != previousSequence + 1) throw new IOException("journal sequence jumps from " + previousSequence + " to " + sequence);
+            previousSequence = sequence;
+            if (sequence > afterSequence) dispatch(type, buffer, listener);
+            buffer.position(start + recordSize);
+            position += recordSize;
+            lastSequence = Math.max(lastSequence, sequence);
+        }
+        return new long[]{position, lastSequence};
+    }
+
+
+    // Refills the buffer with the bytes starting at filePosition; false when fewer than needed remain in the file.
+    private static boolean fill(FileChannel channel, ByteBuffer buffer, long filePosition, int needed) throws IOException {
+        buffer.clear();
+        long offset = filePosition;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) break;
+            offset += read;
+        }
+        buffer.flip();
+        return buffer.remaining() >= needed;
+    }
+
+
+    private static void dispatch(byte type, ByteBuffer buffer, JournalListener listener) throws IOException {
+        try {
+            if (type == ORGANIZATION) {
+                String name = getString(buffer);
+                String registrationNumber = getString(buffer);
+                long initialBalance = buffer.getLong();
+                if (listener != null) listener.organizationAdded(name, registrationNumber, initialBalance);
+            } else if (type == PAYMENT) {
+                String senderName = getString(buffer);
+                String recieverName = getString(buffer);
+                String uniqueCode = getString(buffer);
+                String paymentPurpose = getString(buffer);
+                LocalDateTime paymentDateTime = LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+                long paymentSum = buffer.getLong();
+                if (listener != null) listener.paymentAdded(senderName, recieverName, uniqueCode, paymentPurpose, paymentDateTime, paymentSum);
+            } else {
+                throw new IOException("unknown journal record type " + type);
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("journal replay failed", e);
+        }
+    }
+
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
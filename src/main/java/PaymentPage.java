@@ -0,0 +1,34 @@
+import java.util.ArrayList;
+
+/**
+ * One page of an organization's payment history, oldest first. Pass {@link #getNextCursor()} to
+ * the same query to continue where this page ended.
+ */
+public class PaymentPage {
+
+    private final ArrayList<String> paymentIds;
+    private final int nextCursor;
+    private final boolean hasMore;
+
+
+    public PaymentPage(ArrayList<String> paymentIds, int nextCursor, boolean hasMore) {
+        this.paymentIds = paymentIds;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+
+    public ArrayList<String> getPaymentIds() {
+        return paymentIds;
+    }
+
+
+    public int getNextCursor() {
+        return nextCursor;
+    }
+
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+}
@@ -0,0 +1,195 @@
+import Exceptions.*;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Parses one import record into a {@link PaymentRequest}.
+ * <p>
+ * CSV records hold {@code senderName,recieverName,uniqueCode,paymentPurpose,paymentDateTime,paymentSum},
+ * one per line; a field may be quoted to contain commas or line breaks, with {@code ""} for a quote
+ * inside it, so a quote left open runs on into the following lines. The first line of a file may be
+ * a header naming the six fields; see {@link #isCsvHeader}. JSON records are one flat object per line with
+ * the same keys, the sum as a number or a string; line breaks inside strings are written as
+ * {@code \n}. Times are ISO-8601 local date-times.
+ */
+public final class PaymentRecordParser {
+
+    private static final String[] FIELDS = {"senderName", "recieverName", "uniqueCode", "paymentPurpose", "paymentDateTime", "paymentSum"};
+
+
+    private PaymentRecordParser() {
+    }
+
+
+    public static PaymentRequest parseCsv(String line) throws OrganizationAndPaymentsException {
+        return toRequest(splitCsv(line));
+    }
+
+
+    // Only meaningful for the first line: further down, an organization may well be called senderName.
+    public static boolean isCsvHeader(String line) {
+        try {
+            return Arrays.equals(FIELDS, splitCsv(line));
+        } catch (MalformedRecordException e) {
+            return false;
+        }
+    }
+
+
+    private static String[] splitCsv(String line) throws MalformedRecordException {
+        ArrayList<String> fields = new ArrayList<>(FIELDS.length);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char x = line.charAt(i);
+            if (quoted) {
+                if (x != '"') field.append(x);
+                else if (i + 1 < line.length() && line.charAt(i + 1) == '"') field.append(line.charAt(++i));
+                else quoted = false;
+            } else if (x == '"') {
+                quoted = true;
+            } else if (x == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(x);
+            }
+        }
+        if (quoted) throw new MalformedRecordException();
+        fields.add(field.toString());
+        if (fields.size() != FIELDS.length) throw new MalformedRecordException();
+        return fields.toArray(new String[0]);
+    }
+
+
+    public static PaymentRequest parseJson(String line) throws OrganizationAndPaymentsException {
+        return toRequest(parseJsonFields(line, FIELDS));
+    }
+
+
+    // Values of the given keys in one flat JSON object, as text and in the order of the keys; every key is required.
+    static String[] parseJsonFields(String text, String[] fields) throws MalformedRecordException {
+        String[] values = new String[fields.length];
+        JsonCursor cursor = new JsonCursor(text);
+        cursor.expect('{');
+        if (!cursor.consume('}')) {
+            do {
+                String key = cursor.readString();
+                cursor.expect(':');
+                String value = cursor.readValue();
+                for (int i = 0; i < fields.length; i++) {
+                    if (fields[i].equals(key)) values[i] = value;
+                }
+            } while (cursor.consume(','));
+            cursor.expect('}');
+        }
+        cursor.expectEnd();
+        for (String x : values) {
+            if (x == null) throw new MalformedRecordException();
+        }
+        return values;
+    }
+
+
+    private static PaymentRequest toRequest(String[] fields) throws OrganizationAndPaymentsException {
+        LocalDateTime paymentDateTime;
+        try {
+            paymentDateTime = LocalDateTime.parse(fields[4].trim());
+        } catch (DateTimeParseException e) {
+            throw new InvalidPaymentTimeException();
+        }
+        double paymentSum;
+        try {
+            paymentSum = Double.parseDouble(fields[5].trim());
+        } catch (NumberFormatException e) {
+            throw new InvalidPaymentSumException();
+        }
+        return new PaymentRequest(fields[0], fields[1], fields[2], fields[3], paymentDateTime, paymentSum);
+    }
+
+
+    private static class JsonCursor {
+
+        private final String text;
+        private int position;
+
+
+        JsonCursor(String text) {
+            this.text = text;
+        }
+
+
+        void expect(char x) throws MalformedRecordException {
+            if (!consume(x)) throw new MalformedRecordException();
+        }
+
+
+        boolean consume(char x) {
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == x) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+
+        void expectEnd() throws MalformedRecordException {
+            skipWhitespace();
+            if (position != text.length()) throw new MalformedRecordException();
+        }
+
+
+        // Strings and numbers are returned as text; nested values are not part of the record format.
+        String readValue() throws MalformedRecordException {
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == '"') return readString();
+            int start = position;
+            while (position < text.length() && "+-.0123456789eE".indexOf(text.charAt(position)) >= 0) position++;
+            if (start == position) throw new MalformedRecordException();
+            return text.substring(start, position);
+        }
+
+
+        String readString() throws MalformedRecordException {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (position < text.length()) {
+                char x = text.charAt(position++);
+                if (x == '"') return value.toString();
+                if (x != '\\') {
+                    value.append(x);
+                    continue;
+                }
+                if (position >= text.length()) break;
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'n': value.append('\n'); break;
+                    case 'r': value.append('\r'); break;
+                    case 't': value.append('\t'); break;
+                    case 'u':
+                        if (position + 4 > text.length()) throw new MalformedRecordException();
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw new MalformedRecordException();
+                        }
+                        position += 4;
+                        break;
+                    default: value.append(escaped);
+                }
+            }
+            throw new MalformedRecordException();
+        }
+
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) position++;
+        }
+    }
+}
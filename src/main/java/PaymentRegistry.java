@@ -0,0 +1,93 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+public class PaymentRegistry implements PaymentStore {
+
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private HashMap<String, Payment> paymentsByCode = new HashMap<>();
+    // Chunks are filled once and never moved, so a prefix handed to another thread stays valid while new payments are added.
+    private Payment[][] chunks = new Payment[16][];
+    private int size;
+
+
+    @Override
+    public boolean contains(String uniqueCode) {
+        return paymentsByCode.containsKey(uniqueCode);
+    }
+
+
+    @Override
+    public Payment get(String uniqueCode) {
+        return paymentsByCode.get(uniqueCode);
+    }
+
+
+    @Override
+    public Payment get(int position) {
+        if (position < 0 || position >= size) throw new IndexOutOfBoundsException("position " + position + ", size " + size);
+        return chunks[position >>> CHUNK_BITS][position & CHUNK_MASK];
+    }
+
+
+    @Override
+    public void add(Payment payment, int purposeCode) {
+        int chunk = size >>> CHUNK_BITS;
+        if ((size & CHUNK_MASK) == 0) {
+            if (chunk == chunks.length) chunks = Arrays.copyOf(chunks, chunks.length * 2);
+            chunks[chunk] = new Payment[CHUNK_SIZE];
+        }
+        chunks[chunk][size & CHUNK_MASK] = payment;
+        paymentsByCode.put(payment.getUniqueCode(), payment);
+        size++;
+    }
+
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    @Override
+    public String getUniqueCode(int position) {
+        return get(position).getUniqueCode();
+    }
+
+
+    @Override
+    public long getPaymentSumMinor(int position) {
+        return get(position).getPaymentSumMinor();
+    }
+
+
+    // An immutable view of the payments added so far; later additions do not show up in it.
+    @Override
+    public List<Payment> getPayments() {
+        Payment[][] prefixChunks = chunks;
+        int prefixSize = size;
+        return new AbstractList<Payment>() {
+            @Override
+            public Payment get(int position) {
+                if (position < 0 || position >= prefixSize) throw new IndexOutOfBoundsException("position " + position + ", size " + prefixSize);
+                return prefixChunks[position >>> CHUNK_BITS][position & CHUNK_MASK];
+            }
+
+            @Override
+            public int size() {
+                return prefixSize;
+            }
+        };
+    }
+
+
+    @Override
+    public Iterator<Payment> iterator() {
+        return getPayments().iterator();
+    }
+}
@@ -0,0 +1,45 @@
+import java.time.LocalDateTime;
+
+public class PaymentRequest {
+
+    private String senderName;
+    private String recieverName;
+    private String uniqueCode;
+    private String paymentPurpose;
+    private LocalDateTime paymentDateTime;
+    private double paymentSum;
+
+
+    public PaymentRequest(String senderName, String recieverName, String uniqueCode, String paymentPurpose, LocalDateTime paymentDateTime, double paymentSum) {
+        this.senderName = senderName;
+        this.recieverName = recieverName;
+        this.uniqueCode = uniqueCode;
+        this.paymentPurpose = paymentPurpose;
+        this.paymentDateTime = paymentDateTime;
+        this.paymentSum = paymentSum;
+    }
+
+    public String getSenderName() {
+        return senderName;
+    }
+
+    public String getRecieverName() {
+        return recieverName;
+    }
+
+    public String getUniqueCode() {
+        return uniqueCode;
+    }
+
+    public String getPaymentPurpose() {
+        return paymentPurpose;
+    }
+
+    public LocalDateTime getPaymentDateTime() {
+        return paymentDateTime;
+    }
+
+    public double getPaymentSum() {
+        return paymentSum;
+    }
+}
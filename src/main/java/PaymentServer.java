@@ -0,0 +1,229 @@
+import Exceptions.*;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded HTTP front-end over a {@link SingleWriterController}, on the JDK's built-in server.
+ * Each request runs on its own virtual thread when the JVM has them (JDK 21 and later), or else on
+ * a pooled platform thread; either way it blocks only while its command waits in the ring. Balance
+ * reads are served from the latest {@link BalanceSnapshot} without entering the ring at all.
+ * <ul>
+ * <li>{@code POST /organizations} with {@code {"name", "registrationNumber", "initialBalance"}}</li>
+ * <li>{@code POST /payments} with a JSON payment record as {@link PaymentRecordParser} reads it</li>
+ * <li>{@code GET /organizations/<name>/balance}</li>
+ * <li>{@code GET /balances}, the final balance of every organization</li>
+ * </ul>
+ * Responses are JSON. A rejection names the exception {@link Controller} would have thrown, with
+ * 404 for an unknown organization or payment, 409 for a duplicate and 422 for anything else invalid.
+ * <p>
+ * Run the JVM with {@code -Dsun.net.httpserver.nodelay=true}. The built-in server writes headers
+ * and body separately, and with Nagle's algorithm on the body waits out the client's delayed ACK,
+ * about 40ms per response. The JDK reads the flag once, when its server is first used, so it has
+ * to be set before that rather than by this class.
+ */
+public class PaymentServer implements Closeable {
+
+    private static final String[] ORGANIZATION_FIELDS = {"name", "registrationNumber", "initialBalance"};
+    private static final String BALANCE_SUFFIX = "/balance";
+
+    private final SingleWriterController controller;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+
+    public PaymentServer(SingleWriterController controller, InetSocketAddress address) throws IOException {
+        this(controller, address, 0);
+    }
+
+
+    // The backlog is the number of connections the socket queues before accepting; 0 leaves the system default.
+    public PaymentServer(SingleWriterController controller, InetSocketAddress address, int backlog) throws IOException {
+        this.controller = controller;
+        ExecutorService virtualThreadExecutor = newVirtualThreadExecutor();
+        virtualThreads = virtualThreadExecutor != null;
+        executor = virtualThreads ? virtualThreadExecutor : Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "payments-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(address, backlog);
+        server.createContext("/payments", exchange -> handle(exchange, "POST", this::addPayment));
+        server.createContext("/organizations", exchange -> handle(exchange, exchange.getRequestURI().getPath().equals("/organizations") ? "POST" : "GET", this::organizations));
+        server.createContext("/balances", exchange -> handle(exchange, "GET", this::getFinalBalances));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+
+    public boolean isUsingVirtualThreads() {
+        return virtualThreads;
+    }
+
+
+    // Stops accepting requests and waits for the ones in flight; the controller is left running.
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    // Virtual threads arrived in JDK 21 while this builds for 17, so the factory is looked up at run time.
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+
+    private Response addPayment(HttpExchange exchange) throws Exception {
+        if (!exchange.getRequestURI().getPath().equals("/payments")) return Response.NOT_FOUND;
+        PaymentRequest request = PaymentRecordParser.parseJson(readBody(exchange));
+        PaymentStatus status = await(controller.addPayment(request.getSenderName(), request.getRecieverName(), request.getUniqueCode(),
+                request.getPaymentPurpose(), request.getPaymentDateTime(), request.getPaymentSum()));
+        if (status.isAccepted()) return new Response(201, "{\"status\":\"ACCEPTED\"}");
+        return rejection(status.getExceptionType());
+    }
+
+
+    private Response organizations(HttpExchange exchange) throws Exception {
+        String path = exchange.getRequestURI().getRawPath();
+        if (path.equals("/organizations")) {
+            String[] fields = PaymentRecordParser.parseJsonFields(readBody(exchange), ORGANIZATION_FIELDS);
+            double initialBalance;
+            try {
+                initialBalance = Double.parseDouble(fields[2].trim());
+            } catch (NumberFormatException e) {
+                throw new MalformedRecordException();
+            }
+            await(controller.addOrganization(fields[0], fields[1], initialBalance));
+            return new Response(201, "{\"name\":" + quote(fields[0]) + "}");
+        }
+        if (!path.startsWith("/organizations/") || !path.endsWith(BALANCE_SUFFIX)) return Response.NOT_FOUND;
+        String name = URLDecoder.decode(path.substring("/organizations/".length(), path.length() - BALANCE_SUFFIX.length()), StandardCharsets.UTF_8);
+        double balance = controller.getBalanceSnapshot().getBalance(name);
+        return new Response(200, "{\"name\":" + quote(name) + ",\"balance\":" + number(balance) + "}");
+    }
+
+
+    private Response getFinalBalances(HttpExchange exchange) throws Exception {
+        if (!exchange.getRequestURI().getPath().equals("/balances")) return Response.NOT_FOUND;
+        Map<String, Double> balances = controller.getBalanceSnapshot().getFinalBalances();
+        StringBuilder body = new StringBuilder(balances.size() * 32).append('{');
+        for (Map.Entry<String, Double> x : balances.entrySet()) {
+            if (body.length() > 1) body.append(',');
+            body.append(quote(x.getKey())).append(':').append(number(x.getValue()));
+        }
+        return new Response(200, body.append('}').toString());
+    }
+
+
+    private static void handle(HttpExchange exchange, String method, RequestHandler handler) throws IOException {
+        Response response;
+        try {
+            response = exchange.getRequestMethod().equals(method) ? handler.handle(exchange) : new Response(405, "{\"error\":\"MethodNotAllowed\"}");
+        } catch (OrganizationAndPaymentsException e) {
+            response = rejection(e.getClass());
+        } catch (Exception e) {
+            response = new Response(500, "{\"error\":" + quote(e.getClass().getSimpleName()) + "}");
+        }
+        byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.code, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+
+    private static Response rejection(Class<? extends OrganizationAndPaymentsException> type) {
+        int code;
+        if (type == OrganizationCannotBeFoundException.class || type == PaymentCannotBeFoundException.class) code = 404;
+        else if (type == DuplicatePaymentException.class || type == DuplicateOrganizationException.class || type == DuplicateRegistrationNumberException.class) code = 409;
+        else code = 422;
+        return new Response(code, "{\"error\":" + quote(type.getSimpleName()) + "}");
+    }
+
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+            throw e;
+        }
+    }
+
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream input = exchange.getRequestBody()) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+
+    private static String number(double value) {
+        return BigDecimal.valueOf(value).toPlainString();
+    }
+
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char x = value.charAt(i);
+            if (x == '"' || x == '\\') quoted.append('\\').append(x);
+            else if (x < 0x20) quoted.append(String.format("\\u%04x", (int) x));
+            else quoted.append(x);
+        }
+        return quoted.append('"').toString();
+    }
+
+
+    private interface RequestHandler {
+
+        Response handle(HttpExchange exchange) throws Exception;
+    }
+
+
+    private static class Response {
+
+        static final Response NOT_FOUND = new Response(404, "{\"error\":\"NotFound\"}");
+
+        final int code;
+        final String body;
+
+
+        Response(int code, String body) {
+            this.code = code;
+            this.body = body;
+        }
+    }
+}
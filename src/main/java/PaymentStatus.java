@@ -0,0 +1,52 @@
+import Exceptions.*;
+
+/**
+ * Outcome of {@link Controller#tryAddPayment}. Each rejection corresponds to the exception
+ * {@link Controller#addPayment} throws for the same input.
+ */
+public enum PaymentStatus {
+    ACCEPTED,
+    DUPLICATE_PAYMENT,
+    ORGANIZATION_NOT_FOUND,
+    PAYMENT_FOR_ITSELF,
+    EMPTY_PAYMENT_ID,
+    EMPTY_PAYMENT_PURPOSE,
+    INVALID_PAYMENT_TIME,
+    INVALID_PAYMENT_SUM,
+    BALANCE_OVERFLOW;
+
+
+    public boolean isAccepted() {
+        return this == ACCEPTED;
+    }
+
+
+    public Class<? extends OrganizationAndPaymentsException> getExceptionType() {
+        switch (this) {
+            case DUPLICATE_PAYMENT: return DuplicatePaymentException.class;
+            case ORGANIZATION_NOT_FOUND: return OrganizationCannotBeFoundException.class;
+            case PAYMENT_FOR_ITSELF: return PaymentForItselfException.class;
+            case EMPTY_PAYMENT_ID: return EmptyPaymentIdException.class;
+            case EMPTY_PAYMENT_PURPOSE: return EmptyPaymentPurposeException.class;
+            case INVALID_PAYMENT_TIME: return InvalidPaymentTimeException.class;
+            case INVALID_PAYMENT_SUM: return InvalidPaymentSumException.class;
+            case BALANCE_OVERFLOW: return BalanceOverflowException.class;
+            default: return null;
+        }
+    }
+
+
+    public OrganizationAndPaymentsException newException() {
+        switch (this) {
+            case DUPLICATE_PAYMENT: return new DuplicatePaymentException();
+            case ORGANIZATION_NOT_FOUND: return new OrganizationCannotBeFoundException();
+            case PAYMENT_FOR_ITSELF: return new PaymentForItselfException();
+            case EMPTY_PAYMENT_ID: return new EmptyPaymentIdException();
+            case EMPTY_PAYMENT_PURPOSE: return new EmptyPaymentPurposeException();
+            case INVALID_PAYMENT_TIME: return new InvalidPaymentTimeException();
+            case INVALID_PAYMENT_SUM: return new InvalidPaymentSumException();
+            case BALANCE_OVERFLOW: return new BalanceOverflowException();
+            default: throw new IllegalStateException("payment was accepted");
+        }
+    }
+}
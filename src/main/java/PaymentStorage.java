@@ -0,0 +1,22 @@
+/**
+ * How a {@link Controller} keeps its payments. {@link #HEAP} holds one {@link Payment} object per
+ * payment; {@link #COLUMNAR} keeps them in primitive columns with off-heap codes, for payment
+ * counts where per-object heap overhead and GC pauses matter.
+ */
+public enum PaymentStorage {
+    HEAP {
+        @Override
+        PaymentStore create(OrganizationRegistry organizations, StringDictionary purposes) {
+            return new PaymentRegistry();
+        }
+    },
+    COLUMNAR {
+        @Override
+        PaymentStore create(OrganizationRegistry organizations, StringDictionary purposes) {
+            return new ColumnarPaymentStore(organizations, purposes);
+        }
+    };
+
+
+    abstract PaymentStore create(OrganizationRegistry organizations, StringDictionary purposes);
+}
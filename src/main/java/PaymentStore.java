@@ -0,0 +1,26 @@
+import java.util.List;
+
+/**
+ * Accepted payments in insertion order, addressable by position and by unique code.
+ * Positions are dense and stable, so other indexes can refer to a payment by its position.
+ */
+public interface PaymentStore extends Iterable<Payment> {
+
+    boolean contains(String uniqueCode);
+
+    Payment get(String uniqueCode);
+
+    Payment get(int position);
+
+    String getUniqueCode(int position);
+
+    long getPaymentSumMinor(int position);
+
+    // The purpose code is the payment's purpose in the controller's purpose dictionary.
+    void add(Payment payment, int purposeCode);
+
+    int size();
+
+    // An immutable view of the payments added so far, safe to read from another thread while new payments are added.
+    List<Payment> getPayments();
+}
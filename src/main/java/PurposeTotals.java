@@ -0,0 +1,40 @@
+import Exceptions.BalanceOverflowException;
+import java.util.Arrays;
+
+/**
+ * Running payment totals per purpose, indexed by the purpose's dictionary code, so a total by
+ * purpose is a single array read.
+ */
+public class PurposeTotals {
+
+    private long[] totals = new long[16];
+    private int[] counts = new int[16];
+
+
+    public void add(int purposeCode, long paymentSumMinor) throws BalanceOverflowException {
+        long total = Money.add(getTotalMinor(purposeCode), paymentSumMinor);
+        if (purposeCode >= totals.length) {
+            int length = Math.max(purposeCode + 1, totals.length * 2);
+            totals = Arrays.copyOf(totals, length);
+            counts = Arrays.copyOf(counts, length);
+        }
+        totals[purposeCode] = total;
+        counts[purposeCode]++;
+    }
+
+
+    // A purpose that has never been encoded, code -1, starts from zero.
+    public boolean addOverflows(int purposeCode, long paymentSumMinor) {
+        return Money.addOverflows(getTotalMinor(purposeCode), paymentSumMinor);
+    }
+
+
+    public long getTotalMinor(int purposeCode) {
+        return purposeCode < 0 || purposeCode >= totals.length ? 0 : totals[purposeCode];
+    }
+
+
+    public int getCount(int purposeCode) {
+        return purposeCode < 0 || purposeCode >= counts.length ? 0 : counts[purposeCode];
+    }
+}
@@ -0,0 +1,18 @@
+public final class RegistrationNumberValidator {
+
+    public static final int LENGTH = 8;
+
+
+    private RegistrationNumberValidator() {
+    }
+
+
+    public static boolean isValid(CharSequence registrationNumber) {
+        if (registrationNumber == null || registrationNumber.length() != LENGTH) return false;
+        for (int i = 0; i < LENGTH; i++) {
+            char c = registrationNumber.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,274 @@
+import java.io.Closeable;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free front-end to a {@link Controller} in the style of the LMAX disruptor. Any number of
+ * producer threads publish commands into a preallocated ring buffer; one writer thread applies
+ * them to the controller in publication order and completes a {@link CompletableFuture} for each.
+ * <p>
+ * The writer takes every command published since its last pass as one batch, applies the whole
+ * batch and only then completes its futures, so dependent stages run between batches rather than
+ * between payments. Those stages run on the writer thread unless they use an async variant, and
+ * anything slow there holds up ingestion; one that publishes can deadlock the writer on a full buffer.
+ * <p>
+ * Once the controller is handed over, only the writer may touch it; reads go through
+ * {@link #submit(ControllerTask)}, or {@link #getBalanceSnapshot()} for balances. {@link #close()} applies what was already published, stops the
+ * writer and leaves the controller open.
+ */
+public class SingleWriterController implements Closeable {
+
+    // What the writer does when it has caught up with the producers; producers waiting for a free slot always spin, then yield.
+    public enum WaitStrategy {
+        // Spins on the next slot: lowest latency, burns a core.
+        BUSY_SPIN,
+        // Spins briefly, then yields the core between checks.
+        YIELDING,
+        // Spins, yields, then sleeps for SLEEP_NANOS between checks.
+        SLEEPING,
+        // Parks until a producer publishes: no CPU while idle, an unpark on each publish after idling.
+        BLOCKING,
+    }
+
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    static final long SLEEP_NANOS = 100_000;
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    private final Controller controller;
+    private final WaitStrategy waitStrategy;
+    private final Command[] ring;
+    private final int mask;
+    private final AtomicLongArray published;
+    // Next sequence to claim, with CLOSED set once no more commands are taken.
+    private final AtomicLong claimed = new AtomicLong();
+    // Every sequence below this has been applied and completed, and its slot is free again.
+    private final AtomicLong released = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean writerParked;
+    // Writer thread only: checks since the last batch, which the wait strategies escalate on.
+    private int idleTries;
+
+
+    public SingleWriterController(Controller controller) {
+        this(controller, DEFAULT_BUFFER_SIZE, WaitStrategy.BLOCKING);
+    }
+
+
+    // The buffer size is rounded up to a power of two.
+    public SingleWriterController(Controller controller, int bufferSize, WaitStrategy waitStrategy) {
+        if (bufferSize < 1 || bufferSize > 1 << 30) throw new IllegalArgumentException("bufferSize must be between 1 and 2^30");
+        this.controller = controller;
+        this.waitStrategy = waitStrategy;
+        int size = bufferSize == 1 ? 1 : Integer.highestOneBit(bufferSize - 1) << 1;
+        ring = new Command[size];
+        for (int i = 0; i < size; i++) ring[i] = new Command();
+        mask = size - 1;
+        published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) published.set(i, -1);
+        writer = new Thread(this::runWriter, "payments-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+
+    // Completes with the same status Controller.tryAddPayment would have returned at this point in the order.
+    public CompletableFuture<PaymentStatus> addPayment(String senderName, String recieverName, String uniqueCode, String paymentPurpose, LocalDateTime paymentDateTime, double paymentSum) {
+        CompletableFuture<PaymentStatus> future = new CompletableFuture<>();
+        long sequence = claim();
+        Command command = ring[(int) sequence & mask];
+        command.senderName = senderName;
+        command.recieverName = recieverName;
+        command.uniqueCode = uniqueCode;
+        command.paymentPurpose = paymentPurpose;
+        command.paymentDateTime = paymentDateTime;
+        command.paymentSum = paymentSum;
+        command.future = Command.erase(future);
+        publish(sequence);
+        return future;
+    }
+
+
+    // Runs the task on the writer thread, in order with the payments; completes exceptionally with whatever it throws.
+    public <T> CompletableFuture<T> submit(ControllerTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long sequence = claim();
+        Command command = ring[(int) sequence & mask];
+        command.task = task;
+        command.future = Command.erase(future);
+        publish(sequence);
+        return future;
+    }
+
+
+    public CompletableFuture<Void> addOrganization(String name, String registrationNumber, double initialBalance) {
+        return submit(controller -> {
+            controller.addOrganization(name, registrationNumber, initialBalance);
+            return null;
+        });
+    }
+
+
+    // Lock-free and safe from any thread; does not wait for commands still in the ring.
+    public BalanceSnapshot getBalanceSnapshot() {
+        return controller.getBalanceSnapshot();
+    }
+
+
+    public int getBufferSize() {
+        return ring.length;
+    }
+
+
+    // Stops taking commands, waits for the writer to apply and complete everything published before, and stops it.
+    @Override
+    public void close() {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence < 0) break;
+        } while (!claimed.compareAndSet(sequence, sequence | CLOSED));
+        LockSupport.unpark(writer);
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+
+    private long claim() {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence < 0) throw new IllegalStateException("controller is closed");
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        int tries = 0;
+        while (sequence - ring.length >= released.get()) {
+            if (++tries < SPIN_TRIES) Thread.onSpinWait();
+            else Thread.yield();
+        }
+        return sequence;
+    }
+
+
+    private void publish(long sequence) {
+        published.set((int) sequence & mask, sequence);
+        if (writerParked) LockSupport.unpark(writer);
+    }
+
+
+    private void runWriter() {
+        long next = 0;
+        while (true) {
+            long last = next - 1;
+            while (last - next + 1 < ring.length && published.get((int) (last + 1) & mask) == last + 1) last++;
+            if (last < next) {
+                long claimedSequence = claimed.get();
+                if (claimedSequence < 0 && (claimedSequence & ~CLOSED) == next) return;
+                idle();
+                continue;
+            }
+            for (long sequence = next; sequence <= last; sequence++) {
+                ring[(int) sequence & mask].apply(controller);
+            }
+            for (long sequence = next; sequence <= last; sequence++) {
+                ring[(int) sequence & mask].complete();
+            }
+            next = last + 1;
+            released.set(next);
+            idleTries = 0;
+        }
+    }
+
+
+    private void idle() {
+        int tries = ++idleTries;
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                Thread.onSpinWait();
+                break;
+            case YIELDING:
+                if (tries < SPIN_TRIES) Thread.onSpinWait();
+                else Thread.yield();
+                break;
+            case SLEEPING:
+                if (tries < SPIN_TRIES) Thread.onSpinWait();
+                else if (tries < SPIN_TRIES + YIELD_TRIES) Thread.yield();
+                else LockSupport.parkNanos(SLEEP_NANOS);
+                break;
+            case BLOCKING:
+                if (tries < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                    break;
+                }
+                // The flag is raised before the last look at the ring, so a publish either shows up there or unparks us.
+                writerParked = true;
+                long sequence = released.get();
+                if (published.get((int) sequence & mask) != sequence && claimed.get() >= 0) LockSupport.park(this);
+                writerParked = false;
+                break;
+        }
+    }
+
+
+    private static class Command {
+
+        String senderName;
+        String recieverName;
+        String uniqueCode;
+        String paymentPurpose;
+        LocalDateTime paymentDateTime;
+        double paymentSum;
+        ControllerTask<?> task;
+        CompletableFuture<Object> future;
+        Object result;
+        Throwable failure;
+
+
+        void apply(Controller controller) {
+            try {
+                if (task != null) result = task.run(controller);
+                else result = controller.tryAddPayment(senderName, recieverName, uniqueCode, paymentPurpose, paymentDateTime, paymentSum);
+            } catch (Throwable e) {
+                failure = e;
+            }
+        }
+
+
+        // apply stores a result of the future's own type, so completing it as Object is safe.
+        @SuppressWarnings("unchecked")
+        static CompletableFuture<Object> erase(CompletableFuture<?> future) {
+            return (CompletableFuture<Object>) future;
+        }
+
+
+        void complete() {
+            CompletableFuture<Object> completed = future;
+            Object completedResult = result;
+            Throwable completedFailure = failure;
+            senderName = null;
+            recieverName = null;
+            uniqueCode = null;
+            paymentPurpose = null;
+            paymentDateTime = null;
+            task = null;
+            future = null;
+            result = null;
+            failure = null;
+            if (completedFailure != null) completed.completeExceptionally(completedFailure);
+            else completed.complete(completedResult);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Reads a snapshot through memory-mapped windows, so files larger than one mapping are supported.
+public class SnapshotInput implements Closeable {
+
+    private static final long WINDOW_SIZE = 1L << 28;
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private byte[] scratch = new byte[64];
+
+
+    public SnapshotInput(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        size = channel.size();
+        map(0);
+    }
+
+
+    public int getInt() throws IOException {
+        ensure(4);
+        return window.getInt();
+    }
+
+
+    public long getLong() throws IOException {
+        ensure(8);
+        return window.getLong();
+    }
+
+
+    public String getString() throws IOException {
+        int length = getInt();
+        if (length < 0) throw new IOException("corrupt snapshot string length " + length);
+        ensure(length);
+        if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+        window.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+
+    private void ensure(int bytes) throws IOException {
+        if (window.remaining() >= bytes) return;
+        map(windowStart + window.position());
+        if (window.remaining() < bytes) throw new EOFException("snapshot is truncated");
+    }
+
+
+    private void map(long position) throws IOException {
+        windowStart = position;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+    }
+}
@@ -0,0 +1,53 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Assigns dense int codes to distinct strings, so repeated values are stored once and
+ * compared by code.
+ */
+public class StringDictionary {
+
+    private HashMap<String, Integer> codes = new HashMap<>();
+    private String[] values = new String[16];
+    private int size;
+
+
+    public int encode(String value) {
+        Integer code = codes.get(value);
+        if (code != null) return code;
+        if (size == values.length) values = Arrays.copyOf(values, size * 2);
+        values[size] = value;
+        codes.put(value, size);
+        return size++;
+    }
+
+
+    // -1 when the value has never been encoded.
+    public int find(String value) {
+        Integer code = codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+
+    public String decode(int code) {
+        if (code < 0 || code >= size) throw new IndexOutOfBoundsException("code " + code + ", size " + size);
+        return values[code];
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+
+    // Values indexed by code; a copy, so it can be handed to another thread.
+    public String[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+
+    // The values array itself, for codes below the current size: entries are never changed once set and growth copies to a new array, so a reader holding it sees no later writes.
+    String[] prefix() {
+        return values;
+    }
+}
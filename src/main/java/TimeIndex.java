@@ -0,0 +1,219 @@
+import Exceptions.BalanceOverflowException;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+
+/**
+ * Payment positions ordered by payment time, for range queries in O(log N + k).
+ * Entries live in bounded sorted leaves with running sums. A payment that is not older than
+ * everything indexed so far is appended in O(1); an out-of-order one is shifted into its leaf,
+ * which splits when full, so one late payment never costs more than a leaf's worth of moves.
+ * Payments with equal times keep insertion order.
+ */
+public class TimeIndex {
+
+    static final int LEAF_CAPACITY = 512;
+
+    private final ArrayList<Leaf> leaves = new ArrayList<>();
+    private int size;
+
+
+    public void add(LocalDateTime paymentDateTime, int position, long paymentSumMinor) {
+        long seconds = paymentDateTime.toEpochSecond(ZoneOffset.UTC);
+        int nanos = paymentDateTime.getNano();
+        if (leaves.isEmpty()) leaves.add(new Leaf());
+        // Later positions sort after equal times, so the entry belongs in the last leaf starting at or before its time.
+        int leafIndex = Math.max(0, firstLeafAfter(seconds, nanos) - 1);
+        Leaf leaf = leaves.get(leafIndex);
+        if (leaf.size == LEAF_CAPACITY) {
+            if (leafIndex == leaves.size() - 1 && compare(seconds, nanos, leaf, leaf.size - 1) >= 0) {
+                leaf = new Leaf();
+                leaves.add(leaf);
+            } else {
+                Leaf right = leaf.split();
+                leaves.add(leafIndex + 1, right);
+                if (compare(seconds, nanos, right, 0) >= 0) leaf = right;
+            }
+        }
+        leaf.insert(leaf.upperBound(seconds, nanos), seconds, nanos, position, paymentSumMinor);
+        size++;
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+
+    // Positions of the payments made in [from, to), in time order.
+    public int[] getPositions(LocalDateTime from, LocalDateTime to) {
+        long fromSeconds = from.toEpochSecond(ZoneOffset.UTC);
+        long toSeconds = to.toEpochSecond(ZoneOffset.UTC);
+        int fromLeaf = leafOf(fromSeconds, from.getNano());
+        int toLeaf = leafOf(toSeconds, to.getNano());
+        int count = 0;
+        int[] starts = new int[Math.max(0, toLeaf - fromLeaf + 1)];
+        for (int i = fromLeaf; i <= toLeaf && i < leaves.size(); i++) {
+            Leaf leaf = leaves.get(i);
+            int start = i == fromLeaf ? leaf.lowerBound(fromSeconds, from.getNano()) : 0;
+            int end = i == toLeaf ? leaf.lowerBound(toSeconds, to.getNano()) : leaf.size;
+            starts[i - fromLeaf] = start;
+            count += Math.max(0, end - start);
+        }
+        int[] positions = new int[count];
+        int next = 0;
+        for (int i = fromLeaf; i <= toLeaf && i < leaves.size(); i++) {
+            Leaf leaf = leaves.get(i);
+            int end = i == toLeaf ? leaf.lowerBound(toSeconds, to.getNano()) : leaf.size;
+            for (int j = starts[i - fromLeaf]; j < end; j++) {
+                positions[next++] = leaf.positions[j];
+            }
+        }
+        return positions;
+    }
+
+
+    // Sum of the payments made in [from, to).
+    public long getTotalMinor(LocalDateTime from, LocalDateTime to) throws BalanceOverflowException {
+        long fromSeconds = from.toEpochSecond(ZoneOffset.UTC);
+        long toSeconds = to.toEpochSecond(ZoneOffset.UTC);
+        int fromLeaf = leafOf(fromSeconds, from.getNano());
+        int toLeaf = leafOf(toSeconds, to.getNano());
+        long total = 0;
+        for (int i = fromLeaf; i <= toLeaf && i < leaves.size(); i++) {
+            Leaf leaf = leaves.get(i);
+            int start = i == fromLeaf ? leaf.lowerBound(fromSeconds, from.getNano()) : 0;
+            int end = i == toLeaf ? leaf.lowerBound(toSeconds, to.getNano()) : leaf.size;
+            if (end > start) total = Money.add(total, leaf.sumBetween(start, end));
+        }
+        return total;
+    }
+
+
+    // The leaf holding the first entry at or after the given time; entries before it all sort earlier.
+    private int leafOf(long seconds, int nanos) {
+        return Math.max(0, firstLeafAtOrAfter(seconds, nanos) - 1);
+    }
+
+
+    // Index of the first leaf whose first entry is after the given time.
+    private int firstLeafAfter(long seconds, int nanos) {
+        int low = 0;
+        int high = leaves.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(seconds, nanos, leaves.get(middle), 0) >= 0) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+
+    // Index of the first leaf whose first entry is at or after the given time.
+    private int firstLeafAtOrAfter(long seconds, int nanos) {
+        int low = 0;
+        int high = leaves.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(seconds, nanos, leaves.get(middle), 0) > 0) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+
+    private static int compare(long seconds, int nanos, Leaf leaf, int index) {
+        int bySeconds = Long.compare(seconds, leaf.seconds[index]);
+        return bySeconds != 0 ? bySeconds : Integer.compare(nanos, leaf.nanos[index]);
+    }
+
+
+    private static class Leaf {
+
+        private final long[] seconds = new long[LEAF_CAPACITY];
+        private final int[] nanos = new int[LEAF_CAPACITY];
+        private final int[] positions = new int[LEAF_CAPACITY];
+        // Running sums: sums[i] is the total of entries 0..i, wrapped if the leaf ever exceeded a long.
+        private final long[] sums = new long[LEAF_CAPACITY];
+        private boolean wrapped;
+        private int size;
+
+
+        void insert(int index, long entrySeconds, int entryNanos, int position, long paymentSumMinor) {
+            int moved = size - index;
+            System.arraycopy(seconds, index, seconds, index + 1, moved);
+            System.arraycopy(nanos, index, nanos, index + 1, moved);
+            System.arraycopy(positions, index, positions, index + 1, moved);
+            System.arraycopy(sums, index, sums, index + 1, moved);
+            seconds[index] = entrySeconds;
+            nanos[index] = entryNanos;
+            positions[index] = position;
+            wrapped |= Money.addOverflows(size == 0 ? 0 : sums[size - 1], paymentSumMinor);
+            sums[index] = sumBefore(index) + paymentSumMinor;
+            size++;
+            for (int i = index + 1; i < size; i++) {
+                sums[i] += paymentSumMinor;
+            }
+        }
+
+
+        Leaf split() {
+            Leaf right = new Leaf();
+            int half = size / 2;
+            right.size = size - half;
+            System.arraycopy(seconds, half, right.seconds, 0, right.size);
+            System.arraycopy(nanos, half, right.nanos, 0, right.size);
+            System.arraycopy(positions, half, right.positions, 0, right.size);
+            long carried = sums[half - 1];
+            for (int i = 0; i < right.size; i++) {
+                right.sums[i] = sums[half + i] - carried;
+            }
+            right.wrapped = wrapped;
+            size = half;
+            return right;
+        }
+
+
+        long sumBefore(int index) {
+            return index == 0 ? 0 : sums[index - 1];
+        }
+
+
+        // Each payment fits in a long, so once the running sums have wrapped the entries are added one by one.
+        long sumBetween(int start, int end) throws BalanceOverflowException {
+            if (!wrapped) return sumBefore(end) - sumBefore(start);
+            long total = 0;
+            for (int i = start; i < end; i++) {
+                total = Money.add(total, sums[i] - sumBefore(i));
+            }
+            return total;
+        }
+
+
+        // First entry at or after the given time.
+        int lowerBound(long entrySeconds, int entryNanos) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compare(entrySeconds, entryNanos, this, middle) > 0) low = middle + 1;
+                else high = middle;
+            }
+            return low;
+        }
+
+
+        // First entry after the given time.
+        int upperBound(long entrySeconds, int entryNanos) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compare(entrySeconds, entryNanos, this, middle) >= 0) low = middle + 1;
+                else high = middle;
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntToLongFunction;
+
+public class TopPayments {
+
+    public static final int DEFAULT_CAPACITY = 100;
+
+    private final int capacity;
+    private final long[] sums;
+    private final int[] positions;
+    private int size;
+
+
+    public TopPayments() {
+        this(DEFAULT_CAPACITY);
+    }
+
+
+    public TopPayments(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+        this.sums = new long[capacity];
+        this.positions = new int[capacity];
+    }
+
+
+    public void add(int position, long paymentSumMinor) {
+        if (size == capacity && paymentSumMinor <= sums[size - 1]) return;
+        // Equal sums keep insertion order, so the earlier payment stays ahead.
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sums[middle] >= paymentSumMinor) low = middle + 1;
+            else high = middle;
+        }
+        int moved = Math.min(size, capacity - 1) - low;
+        System.arraycopy(sums, low, sums, low + 1, moved);
+        System.arraycopy(positions, low, positions, low + 1, moved);
+        sums[low] = paymentSumMinor;
+        positions[low] = position;
+        if (size < capacity) size++;
+    }
+
+
+    public int getBiggest() {
+        return size == 0 ? -1 : positions[0];
+    }
+
+
+    public int[] getTop(int k, PaymentStore payments) {
+        return getTop(k, payments.size(), payments::getPaymentSumMinor);
+    }
+
+
+    // Positions 0 to count - 1 are every payment added so far, and sums gives the sum at each.
+    public int[] getTop(int k, int count, IntToLongFunction sums) {
+        if (k < 0) throw new IllegalArgumentException("k must not be negative");
+        if (k <= size || size == count) return Arrays.copyOf(positions, Math.min(k, size));
+        return selectTop(k, count, sums);
+    }
+
+
+    // Beyond the kept entries: a heap of the k best so far with the worst on top, O(count log k) and nothing boxed.
+    static int[] selectTop(int k, int count, IntToLongFunction sums) {
+        int[] heap = new int[Math.min(k, count)];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            if (size < heap.length) {
+                heap[size] = i;
+                siftUp(heap, size++, sums);
+            } else if (ranksAbove(i, heap[0], sums)) {
+                heap[0] = i;
+                siftDown(heap, 0, size, sums);
+            }
+        }
+        // Moving the worst to the back one by one leaves the best first.
+        for (int end = size - 1; end > 0; end--) {
+            int worst = heap[0];
+            heap[0] = heap[end];
+            heap[end] = worst;
+            siftDown(heap, 0, end, sums);
+        }
+        return heap;
+    }
+
+
+    // Same order as the kept entries: the bigger sum first, and the earlier payment first among equal sums.
+    private static boolean ranksAbove(int position, int other, IntToLongFunction sums) {
+        long sum = sums.applyAsLong(position);
+        long otherSum = sums.applyAsLong(other);
+        return sum > otherSum || sum == otherSum && position < other;
+    }
+
+
+    private static void siftUp(int[] heap, int index, IntToLongFunction sums) {
+        int position = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!ranksAbove(heap[parent], position, sums)) break;
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = position;
+    }
+
+
+    private static void siftDown(int[] heap, int index, int size, IntToLongFunction sums) {
+        int position = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) break;
+            if (child + 1 < size && ranksAbove(heap[child], heap[child + 1], sums)) child++;
+            if (!ranksAbove(position, heap[child], sums)) break;
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = position;
+    }
+
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+
+    public TopPayments copy() {
+        TopPayments copy = new TopPayments(capacity);
+        System.arraycopy(sums, 0, copy.sums, 0, size);
+        System.arraycopy(positions, 0, copy.positions, 0, size);
+        copy.size = size;
+        return copy;
+    }
+
+
+    public void writeTo(SnapshotOutput output) throws IOException {
+        output.putInt(capacity);
+        output.putInt(size);
+        for (int i = 0; i < size; i++) {
+            output.putLong(sums[i]);
+            output.putInt(positions[i]);
+        }
+    }
+
+
+    public static TopPayments readFrom(SnapshotInput input) throws IOException {
+        TopPayments topPayments = new TopPayments(input.getInt());
+        topPayments.size = input.getInt();
+        for (int i = 0; i < topPayments.size; i++) {
+            topPayments.sums[i] = input.getLong();
+            topPayments.positions[i] = input.getInt();
+        }
+        return topPayments;
+    }
+}
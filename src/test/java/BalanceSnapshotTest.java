@@ -0,0 +1,157 @@
+import Exceptions.*;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class BalanceSnapshotTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2015, 1, 1, 12, 0);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void snapshotsAreFrozenAndSequenced() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        c.addOrganization("mystic", "00000000", 666);
+        c.addOrganization("moon", "12345678", 999);
+        BalanceSnapshot before = c.getBalanceSnapshot();
+        c.addPayment("mystic", "moon", "1", "purpose", TIME, 700);
+        Assert.assertEquals(PaymentStatus.DUPLICATE_PAYMENT, c.tryAddPayment("mystic", "moon", "1", "purpose", TIME, 700));
+        c.addOrganization("kitty", "00991234", -3);
+        BalanceSnapshot after = c.getBalanceSnapshot();
+
+        Assert.assertEquals(3, before.getSequence());
+        Assert.assertEquals(5, after.getSequence());
+        Assert.assertEquals(666, before.getBalance("mystic"), 0.0);
+        Assert.assertEquals(Collections.emptyList(), before.getOrganizationsWithNegativeSaldo());
+        Assert.assertEquals(2, before.getOrganizationCount());
+        try {
+            before.getBalance("kitty");
+            Assert.fail();
+        } catch (OrganizationCannotBeFoundException e) {
+        }
+        Assert.assertEquals(-34, after.getBalance("mystic"), 0.0);
+        Assert.assertEquals(Arrays.asList("mystic", "kitty"), after.getOrganizationsWithNegativeSaldo());
+        Assert.assertEquals(c.getFinalBalances(), after.getFinalBalances());
+
+    }
+
+
+    @Test
+    public void versionsSurviveTrieGrowthAndBatches() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        int organizationCount = BalanceVersions.WIDTH * BalanceVersions.WIDTH + 7;
+        for (int i = 0; i < organizationCount; i++) {
+            c.addOrganization("org" + i, String.format("%08d", i), i);
+        }
+        BalanceSnapshot grown = c.getBalanceSnapshot();
+        ArrayList<PaymentRequest> batch = new ArrayList<>();
+        for (int i = 0; i < organizationCount; i++) {
+            batch.add(new PaymentRequest("org" + i, "org" + (i + 1) % organizationCount, "p" + i, "purpose", TIME, 1));
+        }
+        c.addPayments(batch);
+        BalanceSnapshot paid = c.getBalanceSnapshot();
+
+        Assert.assertEquals(grown.getSequence() + 1, paid.getSequence());
+        for (int i = 0; i < organizationCount; i++) {
+            Assert.assertEquals(i, grown.getBalance("org" + i), 0.0);
+            Assert.assertEquals(i, paid.getBalance("org" + i), 0.0);
+        }
+        Assert.assertEquals(c.getFinalBalances(), paid.getFinalBalances());
+        c.addPayment("org0", "org1", "extra", "purpose", TIME, 5);
+        Assert.assertEquals(Arrays.asList("org0"), c.getBalanceSnapshot().getOrganizationsWithNegativeSaldo());
+        Assert.assertEquals(Collections.emptyList(), paid.getOrganizationsWithNegativeSaldo());
+
+    }
+
+
+    @Test
+    public void concurrentReadersNeverSeeHalfAppliedPayments() throws Exception {
+
+        int organizationCount = 100;
+        Controller c = new Controller();
+        for (int i = 0; i < organizationCount; i++) {
+            c.addOrganization("org" + i, String.format("%08d", i), 100);
+        }
+        // The first version is published by the constructor and each organization publishes one more.
+        long setupSequence = organizationCount + 1;
+        AtomicLong completed = new AtomicLong();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            long lastSequence = 0;
+            while (lastSequence < setupSequence + 20000 && failure.get() == null) {
+                long publishedBefore = setupSequence + completed.get();
+                BalanceSnapshot snapshot = c.getBalanceSnapshot();
+                long[] total = new long[1];
+                snapshot.forEachBalance((name, balance) -> total[0] += balance);
+                if (total[0] != organizationCount * 10000L) failure.set("total " + total[0] + " at " + snapshot.getSequence());
+                if (snapshot.getOrganizationCount() != organizationCount) failure.set(snapshot.getOrganizationCount() + " organizations at " + snapshot.getSequence());
+                if (snapshot.getSequence() < publishedBefore) failure.set("got " + snapshot.getSequence() + " after " + publishedBefore + " was published");
+                lastSequence = snapshot.getSequence();
+            }
+        });
+        reader.start();
+        Random random = new Random(7);
+        for (int i = 0; i < 20000; i++) {
+            int sender = random.nextInt(organizationCount);
+            PaymentStatus status = c.tryAddPayment("org" + sender, "org" + (sender + 1 + random.nextInt(organizationCount - 1)) % organizationCount, "p" + i, "purpose", TIME, 1 + random.nextInt(50));
+            Assert.assertEquals(PaymentStatus.ACCEPTED, status);
+            completed.incrementAndGet();
+        }
+        reader.join(30000);
+
+        Assert.assertNull(failure.get());
+        Assert.assertFalse(reader.isAlive());
+
+    }
+
+
+    @Test
+    public void reopenedControllerPublishesRecoveredBalances() throws Exception {
+
+        try (Controller c = Controller.open(folder.getRoot().toPath())) {
+            c.addOrganization("mystic", "00000000", 666);
+            c.addOrganization("moon", "12345678", 999);
+            c.addPayment("mystic", "moon", "1", "purpose", TIME, 700);
+        }
+        try (Controller c = Controller.open(folder.getRoot().toPath())) {
+            Assert.assertEquals(-34, c.getBalanceSnapshot().getBalance("mystic"), 0.0);
+            Assert.assertEquals(1699, c.getBalanceSnapshot().getBalance("moon"), 0.0);
+        }
+
+    }
+
+
+    @Test
+    public void readerDuringChangeGetsLastPublishedView() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        int organizationCount = 1000;
+        for (int i = 0; i < organizationCount; i++) {
+            c.addOrganization("org" + i, String.format("%08d", i), 10);
+        }
+        long published = organizationCount + 1;
+        AtomicReference<BalanceSnapshot> duringChange = new AtomicReference<>();
+        c.setBalanceCrossingListener((name, previousBalance, balance) -> duringChange.set(c.getBalanceSnapshot()));
+        c.addPayments(Arrays.asList(new PaymentRequest("org0", "org1", "p", "purpose", TIME, 25)));
+
+        Assert.assertEquals(published, duringChange.get().getSequence());
+        Assert.assertEquals(organizationCount, duringChange.get().getOrganizationCount());
+        Assert.assertEquals(10, duringChange.get().getBalance("org0"), 0.0);
+        Assert.assertEquals(10, duringChange.get().getBalance("org1"), 0.0);
+        Assert.assertEquals(-15, c.getBalanceSnapshot().getBalance("org0"), 0.0);
+        Assert.assertEquals(published + 1, c.getBalanceSnapshot().getSequence());
+
+    }
+
+}
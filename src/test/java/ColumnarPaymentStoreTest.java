@@ -0,0 +1,139 @@
+import Exceptions.*;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+public class ColumnarPaymentStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void queriesMatchHeapStorage() throws OrganizationAndPaymentsException {
+
+        Controller heap = new Controller();
+        Controller columnar = new Controller(PaymentStorage.COLUMNAR);
+        for (Controller c : Arrays.asList(heap, columnar)) {
+            for (int i = 0; i < 50; i++) {
+                c.addOrganization("organization #" + i, String.format("%08d", i), i * 10);
+            }
+            Random random = new Random(42);
+            for (int i = 0; i < 40000; i++) {
+                int sender = random.nextInt(50);
+                int reciever = (sender + 1 + random.nextInt(49)) % 50;
+                c.tryAddPayment("organization #" + sender, "organization #" + reciever, "p" + random.nextInt(50000), "purpose " + random.nextInt(7),
+                        LocalDateTime.of(2015, 1, 1, 0, 0).plusSeconds(random.nextInt(10_000_000)).plusNanos(random.nextInt(1000)), random.nextInt(100000) / 100.0 + 0.01);
+            }
+        }
+
+        Assert.assertEquals(heap.getFinalBalances(), columnar.getFinalBalances());
+        Assert.assertEquals(heap.getTopPayments(500), columnar.getTopPayments(500));
+        Assert.assertEquals(heap.getIdOfBiggestPayment(), columnar.getIdOfBiggestPayment());
+        Assert.assertEquals(heap.getDateWithBiggestTotalPayments(), columnar.getDateWithBiggestTotalPayments());
+        Assert.assertEquals(heap.getOrganizationsWithNegativeSaldo(), columnar.getOrganizationsWithNegativeSaldo());
+        Assert.assertEquals(heap.getTotalsByPurpose(), columnar.getTotalsByPurpose());
+        for (String x : heap.getTopPayments(500)) {
+            Assert.assertEquals(heap.getSenderName(x), columnar.getSenderName(x));
+            Assert.assertEquals(heap.getRecieverName(x), columnar.getRecieverName(x));
+            Assert.assertEquals(heap.getPaymentPurpose(x), columnar.getPaymentPurpose(x));
+            Assert.assertEquals(heap.getPaymentDateTime(x), columnar.getPaymentDateTime(x));
+            Assert.assertEquals(heap.getPaymentSum(x), columnar.getPaymentSum(x), 0.0);
+        }
+
+    }
+
+
+    @Test
+    public void codesWithEqualHashesStayDistinct() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller(PaymentStorage.COLUMNAR);
+        c.addOrganization("mystic", "00000000", 666);
+        c.addOrganization("moon", "12345678", 999);
+
+        c.addPayment("mystic", "moon", "Aa", "first", LocalDateTime.of(2015, 1, 1, 12, 0), 1);
+        c.addPayment("mystic", "moon", "BB", "second", LocalDateTime.of(2015, 1, 1, 12, 0), 2);
+        c.addPayment("mystic", "moon", "été", "third", LocalDateTime.of(2015, 1, 1, 12, 0), 3);
+
+        Assert.assertEquals("Aa".hashCode(), "BB".hashCode());
+        Assert.assertEquals("first", c.getPaymentPurpose("Aa"));
+        Assert.assertEquals("second", c.getPaymentPurpose("BB"));
+        Assert.assertEquals(Arrays.asList("été", "BB", "Aa"), c.getTopPayments(3));
+        Assert.assertEquals(PaymentStatus.DUPLICATE_PAYMENT, c.tryAddPayment("moon", "mystic", "BB", "again", LocalDateTime.of(2015, 1, 1, 12, 0), 1));
+        try {
+            c.getPaymentPurpose("Ab");
+            Assert.fail("PaymentCannotBeFound");
+        } catch (PaymentCannotBeFoundException e) {
+            Assert.assertEquals("PaymentCannotBeFound", e.getMessage());
+        }
+
+    }
+
+
+    @Test
+    public void columnarControllerRecoversFromSnapshotAndJournal() throws Exception {
+
+        Path directory = folder.getRoot().toPath();
+        LocalDateTime dateTime = LocalDateTime.of(2015, 1, 1, 12, 0, 0, 123456789);
+
+        try (Controller c = Controller.open(directory, PaymentStorage.COLUMNAR)) {
+            c.addOrganization("mystic", "00000000", 666);
+            c.addOrganization("moon", "12345678", 999);
+            c.addPayment("mystic", "moon", "1", "Just for fun!", dateTime, 69);
+            c.snapshot().get();
+            c.addPayment("moon", "mystic", "2", "Mew", dateTime.plusDays(1), 10);
+        }
+
+        try (Controller c = Controller.open(directory, PaymentStorage.COLUMNAR)) {
+            Assert.assertEquals(dateTime, c.getPaymentDateTime("1"));
+            Assert.assertEquals("Mew", c.getPaymentPurpose("2"));
+            Assert.assertEquals(607, c.getBalance("mystic"), 0.0);
+            Assert.assertEquals(LocalDate.of(2015, 1, 1), c.getDateWithBiggestTotalPayments());
+            Assert.assertEquals(10, c.getTotalByPurpose("Mew"), 0.0);
+            Assert.assertEquals(Arrays.asList("1", "2"), c.getPayments(dateTime, dateTime.plusDays(2)));
+            Assert.assertEquals(10, c.getTotal(dateTime.plusNanos(1), dateTime.plusDays(2)), 0.0);
+            Assert.assertEquals(Arrays.asList("1"), c.getIncomingPayments("moon", 0, 10).getPaymentIds());
+            Assert.assertEquals(Arrays.asList("2"), c.getOutgoingPayments("moon", 0, 10).getPaymentIds());
+            Assert.assertEquals(PaymentStatus.DUPLICATE_PAYMENT, c.tryAddPayment("mystic", "moon", "1", "again", dateTime, 1));
+        }
+
+    }
+
+
+    @Test
+    public void iteratorStopsAtSizeWhenStarted() throws OrganizationAndPaymentsException {
+
+        OrganizationRegistry organizations = new OrganizationRegistry();
+        StringDictionary purposes = new StringDictionary();
+        ColumnarPaymentStore store = new ColumnarPaymentStore(organizations, purposes);
+        Organization mystic = new Organization("mystic", "00000000", 666);
+        Organization moon = new Organization("moon", "12345678", 999);
+        organizations.add(mystic);
+        organizations.add(moon);
+        LocalDateTime dateTime = LocalDateTime.of(2015, 1, 1, 12, 0);
+        for (int i = 0; i < 3; i++) {
+            store.add(new Payment(mystic, moon, "p" + i, "rent", dateTime, i + 1), purposes.encode("rent"));
+        }
+
+        List<String> codes = new ArrayList<>();
+        Iterator<Payment> iterator = store.iterator();
+        while (iterator.hasNext()) {
+            Payment x = iterator.next();
+            codes.add(x.getUniqueCode());
+            if (codes.size() == 1) store.add(new Payment(moon, mystic, "q", "gift", dateTime, 9), purposes.encode("gift"));
+        }
+
+        Assert.assertEquals(Arrays.asList("p0", "p1", "p2"), codes);
+        Assert.assertEquals(4, store.getPayments().size());
+        Assert.assertEquals("gift", store.getPayments().get(3).getPaymentPurpose());
+        Assert.assertEquals(moon, store.getPayments().get(3).getSenderOrganization());
+
+    }
+
+}
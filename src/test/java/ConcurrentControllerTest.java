@@ -0,0 +1,251 @@
+import Exceptions.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ConcurrentControllerTest {
+
+    @Test
+    public void paymentsAndQueriesMatchController() throws OrganizationAndPaymentsException {
+
+        ConcurrentController c = new ConcurrentController();
+        c.addOrganization("mystic", "00000000", 666);
+        c.addOrganization("moon", "12345678", 999);
+        c.addOrganization("kitty", "00991234", -3);
+
+        LocalDateTime dateTime1 = LocalDateTime.of(2015, 1, 1, 12, 0, 0);
+        LocalDateTime dateTime2 = LocalDateTime.of(2015, 1, 2, 12, 0, 0);
+        c.addPayment("mystic", "moon", "1", "Just for fun!", dateTime1, 69);
+        c.addPayment("moon", "kitty", "2", "Mew", dateTime2, 30);
+        c.addPayment("kitty", "mystic", "3", "Mew", dateTime2, 50);
+
+        Assert.assertEquals("mystic", c.getSenderName("1"));
+        Assert.assertEquals("moon", c.getRecieverName("1"));
+        Assert.assertEquals("Just for fun!", c.getPaymentPurpose("1"));
+        Assert.assertEquals(dateTime1, c.getPaymentDateTime("1"));
+        Assert.assertEquals(69, c.getPaymentSum("1"), 0.0);
+        Assert.assertEquals("00991234", c.getRegistrationNumber("kitty"));
+
+        Assert.assertEquals(647, c.getBalance("mystic"), 0.0);
+        Assert.assertEquals(1038, c.getBalance("moon"), 0.0);
+        Assert.assertEquals(-23, c.getBalance("kitty"), 0.0);
+        Assert.assertEquals(Arrays.asList("kitty"), c.getOrganizationsWithNegativeSaldo());
+        Assert.assertEquals("1", c.getIdOfBiggestPayment());
+        Assert.assertEquals(Arrays.asList("1", "3"), c.getTopPayments(2));
+        Assert.assertEquals(LocalDate.of(2015, 1, 2), c.getDateWithBiggestTotalPayments());
+
+    }
+
+
+    @Test
+    public void rejectedPaymentLeavesBalancesUntouched() throws OrganizationAndPaymentsException {
+
+        ConcurrentController c = new ConcurrentController();
+        c.addOrganization("kitty", "00991234", -3);
+
+        try {
+            c.addPayment("missing", "kitty", "1", "Mew", LocalDateTime.of(2015, 1, 1, 12, 0, 0), 10);
+            Assert.fail("OrganizationCannotBeFound");
+        } catch (OrganizationCannotBeFoundException e) {
+            Assert.assertEquals(-3, c.getBalance("kitty"), 0.0);
+        }
+
+    }
+
+
+    @Test(expected = DuplicateRegistrationNumberException.class)
+    public void organizationWithDuplicateRegistrationNumber() throws OrganizationAndPaymentsException {
+
+        ConcurrentController c = new ConcurrentController();
+        c.addOrganization("test #1", "00000000", 18);
+        c.addOrganization("test #2", "00000000", 43);
+
+    }
+
+
+    @Test
+    public void parallelPaymentsKeepBalancesConsistent() throws Exception {
+
+        int organizationCount = 16;
+        int threadCount = 8;
+        int paymentsPerThread = 5000;
+
+        ConcurrentController c = new ConcurrentController(4);
+        for (int i = 0; i < organizationCount; i++) {
+            c.addOrganization("org" + i, String.format("%08d", i), 1000);
+        }
+
+        AtomicInteger duplicates = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                LocalDateTime dateTime = LocalDateTime.of(2015, 1, 1, 12, 0, 0);
+                for (int i = 0; i < paymentsPerThread; i++) {
+                    int sender = (thread + i) % organizationCount;
+                    int reciever = (sender + 1 + i % (organizationCount - 1)) % organizationCount;
+                    try {
+                        c.addPayment("org" + sender, "org" + reciever, String.valueOf(i), "purpose", dateTime, 1);
+                    } catch (DuplicatePaymentException e) {
+                        duplicates.incrementAndGet();
+                    }
+                    c.addPayment("org" + reciever, "org" + sender, thread + "-" + i, "purpose", dateTime, 2);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) future.get(1, TimeUnit.MINUTES);
+        executor.shutdown();
+
+        Assert.assertEquals((threadCount - 1) * paymentsPerThread, duplicates.get());
+        double total = 0;
+        for (double balance : c.getFinalBalances().values()) total += balance;
+        Assert.assertEquals(organizationCount * 1000, total, 0.0);
+
+    }
+
+
+    @Test
+    public void overflowingPaymentIsNeverPublished() throws OrganizationAndPaymentsException {
+
+        ConcurrentController c = new ConcurrentController();
+        c.addOrganization("mystic", "00000000", -9.0e16);
+        c.addOrganization("moon", "12345678", 9.0e16);
+        LocalDateTime dateTime = LocalDateTime.of(2015, 1, 1, 12, 0, 0);
+
+        try {
+            c.addPayment("mystic", "moon", "1", "purpose", dateTime, 3.0e15);
+            Assert.fail("BalanceOverflow");
+        } catch (BalanceOverflowException e) {
+            Assert.assertNull(c.getIdOfBiggestPayment());
+            Assert.assertEquals(Collections.emptyList(), c.getTopPayments(1));
+        }
+        try {
+            c.getPaymentSum("1");
+            Assert.fail("PaymentCannotBeFound");
+        } catch (PaymentCannotBeFoundException e) {
+            c.addPayment("moon", "mystic", "1", "purpose", dateTime, 5);
+        }
+        Assert.assertEquals(5, c.getPaymentSum("1"), 0.0);
+
+    }
+
+
+    @Test
+    public void topPaymentsBeyondIndexedCapacityMatchController() throws OrganizationAndPaymentsException {
+
+        ConcurrentController c = new ConcurrentController();
+        Controller expected = new Controller();
+        c.addOrganization("mystic", "00000000", 666);
+        c.addOrganization("moon", "12345678", 999);
+        expected.addOrganization("mystic", "00000000", 666);
+        expected.addOrganization("moon", "12345678", 999);
+        LocalDateTime dateTime = LocalDateTime.of(2015, 1, 1, 12, 0, 0);
+
+        for (int i = 0; i < 300; i++) {
+            c.addPayment("mystic", "moon", String.valueOf(i), "purpose", dateTime, 1 + i % 150);
+            expected.addPayment("mystic", "moon", String.valueOf(i), "purpose", dateTime, 1 + i % 150);
+        }
+
+        Assert.assertEquals("149", c.getIdOfBiggestPayment());
+        Assert.assertEquals(expected.getTopPayments(50), c.getTopPayments(50));
+        Assert.assertEquals(expected.getTopPayments(250), c.getTopPayments(250));
+
+    }
+
+
+    @Test
+    public void topPaymentsMergeShardsWhileWritersRun() throws Exception {
+
+        int organizationCount = 64;
+        int threadCount = 4;
+        int paymentsPerThread = 3000;
+        ConcurrentController c = new ConcurrentController(16);
+        for (int i = 0; i < organizationCount; i++) {
+            c.addOrganization("org" + i, String.format("%08d", i), 0);
+        }
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (writing.get() && failure.get() == null) {
+                    for (int k : new int[]{10, 250}) {
+                        double previous = Double.MAX_VALUE;
+                        for (String x : c.getTopPayments(k)) {
+                            double sum = c.getPaymentSum(x);
+                            if (sum > previous) failure.set("top " + k + " out of order at " + x);
+                            previous = sum;
+                        }
+                    }
+                }
+            } catch (OrganizationAndPaymentsException e) {
+                failure.set(e.getMessage());
+            }
+        });
+        reader.start();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(thread);
+                LocalDateTime dateTime = LocalDateTime.of(2015, 1, 1, 12, 0, 0);
+                for (int i = 0; i < paymentsPerThread; i++) {
+                    int sender = random.nextInt(organizationCount);
+                    int reciever = (sender + 1 + random.nextInt(organizationCount - 1)) % organizationCount;
+                    c.addPayment("org" + sender, "org" + reciever, thread + "-" + i, "purpose", dateTime, 1 + (thread * paymentsPerThread + i) % 5000);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) future.get(1, TimeUnit.MINUTES);
+        executor.shutdown();
+        writing.set(false);
+        reader.join(30000);
+
+        Assert.assertNull(failure.get());
+        List<Double> sums = new ArrayList<>();
+        for (String x : c.getTopPayments(250)) sums.add(c.getPaymentSum(x));
+        List<Double> expected = new ArrayList<>();
+        for (int i = 0; i < threadCount * paymentsPerThread; i++) expected.add(1.0 + i % 5000);
+        expected.sort(Collections.reverseOrder());
+        Assert.assertEquals(expected.subList(0, 250), sums);
+        Assert.assertEquals(5000, c.getPaymentSum(c.getIdOfBiggestPayment()), 0.0);
+
+    }
+
+
+    @Test
+    public void dayTotalOverflowIsRejectedAtIngestion() throws OrganizationAndPaymentsException {
+
+        // With one stripe the whole range belongs to a single shard, as in Controller.
+        ConcurrentController c = new ConcurrentController(1);
+        c.addOrganization("mystic", "00000000", 4.0e16);
+        c.addOrganization("moon", "12345678", 0);
+        LocalDateTime dateTime = LocalDateTime.of(2015, 1, 1, 12, 0, 0);
+        c.addPayment("mystic", "moon", "1", "there", dateTime, 4.0e16);
+        c.addPayment("moon", "mystic", "2", "back", dateTime, 4.0e16);
+
+        try {
+            c.addPayment("mystic", "moon", "3", "there", dateTime, 4.0e16);
+            Assert.fail("BalanceOverflow");
+        } catch (BalanceOverflowException e) {
+            Assert.assertEquals(4.0e16, c.getBalance("mystic"), 0.0);
+            Assert.assertEquals(0, c.getBalance("moon"), 0.0);
+        }
+        c.addPayment("mystic", "moon", "3", "there", dateTime.plusDays(1), 4.0e16);
+        Assert.assertEquals(LocalDate.of(2015, 1, 1), c.getDateWithBiggestTotalPayments());
+        Assert.assertEquals(Arrays.asList("1", "2", "3"), c.getTopPayments(3));
+
+    }
+
+}
@@ -0,0 +1,171 @@
+import Exceptions.*;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+public class ControllerExportTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void balancesAreWrittenAsCapturedCsv() throws Exception {
+
+        Controller c = new Controller();
+        c.addOrganization("mystic", "00000000", 666.01);
+        c.addOrganization("moon, \"the\"", "12345678", -0.5);
+        c.addOrganization("kitty", "00991234", -1234567.89);
+
+        ControllerExport export = c.export();
+        c.addPayment("mystic", "kitty", "1", "after capture", LocalDateTime.of(2015, 1, 1, 12, 0), 100);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        export.writeBalances(output, ControllerExport.Format.CSV);
+
+        Assert.assertEquals("organizationName,registrationNumber,balance\n" +
+                "mystic,00000000,666.01\n" +
+                "\"moon, \"\"the\"\"\",12345678,-0.50\n" +
+                "kitty,00991234,-1234567.89\n", output.toString(StandardCharsets.UTF_8));
+
+    }
+
+
+    @Test
+    public void exportedPaymentCsvImportsBack() throws Exception {
+
+        Controller c = new Controller(PaymentStorage.COLUMNAR);
+        c.addOrganization("mystic", "00000000", 666);
+        c.addOrganization("moon", "12345678", 999);
+        c.addPayment("mystic", "moon", "1", "rent, \"March\"", LocalDateTime.of(2015, 1, 1, 12, 0, 0, 120000000), 69.99);
+        c.addPayment("moon", "mystic", "2", "Mew 😺\nline", LocalDateTime.of(2015, 1, 2, 0, 0), 10);
+        for (int i = 0; i < 5000; i++) {
+            c.addPayment("moon", "mystic", "bulk" + i, "bulk", LocalDateTime.of(2015, 1, 3, 0, 0).plusSeconds(i), 0.01);
+        }
+
+        Path file = folder.getRoot().toPath().resolve("payments.csv");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            c.export().writePayments(channel, ControllerExport.Format.CSV);
+        }
+        Controller imported = new Controller();
+        imported.addOrganization("mystic", "00000000", 666);
+        imported.addOrganization("moon", "12345678", 999);
+        ImportReport report = new PaymentImporter(imported).importFile(file, PaymentImporter.Format.CSV);
+
+        Assert.assertEquals(5002, report.getAcceptedCount());
+        Assert.assertEquals("rent, \"March\"", imported.getPaymentPurpose("1"));
+        Assert.assertEquals("Mew 😺\nline", imported.getPaymentPurpose("2"));
+        Assert.assertEquals(c.getPaymentDateTime("1"), imported.getPaymentDateTime("1"));
+        Assert.assertEquals(69.99, imported.getPaymentSum("1"), 0.0);
+        Assert.assertEquals(c.getTotal(LocalDateTime.of(2015, 1, 3, 0, 0), LocalDateTime.of(2015, 1, 4, 0, 0)),
+                imported.getTotal(LocalDateTime.of(2015, 1, 3, 0, 0), LocalDateTime.of(2015, 1, 4, 0, 0)), 0.0);
+
+    }
+
+
+    @Test
+    public void binaryExportDecodes() throws Exception {
+
+        Controller c = new Controller();
+        c.addOrganization("mystic", "00000000", 666);
+        c.addOrganization("moon", "12345678", -999.99);
+        LocalDateTime dateTime = LocalDateTime.of(1969, 12, 31, 23, 59, 59, 5);
+        c.addPayment("mystic", "moon", "1", "été", dateTime, 69.99);
+        c.addPayment("moon", "mystic", "2", "Mew", dateTime, 1);
+        c.addPayment("moon", "mystic", "3", "été", dateTime, 2);
+
+        ControllerExport export = c.export();
+        ByteArrayOutputStream balances = new ByteArrayOutputStream();
+        export.writeBalances(balances, ControllerExport.Format.BINARY);
+        ByteArrayOutputStream payments = new ByteArrayOutputStream();
+        export.writePayments(payments, ControllerExport.Format.BINARY);
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(balances.toByteArray()));
+        Assert.assertEquals(ControllerExport.BALANCES_MAGIC, input.readInt());
+        Assert.assertEquals(2, readVarLong(input));
+        Assert.assertEquals("mystic", readString(input));
+        Assert.assertEquals("00000000", readString(input));
+        Assert.assertEquals(ControllerExport.zigZag(59901), readVarLong(input));
+        Assert.assertEquals("moon", readString(input));
+        Assert.assertEquals("12345678", readString(input));
+        Assert.assertEquals(ControllerExport.zigZag(-93300), readVarLong(input));
+        Assert.assertEquals(-1, input.read());
+
+        input = new DataInputStream(new ByteArrayInputStream(payments.toByteArray()));
+        Assert.assertEquals(ControllerExport.PAYMENTS_MAGIC, input.readInt());
+        Assert.assertEquals(2, readVarLong(input));
+        Assert.assertEquals("mystic", readString(input));
+        Assert.assertEquals("moon", readString(input));
+        Assert.assertEquals(2, readVarLong(input));
+        Assert.assertEquals("été", readString(input));
+        Assert.assertEquals("Mew", readString(input));
+        Assert.assertEquals(3, readVarLong(input));
+        Assert.assertEquals(0, readVarLong(input));
+        Assert.assertEquals(1, readVarLong(input));
+        Assert.assertEquals("1", readString(input));
+        Assert.assertEquals(0, readVarLong(input));
+        Assert.assertEquals(ControllerExport.zigZag(dateTime.toEpochSecond(ZoneOffset.UTC)), readVarLong(input));
+        Assert.assertEquals(5, readVarLong(input));
+        Assert.assertEquals(6999, readVarLong(input));
+
+    }
+
+
+    @Test
+    public void writesAreBufferedIntoLargeChunks() throws Exception {
+
+        Controller c = new Controller();
+        for (int i = 0; i < 5000; i++) {
+            c.addOrganization("organization #" + i, String.format("%08d", i), i);
+        }
+        int[] writes = new int[2];
+        OutputStream output = new OutputStream() {
+            @Override
+            public void write(int b) {
+                Assert.fail("single-byte write");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                writes[0]++;
+                writes[1] += len;
+            }
+        };
+
+        c.export().writeBalances(output, ControllerExport.Format.CSV);
+
+        Assert.assertTrue(writes[1] > 100000);
+        Assert.assertTrue(writes[0] <= writes[1] / 8192 + 2);
+
+    }
+
+
+    private static long readVarLong(DataInputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int x = input.readUnsignedByte();
+            value |= (long) (x & 0x7F) << shift;
+            if ((x & 0x80) == 0) return value;
+        }
+    }
+
+
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[(int) readVarLong(input)];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
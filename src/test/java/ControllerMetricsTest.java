@@ -0,0 +1,133 @@
+import Exceptions.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.*;
+
+public class ControllerMetricsTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2015, 1, 1, 12, 0);
+
+
+    @Test
+    public void operationsAndRejectionsAreCounted() throws Exception {
+
+        Controller c = new Controller();
+        c.getMetrics().setLatencySampleInterval(0);
+        c.addOrganization("mystic", "00000000", 666);
+        c.addOrganization("moon", "12345678", 999);
+        try {
+            c.addOrganization("mystic", "87654321", 0);
+            Assert.fail();
+        } catch (DuplicateOrganizationException e) {
+        }
+        c.addPayment("mystic", "moon", "1", "purpose", TIME, 10);
+        try {
+            c.addPayment("mystic", "moon", "1", "purpose", TIME, 10);
+            Assert.fail();
+        } catch (DuplicatePaymentException e) {
+        }
+        Assert.assertEquals(PaymentStatus.DUPLICATE_PAYMENT, c.tryAddPayment("mystic", "moon", "1", "purpose", TIME, 10));
+        Assert.assertEquals(PaymentStatus.ORGANIZATION_NOT_FOUND, c.tryAddPayment("mystic", "kitty", "2", "purpose", TIME, 10));
+        c.addPayments(Arrays.asList(new PaymentRequest("moon", "mystic", "3", "purpose", TIME, 1), new PaymentRequest("moon", "moon", "4", "purpose", TIME, 1)));
+        c.getBalance("moon");
+        try {
+            c.getBalance("kitty");
+            Assert.fail();
+        } catch (OrganizationCannotBeFoundException e) {
+        }
+
+        MetricsSnapshot snapshot = c.getMetrics().snapshot();
+        Assert.assertEquals(3, snapshot.getOperationCount(ControllerMetrics.Operation.ADD_ORGANIZATION));
+        Assert.assertEquals(2, snapshot.getOperationCount(ControllerMetrics.Operation.ADD_PAYMENT));
+        Assert.assertEquals(2, snapshot.getOperationCount(ControllerMetrics.Operation.TRY_ADD_PAYMENT));
+        Assert.assertEquals(1, snapshot.getOperationCount(ControllerMetrics.Operation.ADD_PAYMENTS));
+        Assert.assertEquals(2, snapshot.getOperationCount(ControllerMetrics.Operation.GET_BALANCE));
+        Assert.assertEquals(0, snapshot.getOperationCount(ControllerMetrics.Operation.EXPORT));
+        Assert.assertEquals(1, snapshot.getRejectedCount(DuplicateOrganizationException.class));
+        Assert.assertEquals(2, snapshot.getRejectedCount(DuplicatePaymentException.class));
+        Assert.assertEquals(2, snapshot.getRejectedCount(OrganizationCannotBeFoundException.class));
+        Assert.assertEquals(1, snapshot.getRejectedCount(PaymentForItselfException.class));
+        Assert.assertEquals(4, snapshot.getRejections().size());
+        Assert.assertEquals(2, snapshot.getPaymentCount());
+        Assert.assertEquals(2, snapshot.getOrganizationCount());
+        Assert.assertEquals(1, snapshot.getPurposeCount());
+        Assert.assertEquals(0, snapshot.getLatency(ControllerMetrics.Operation.ADD_PAYMENT).getCount());
+
+    }
+
+
+    @Test
+    public void latencySamplingTimesEveryNthCall() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        c.getMetrics().setLatencySampleInterval(5);
+        Assert.assertEquals(8, c.getMetrics().getLatencySampleInterval());
+        c.addOrganization("mystic", "00000000", 666);
+        for (int i = 0; i < 99; i++) {
+            c.getBalance("mystic");
+        }
+        c.getMetrics().setLatencySampleInterval(0);
+        c.getBalance("mystic");
+
+        MetricsSnapshot snapshot = c.getMetrics().snapshot();
+        Assert.assertEquals(100, snapshot.getOperationCount(ControllerMetrics.Operation.GET_BALANCE));
+        Assert.assertEquals(100 / 8, snapshot.getLatency(ControllerMetrics.Operation.GET_BALANCE).getCount() + snapshot.getLatency(ControllerMetrics.Operation.ADD_ORGANIZATION).getCount());
+
+    }
+
+
+    @Test
+    public void histogramPercentilesAreWithinBucketPrecision() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100000; i++) {
+            histogram.record(i * 10);
+        }
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        Assert.assertEquals(100002, histogram.getCount());
+        Assert.assertEquals(LatencyHistogram.MAX_TRACKABLE_NANOS, histogram.getMaxNanos());
+        Assert.assertEquals(0, histogram.getValueAtPercentile(0));
+        for (double percentile : new double[]{10, 50, 90, 99, 99.9}) {
+            double exact = Math.ceil(percentile / 100 * 100002) * 10;
+            long reported = histogram.getValueAtPercentile(percentile);
+            Assert.assertTrue(percentile + ": " + reported, reported >= exact - 10 && reported <= exact * 1.04);
+        }
+        Assert.assertEquals(LatencyHistogram.MAX_TRACKABLE_NANOS, histogram.getValueAtPercentile(100));
+
+        LatencyHistogram copy = histogram.copy();
+        histogram.record(1);
+        Assert.assertEquals(100002, copy.getCount());
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            Assert.assertEquals(i, LatencyHistogram.index(LatencyHistogram.highestEquivalentValue(i)));
+        }
+
+    }
+
+
+    @Test
+    public void metricsAreReadableOverJmxUntilClose() throws Exception {
+
+        Controller c = new Controller();
+        c.addOrganization("mystic", "00000000", 666);
+        ObjectName name = c.getMetrics().registerMBean("metricsAreReadableOverJmxUntilClose");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        Assert.assertEquals(1, server.getAttribute(name, "OrganizationCount"));
+        TabularData counts = (TabularData) server.getAttribute(name, "OperationCounts");
+        Assert.assertEquals(1L, counts.get(new Object[]{"ADD_ORGANIZATION"}).get("value"));
+        server.setAttribute(name, new javax.management.Attribute("LatencySampleInterval", 1));
+        Assert.assertEquals(1, c.getMetrics().getLatencySampleInterval());
+
+        c.close();
+        Assert.assertFalse(server.isRegistered(name));
+
+    }
+}
@@ -0,0 +1,121 @@
+import Exceptions.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class IdempotencyWindowTest {
+
+    private static final LocalDateTime DATE_TIME = LocalDateTime.of(2015, 1, 1, 12, 0, 0);
+
+
+    @Test
+    public void retryReturnsOriginalResultWithoutTouchingBalances() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        c.setIdempotencyWindow(new IdempotencyWindow(100, Duration.ofMinutes(5)));
+        c.addOrganization("mystic", "00000000", 100);
+        c.addOrganization("moon", "12345678", 100);
+
+        Assert.assertEquals(PaymentStatus.ORGANIZATION_NOT_FOUND, c.tryAddPayment("mystic", "kitty", "p", "rent", DATE_TIME, 10));
+        c.addOrganization("kitty", "00991234", 0);
+        c.addPayment("mystic", "kitty", "p", "rent", DATE_TIME, 10);
+        c.addPayment("mystic", "kitty", "p", "rent", DATE_TIME, 10);
+        Assert.assertEquals(PaymentStatus.ACCEPTED, c.tryAddPayment("mystic", "kitty", "p", "rent", DATE_TIME, 10));
+
+        Assert.assertEquals(90, c.getBalance("mystic"), 0.0);
+        Assert.assertEquals(10, c.getBalance("kitty"), 0.0);
+        Assert.assertEquals(1, c.getMetrics().snapshot().getPaymentCount());
+
+    }
+
+
+    @Test
+    public void conflictingPayloadIsRejected() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        c.setIdempotencyWindow(new IdempotencyWindow(100, Duration.ofMinutes(5)));
+        c.addOrganization("mystic", "00000000", 100);
+        c.addOrganization("moon", "12345678", 100);
+        c.addPayment("mystic", "moon", "p", "rent", DATE_TIME, 10);
+
+        Assert.assertEquals(PaymentStatus.DUPLICATE_PAYMENT, c.tryAddPayment("mystic", "moon", "p", "rent", DATE_TIME, 11));
+        Assert.assertEquals(PaymentStatus.DUPLICATE_PAYMENT, c.tryAddPayment("moon", "mystic", "p", "rent", DATE_TIME, 10));
+        Assert.assertEquals(PaymentStatus.DUPLICATE_PAYMENT, c.tryAddPayment("mystic", "moon", "p", "gift", DATE_TIME, 10));
+        Assert.assertEquals(PaymentStatus.DUPLICATE_PAYMENT, c.tryAddPayment("mystic", "moon", "p", "rent", DATE_TIME.plusNanos(1), 10));
+        try {
+            c.addPayment("mystic", "moon", "p", "rent", DATE_TIME, 12);
+            Assert.fail();
+        } catch (DuplicatePaymentException e) {
+            Assert.assertEquals(110, c.getBalance("moon"), 0.0);
+        }
+
+    }
+
+
+    @Test
+    public void entriesLeaveByTimeAndSize() throws OrganizationAndPaymentsException {
+
+        AtomicLong clock = new AtomicLong();
+        IdempotencyWindow window = new IdempotencyWindow(2, Duration.ofSeconds(1), clock::get);
+        Controller c = new Controller();
+        c.setIdempotencyWindow(window);
+        c.addOrganization("mystic", "00000000", 100);
+        c.addOrganization("moon", "12345678", 100);
+
+        c.addPayment("mystic", "moon", "a", "rent", DATE_TIME, 1);
+        c.addPayment("mystic", "moon", "b", "rent", DATE_TIME, 1);
+        c.addPayment("mystic", "moon", "c", "rent", DATE_TIME, 1);
+        Assert.assertEquals(2, window.size());
+        Assert.assertEquals(PaymentStatus.DUPLICATE_PAYMENT, c.tryAddPayment("mystic", "moon", "a", "rent", DATE_TIME, 1));
+        Assert.assertEquals(PaymentStatus.ACCEPTED, c.tryAddPayment("mystic", "moon", "b", "rent", DATE_TIME, 1));
+
+        clock.set(Duration.ofMillis(500).toNanos());
+        c.addPayment("mystic", "moon", "d", "rent", DATE_TIME, 1);
+        clock.set(Duration.ofMillis(1200).toNanos());
+        Assert.assertEquals(PaymentStatus.DUPLICATE_PAYMENT, c.tryAddPayment("mystic", "moon", "c", "rent", DATE_TIME, 1));
+        Assert.assertEquals(PaymentStatus.ACCEPTED, c.tryAddPayment("mystic", "moon", "d", "rent", DATE_TIME, 1));
+        Assert.assertEquals(1, window.size());
+        Assert.assertEquals(96, c.getBalance("mystic"), 0.0);
+
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void windowMustHoldEntries() {
+
+        new IdempotencyWindow(0, Duration.ofMinutes(5));
+
+    }
+
+
+    @Test
+    public void batchesUseTheWindowToo() throws OrganizationAndPaymentsException {
+
+        IdempotencyWindow window = new IdempotencyWindow(100, Duration.ofMinutes(5));
+        Controller c = new Controller();
+        c.setIdempotencyWindow(window);
+        c.addOrganization("mystic", "00000000", 100);
+        c.addOrganization("moon", "12345678", 100);
+        c.addPayment("mystic", "moon", "a", "rent", DATE_TIME, 10);
+
+        BatchResult result = c.addPayments(Arrays.asList(
+                new PaymentRequest("mystic", "moon", "a", "rent", DATE_TIME, 10),
+                new PaymentRequest("mystic", "moon", "a", "rent", DATE_TIME, 11),
+                new PaymentRequest("mystic", "moon", "b", "rent", DATE_TIME, 5)));
+
+        Assert.assertTrue(result.isAccepted(0));
+        Assert.assertTrue(result.getRejection(1) instanceof DuplicatePaymentException);
+        Assert.assertTrue(result.isAccepted(2));
+        Assert.assertEquals(2, window.size());
+        Assert.assertEquals(PaymentStatus.ACCEPTED, c.tryAddPayment("mystic", "moon", "b", "rent", DATE_TIME, 5));
+        Assert.assertTrue(c.addPayments(Arrays.asList(new PaymentRequest("mystic", "moon", "b", "rent", DATE_TIME, 5))).isAccepted(0));
+        Assert.assertEquals(85, c.getBalance("mystic"), 0.0);
+        Assert.assertEquals(115, c.getBalance("moon"), 0.0);
+
+    }
+
+}
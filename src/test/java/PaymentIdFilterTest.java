@@ -0,0 +1,172 @@
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+public class PaymentIdFilterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void filterHasNoFalseNegativesAndFewFalsePositives() {
+
+        PaymentIdFilter filter = new PaymentIdFilter();
+        for (int i = 0; i < filter.getCapacity(); i++) {
+            filter.add("p" + i);
+        }
+        for (int i = 0; i < filter.getCapacity(); i++) {
+            Assert.assertTrue(filter.mightContain("p" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain("q" + i)) falsePositives++;
+        }
+
+        Assert.assertFalse(filter.isFull());
+        Assert.assertTrue("false positives: " + falsePositives, falsePositives < 250);
+
+    }
+
+
+    @Test
+    public void duplicatesAreRejectedWhileFilterGrows() throws Exception {
+
+        LocalDateTime dateTime = LocalDateTime.of(2015, 1, 1, 12, 0, 0);
+        // Growth starts past the default capacity and takes about a third as many payments again to finish.
+        int midGrowth = PaymentIdFilter.DEFAULT_CAPACITY + 10000;
+        int count = PaymentIdFilter.DEFAULT_CAPACITY + 40000;
+
+        for (PaymentStorage storage : Arrays.asList(PaymentStorage.HEAP, PaymentStorage.COLUMNAR)) {
+            Controller c = new Controller(storage);
+            c.addOrganization("mystic", "00000000", 0);
+            c.addOrganization("moon", "12345678", 0);
+            for (int i = 0; i < count; i++) {
+                if (i == 1000) c.setPaymentIdFilterEnabled(true);
+                Assert.assertEquals(PaymentStatus.ACCEPTED, c.tryAddPayment("mystic", "moon", "p" + i, "rent", dateTime, 1));
+                if (i == midGrowth || i == count - 1) {
+                    for (int j = 0; j <= i; j += 97) {
+                        Assert.assertEquals(PaymentStatus.DUPLICATE_PAYMENT, c.tryAddPayment("moon", "mystic", "p" + j, "rent", dateTime, 1));
+                    }
+                }
+            }
+            Assert.assertEquals(-count, c.getBalance("mystic"), 0.0);
+            Assert.assertTrue(c.isPaymentIdFilterEnabled());
+        }
+
+    }
+
+
+    @Test
+    public void filterIsRestoredFromSnapshot() throws Exception {
+
+        Path directory = folder.getRoot().toPath();
+        LocalDateTime dateTime = LocalDateTime.of(2015, 1, 1, 12, 0, 0);
+        Path snapshot;
+
+        try (Controller c = Controller.open(directory)) {
+            c.setPaymentIdFilterEnabled(true);
+            c.addOrganization("mystic", "00000000", 100);
+            c.addOrganization("moon", "12345678", 100);
+            for (int i = 0; i < 100; i++) {
+                c.addPayment("mystic", "moon", "a" + i, "before", dateTime, 1);
+            }
+            snapshot = c.snapshot().get();
+            c.addPayment("mystic", "moon", "b", "after", dateTime, 1);
+        }
+
+        PaymentIdFilter filter = ControllerSnapshot.read(snapshot).getIdFilter();
+        Assert.assertNotNull(filter);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(filter.mightContain("a" + i));
+        }
+
+        try (Controller c = Controller.open(directory)) {
+            Assert.assertTrue(c.isPaymentIdFilterEnabled());
+            Assert.assertEquals(PaymentStatus.DUPLICATE_PAYMENT, c.tryAddPayment("moon", "mystic", "a42", "again", dateTime, 1));
+            Assert.assertEquals(PaymentStatus.DUPLICATE_PAYMENT, c.tryAddPayment("moon", "mystic", "b", "again", dateTime, 1));
+            Assert.assertEquals(PaymentStatus.ACCEPTED, c.tryAddPayment("moon", "mystic", "c", "new", dateTime, 1));
+            Assert.assertEquals(100 - 101 + 1, c.getBalance("mystic"), 0.0);
+        }
+
+    }
+
+
+    @Test
+    public void filterIsOffByDefault() throws Exception {
+
+        Path directory = folder.getRoot().toPath();
+
+        try (Controller c = Controller.open(directory)) {
+            Assert.assertFalse(c.isPaymentIdFilterEnabled());
+            c.addOrganization("mystic", "00000000", 100);
+            Assert.assertNull(ControllerSnapshot.read(c.snapshot().get()).getIdFilter());
+        }
+
+        try (Controller c = Controller.open(directory)) {
+            Assert.assertFalse(c.isPaymentIdFilterEnabled());
+        }
+
+    }
+
+
+    @Test
+    public void copyIsIndependentOfLaterCodes() {
+
+        PaymentIdFilter filter = new PaymentIdFilter();
+        filter.add("a");
+        PaymentIdFilter copy = filter.copy();
+        for (int i = 0; i < 1000; i++) {
+            filter.add("b" + i);
+        }
+
+        Assert.assertEquals(1, copy.size());
+        Assert.assertTrue(copy.mightContain("a"));
+        Assert.assertEquals(filter.getCapacity(), copy.getCapacity());
+        int stillAbsent = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (!copy.mightContain("b" + i)) stillAbsent++;
+        }
+        Assert.assertTrue(stillAbsent > 990);
+
+    }
+
+
+    @Test
+    public void largestFilterCopiesAndRoundTrips() throws Exception {
+
+        Assert.assertEquals(Integer.MAX_VALUE, PaymentIdFilter.capacityOf(PaymentIdFilter.MAX_BLOCKS));
+
+        PaymentIdFilter filter = PaymentIdFilter.withMaxBlocks(Integer.MAX_VALUE, 4);
+        Assert.assertEquals(128, filter.getCapacity());
+        for (int i = 0; i < 200; i++) {
+            filter.add("p" + i);
+        }
+        Assert.assertFalse(filter.isFull());
+
+        PaymentIdFilter copy = filter.copy();
+        Assert.assertEquals(filter.getCapacity(), copy.getCapacity());
+        Assert.assertFalse(copy.isFull());
+
+        Path file = folder.newFile().toPath();
+        try (SnapshotOutput output = new SnapshotOutput(file)) {
+            filter.writeTo(output);
+        }
+        PaymentIdFilter restored;
+        try (SnapshotInput input = new SnapshotInput(file)) {
+            restored = PaymentIdFilter.readFrom(input);
+        }
+        Assert.assertEquals(200, restored.size());
+        Assert.assertEquals(128, restored.getCapacity());
+        for (int i = 0; i < 200; i++) {
+            Assert.assertTrue(restored.mightContain("p" + i));
+        }
+
+    }
+
+}
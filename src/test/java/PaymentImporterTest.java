@@ -0,0 +1,199 @@
+import Exceptions.*;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+
+public class PaymentImporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void csvRecordsAreAppliedInOrderWithRejectionsByReason() throws Exception {
+
+        Controller c = new Controller();
+        c.addOrganization("mystic", "00000000", 666);
+        c.addOrganization("moon", "12345678", 999);
+        Path file = write("payments.csv",
+                "senderName,recieverName,uniqueCode,paymentPurpose,paymentDateTime,paymentSum",
+                "mystic,moon,1,\"rent, March\",2015-01-01T12:00,69",
+                "moon,mystic,2,\"say \"\"hi\"\"\",2015-01-02T12:00:30,10.5\r",
+                "",
+                "moon,mystic,1,again,2015-01-02T12:00,1",
+                "moon,kitty,3,Mew,2015-01-02T12:00,1",
+                "moon,moon,4,Mew,2015-01-02T12:00,1",
+                "moon,mystic,5,Mew,yesterday,1",
+                "moon,mystic,6,Mew,2015-01-02T12:00,lots",
+                "moon,mystic,7,Mew,2015-01-02T12:00,-1",
+                "moon,mystic,8,Mew",
+                "moon,mystic,9,Mew," + LocalDateTime.now().plusDays(1) + ",1");
+
+        ImportReport report = new PaymentImporter(c).importFile(file, PaymentImporter.Format.CSV);
+
+        Assert.assertEquals(10, report.getRecordCount());
+        Assert.assertEquals(2, report.getAcceptedCount());
+        Assert.assertEquals(8, report.getRejectedCount());
+        Assert.assertEquals(1, report.getRejectedCount(DuplicatePaymentException.class));
+        Assert.assertEquals(1, report.getRejectedCount(OrganizationCannotBeFoundException.class));
+        Assert.assertEquals(1, report.getRejectedCount(PaymentForItselfException.class));
+        Assert.assertEquals(2, report.getRejectedCount(InvalidPaymentTimeException.class));
+        Assert.assertEquals(2, report.getRejectedCount(InvalidPaymentSumException.class));
+        Assert.assertEquals(1, report.getRejectedCount(MalformedRecordException.class));
+        Assert.assertEquals(Files.size(file), report.getBytesRead());
+        Assert.assertEquals("rent, March", c.getPaymentPurpose("1"));
+        Assert.assertEquals("say \"hi\"", c.getPaymentPurpose("2"));
+        Assert.assertEquals(LocalDateTime.of(2015, 1, 2, 12, 0, 30), c.getPaymentDateTime("2"));
+        Assert.assertEquals(607.5, c.getBalance("mystic"), 0.0);
+
+    }
+
+
+    @Test
+    public void jsonRecordsAreImported() throws Exception {
+
+        Controller c = new Controller();
+        c.addOrganization("mystic", "00000000", 666);
+        c.addOrganization("moon", "12345678", 999);
+        Path file = write("payments.jsonl",
+                "{\"senderName\": \"mystic\", \"recieverName\": \"moon\", \"uniqueCode\": \"1\", \"paymentPurpose\": \"line\\nbreak \\u00e9\", \"paymentDateTime\": \"2015-01-01T12:00\", \"paymentSum\": 69}",
+                "{\"paymentSum\": \"10.25\", \"paymentDateTime\": \"2015-01-01T12:00\", \"paymentPurpose\": \"Mew\", \"uniqueCode\": \"2\", \"recieverName\": \"mystic\", \"senderName\": \"moon\", \"extra\": 1}",
+                "{\"senderName\": \"mystic\", \"recieverName\": \"moon\", \"uniqueCode\": \"3\"}",
+                "[1, 2, 3]");
+
+        ImportReport report = new PaymentImporter(c).importFile(file, PaymentImporter.Format.JSON_LINES);
+
+        Assert.assertEquals(4, report.getRecordCount());
+        Assert.assertEquals(2, report.getAcceptedCount());
+        Assert.assertEquals(2, report.getRejectedCount(MalformedRecordException.class));
+        Assert.assertEquals("line\nbreak é", c.getPaymentPurpose("1"));
+        Assert.assertEquals(607.25, c.getBalance("mystic"), 0.0);
+
+    }
+
+
+    @Test
+    public void smallChunksAndLongLinesKeepInputOrder() throws Exception {
+
+        Controller expected = new Controller();
+        Controller c = new Controller();
+        for (Controller x : Arrays.asList(expected, c)) {
+            for (int i = 0; i < 20; i++) {
+                x.addOrganization("organization #" + i, String.format("%08d", i), 0);
+            }
+        }
+        Random random = new Random(3);
+        ArrayList<String> lines = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            int sender = random.nextInt(20);
+            int reciever = random.nextInt(20);
+            String code = "p" + random.nextInt(2500);
+            String purpose = i % 500 == 0 ? String.join("", Collections.nCopies(300, "long")) : "purpose";
+            LocalDateTime dateTime = LocalDateTime.of(2015, 1, 1, 0, 0).plusMinutes(i);
+            int sum = 1 + random.nextInt(100);
+            lines.add("organization #" + sender + ",organization #" + reciever + "," + code + "," + purpose + "," + dateTime + "," + sum);
+            expected.tryAddPayment("organization #" + sender, "organization #" + reciever, code, purpose, dateTime, sum);
+        }
+        Path file = write("payments.csv", lines.toArray(new String[0]));
+
+        ImportReport report = new PaymentImporter(c, 4, 256, 3).importFile(file, PaymentImporter.Format.CSV);
+
+        Assert.assertEquals(3000, report.getRecordCount());
+        Assert.assertEquals(expected.getTopPayments(3000), c.getTopPayments(3000));
+        Assert.assertEquals(expected.getFinalBalances(), c.getFinalBalances());
+        Assert.assertEquals(expected.getTopPayments(3000).size(), report.getAcceptedCount());
+
+    }
+
+
+    @Test
+    public void quotedLineBreakStaysInsideTheField() throws Exception {
+
+        Controller c = new Controller();
+        c.addOrganization("mystic", "00000000", 666);
+        c.addOrganization("moon", "12345678", 999);
+        ArrayList<String> lines = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            lines.add("mystic,moon," + i + ",\"two");
+            lines.add("\"\"quoted\"\"\r");
+            lines.add("lines\",2015-01-01T12:00,1");
+        }
+        Path file = write("payments.csv", lines.toArray(new String[0]));
+
+        // Small chunks make the reader cut between records many times, never inside the quoted field.
+        ImportReport report = new PaymentImporter(c, 4, 64, 3).importFile(file, PaymentImporter.Format.CSV);
+
+        Assert.assertEquals(50, report.getRecordCount());
+        Assert.assertEquals(50, report.getAcceptedCount());
+        Assert.assertEquals("two\n\"quoted\"\r\nlines", c.getPaymentPurpose("0"));
+        Assert.assertEquals("two\n\"quoted\"\r\nlines", c.getPaymentPurpose("49"));
+
+    }
+
+
+    @Test
+    public void onlyTheFirstLineCanBeAHeader() throws Exception {
+
+        Controller c = new Controller();
+        c.addOrganization("senderName", "00000000", 666);
+        c.addOrganization("moon", "12345678", 999);
+        Path file = write("payments.csv",
+                "senderName,recieverName,uniqueCode,paymentPurpose,paymentDateTime,paymentSum",
+                "senderName,moon,1,rent,2015-01-01T12:00,69",
+                "senderName,recieverName,uniqueCode,paymentPurpose,paymentDateTime,paymentSum");
+
+        ImportReport report = new PaymentImporter(c).importFile(file, PaymentImporter.Format.CSV);
+
+        Assert.assertEquals(2, report.getRecordCount());
+        Assert.assertEquals(1, report.getAcceptedCount());
+        Assert.assertEquals(1, report.getRejectedCount(InvalidPaymentTimeException.class));
+        Assert.assertEquals(597, c.getBalance("senderName"), 0.0);
+
+    }
+
+
+    @Test
+    public void stoppingEarlyLeavesCallersChannelOpen() throws Exception {
+
+        Controller c = new Controller() {
+            @Override
+            public PaymentStatus tryAddPayment(String senderName, String recieverName, String uniqueCode, String paymentPurpose, LocalDateTime paymentDateTime, double paymentSum) {
+                throw new IllegalStateException("controller failed");
+            }
+        };
+        byte[] record = "mystic,moon,1,rent,2015-01-01T12:00,1\n".getBytes(StandardCharsets.UTF_8);
+        Pipe pipe = Pipe.open();
+        pipe.sink().write(ByteBuffer.wrap(record));
+
+        try {
+            // One record fills the first chunk; the reader then blocks on the pipe while the failure stops the import.
+            new PaymentImporter(c, 1, record.length, 1).importFrom(pipe.source(), PaymentImporter.Format.CSV);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("controller failed", e.getMessage());
+        }
+        Thread.sleep(100);
+
+        Assert.assertTrue(pipe.source().isOpen());
+        pipe.sink().close();
+        pipe.source().close();
+
+    }
+
+
+    private Path write(String name, String... lines) throws IOException {
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
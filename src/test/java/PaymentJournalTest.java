@@ -0,0 +1,266 @@
+import Exceptions.*;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+public class PaymentJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void controllerStateIsRebuiltFromJournal() throws Exception {
+
+        Path directory = folder.getRoot().toPath();
+        LocalDateTime dateTime = LocalDateTime.of(2015, 1, 1, 12, 0, 0, 123456789);
+
+        try (Controller c = Controller.open(directory)) {
+            c.addOrganization("mystic", "00000000", 666.01);
+            c.addOrganization("moon", "12345678", -0.5);
+            c.addPayment("mystic", "moon", "1", "Just for fun!", dateTime, 69.99);
+            c.addPayments(Arrays.asList(
+                    new PaymentRequest("moon", "mystic", "2", "Mew", dateTime.plusDays(1), 10),
+                    new PaymentRequest("moon", "missing", "3", "Mew", dateTime, 10)));
+            try {
+                c.addPayment("mystic", "moon", "1", "again", dateTime, 1);
+                Assert.fail("DuplicatePayment");
+            } catch (DuplicatePaymentException e) {
+                Assert.assertEquals("DuplicatePayment", e.getMessage());
+            }
+        }
+
+        try (Controller c = Controller.open(directory)) {
+            Assert.assertEquals(606.02, c.getBalance("mystic"), 0.0);
+            Assert.assertEquals(59.49, c.getBalance("moon"), 0.0);
+            Assert.assertEquals("12345678", c.getRegistrationNumber("moon"));
+            Assert.assertEquals("Just for fun!", c.getPaymentPurpose("1"));
+            Assert.assertEquals(dateTime, c.getPaymentDateTime("1"));
+            Assert.assertEquals("moon", c.getSenderName("2"));
+            Assert.assertEquals("1", c.getIdOfBiggestPayment());
+            Assert.assertEquals(LocalDate.of(2015, 1, 1), c.getDateWithBiggestTotalPayments());
+
+            c.addPayment("mystic", "moon", "4", "after restart", dateTime, 1);
+        }
+
+        Assert.assertEquals(5, PaymentJournal.replay(segments(directory).get(0), null));
+
+    }
+
+
+    @Test
+    public void tornTailIsDroppedOnOpen() throws Exception {
+
+        Path directory = folder.getRoot().toPath();
+        LocalDateTime dateTime = LocalDateTime.of(2015, 1, 1, 12, 0, 0);
+
+        try (Controller c = Controller.open(directory)) {
+            c.addOrganization("mystic", "00000000", 100);
+            c.addOrganization("moon", "12345678", 100);
+            c.addPayment("mystic", "moon", "1", "first", dateTime, 10);
+            c.addPayment("mystic", "moon", "2", "second", dateTime, 20);
+        }
+        try (FileChannel channel = FileChannel.open(segments(directory).get(0), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (Controller c = Controller.open(directory)) {
+            Assert.assertEquals(90, c.getBalance("mystic"), 0.0);
+            c.addPayment("mystic", "moon", "2", "second again", dateTime, 5);
+        }
+
+        try (Controller c = Controller.open(directory)) {
+            Assert.assertEquals("second again", c.getPaymentPurpose("2"));
+            Assert.assertEquals(85, c.getBalance("mystic"), 0.0);
+        }
+
+    }
+
+
+    @Test
+    public void groupCommitMakesRecordsDurable() throws Exception {
+
+        Path journalFile = folder.getRoot().toPath().resolve("payments.journal");
+
+        try (PaymentJournal journal = PaymentJournal.open(journalFile, 0, null, 4, 10_000)) {
+            for (int i = 0; i < 3; i++) journal.appendOrganization("org" + i, String.format("%08d", i), i);
+            Assert.assertEquals(3, journal.getLastSequence());
+            Assert.assertEquals(0, journal.getDurableSequence());
+
+            journal.sync();
+            Assert.assertEquals(3, journal.getDurableSequence());
+
+            for (int i = 3; i < 7; i++) journal.appendOrganization("org" + i, String.format("%08d", i), i);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (journal.getDurableSequence() < 7 && System.currentTimeMillis() < deadline) Thread.sleep(1);
+            Assert.assertEquals(7, journal.getDurableSequence());
+        }
+
+    }
+
+
+    @Test
+    public void synchronousCommitWritesBeforeReturning() throws Exception {
+
+        Path directory = folder.getRoot().toPath();
+        LocalDateTime dateTime = LocalDateTime.of(2015, 1, 1, 12, 0, 0);
+
+        try (Controller c = Controller.open(directory)) {
+            c.setSynchronousCommit(true);
+            Path segment = segments(directory).get(0);
+            long size = Files.size(segment);
+            c.addOrganization("mystic", "00000000", 100);
+            Assert.assertTrue(Files.size(segment) > size);
+            size = Files.size(segment);
+            c.addOrganization("moon", "12345678", 100);
+            c.addPayment("mystic", "moon", "1", "first", dateTime, 10);
+            Assert.assertTrue(Files.size(segment) > size);
+            size = Files.size(segment);
+            c.addPayments(Arrays.asList(new PaymentRequest("moon", "mystic", "2", "second", dateTime, 5)));
+            Assert.assertTrue(Files.size(segment) > size);
+            Assert.assertEquals(4, PaymentJournal.replay(segment, null));
+        }
+
+    }
+
+
+    @Test(expected = IOException.class)
+    public void foreignFileIsRejected() throws Exception {
+
+        Path directory = folder.getRoot().toPath();
+        Files.write(directory.resolve("journal-0000000000000000001.log"), "hello world".getBytes());
+        Controller.open(directory);
+
+    }
+
+
+    @Test
+    public void snapshotReplacesReplayedJournal() throws Exception {
+
+        Path directory = folder.getRoot().toPath();
+        LocalDateTime dateTime = LocalDateTime.of(2015, 1, 1, 12, 0, 0);
+
+        try (Controller c = Controller.open(directory)) {
+            c.addOrganization("mystic", "00000000", 100);
+            c.addOrganization("moon", "12345678", 100);
+            for (int i = 0; i < 50; i++) {
+                c.addPayment("mystic", "moon", "a" + i, "before", dateTime.plusDays(i % 3), 1 + i);
+            }
+            Path snapshot = c.snapshot().get();
+            c.addOrganization("kitty", "00991234", -3);
+            c.addPayment("moon", "kitty", "b", "after", dateTime.plusDays(7), 2000);
+
+            Assert.assertTrue(Files.exists(snapshot));
+            Assert.assertEquals(1, segments(directory).size());
+        }
+
+        try (Controller c = Controller.open(directory)) {
+            Assert.assertEquals(100 - 1275, c.getBalance("mystic"), 0.0);
+            Assert.assertEquals(100 + 1275 - 2000, c.getBalance("moon"), 0.0);
+            Assert.assertEquals(1997, c.getBalance("kitty"), 0.0);
+            Assert.assertEquals("before", c.getPaymentPurpose("a49"));
+            Assert.assertEquals("b", c.getIdOfBiggestPayment());
+            Assert.assertEquals(Arrays.asList("b", "a49", "a48"), c.getTopPayments(3));
+            Assert.assertEquals(LocalDate.of(2015, 1, 8), c.getDateWithBiggestTotalPayments());
+            Assert.assertEquals(Arrays.asList("mystic", "moon"), c.getOrganizationsWithNegativeSaldo());
+
+            c.snapshot().get();
+            c.snapshot().get();
+            c.addPayment("kitty", "moon", "c", "last", dateTime, 1);
+        }
+
+        try (Controller c = Controller.open(directory)) {
+            Assert.assertEquals(1996, c.getBalance("kitty"), 0.0);
+            Assert.assertEquals("last", c.getPaymentPurpose("c"));
+        }
+
+    }
+
+
+    @Test(expected = IllegalStateException.class)
+    public void snapshotNeedsDataDirectory() throws Exception {
+
+        new Controller().snapshot();
+
+    }
+
+
+    @Test
+    public void damageInsideAnOlderSegmentFailsOpen() throws Exception {
+
+        Path directory = folder.getRoot().toPath();
+        writeTwoSegments(directory);
+        try (Controller c = Controller.open(directory)) {
+            Assert.assertEquals(75, c.getBalance("mystic"), 0.0);
+        }
+        Path older = segments(directory).get(0);
+        try (FileChannel channel = FileChannel.open(older, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer middle = ByteBuffer.allocate(1);
+            channel.read(middle, channel.size() / 2);
+            middle.put(0, (byte) (middle.get(0) ^ 0x55));
+            channel.write(middle.flip(), channel.size() / 2);
+        }
+
+        try {
+            Controller.open(directory).close();
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("journal"));
+        }
+
+    }
+
+
+    @Test
+    public void missingSegmentFailsOpen() throws Exception {
+
+        Path directory = folder.getRoot().toPath();
+        writeTwoSegments(directory);
+        Files.delete(segments(directory).get(0));
+
+        try {
+            Controller.open(directory).close();
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertEquals("journal records 1 to 4 are missing", e.getMessage());
+        }
+
+    }
+
+
+    // An older segment with records 1 to 4 and an active one starting at 5, as left by a crash between rolling and snapshotting.
+    private static void writeTwoSegments(Path directory) throws Exception {
+        LocalDateTime dateTime = LocalDateTime.of(2015, 1, 1, 12, 0, 0);
+        try (Controller c = Controller.open(directory)) {
+            c.addOrganization("mystic", "00000000", 100);
+            c.addOrganization("moon", "12345678", 100);
+            c.addPayment("mystic", "moon", "1", "first", dateTime, 10);
+            c.addPayment("mystic", "moon", "2", "second", dateTime, 20);
+        }
+        try (PaymentJournal journal = PaymentJournal.open(directory.resolve(String.format("journal-%019d.log", 5)), 4, null)) {
+            journal.appendPayment("moon", "mystic", "3", "third", dateTime, 500);
+        }
+    }
+
+
+    private static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "journal-*.log")) {
+            for (Path x : stream) segments.add(x);
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+}
@@ -0,0 +1,145 @@
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class PaymentServerTest {
+
+    private Controller controller;
+    private SingleWriterController writer;
+    private PaymentServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+
+    @Before
+    public void start() throws Exception {
+        controller = new Controller();
+        writer = new SingleWriterController(controller);
+        server = new PaymentServer(writer, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+
+    @After
+    public void stop() {
+        server.close();
+        writer.close();
+    }
+
+
+    @Test
+    public void paymentsAndBalancesOverHttp() throws Exception {
+
+        assertResponse(201, "{\"name\":\"mystic\"}", post("/organizations", "{\"name\":\"mystic\",\"registrationNumber\":\"00000000\",\"initialBalance\":666}"));
+        assertResponse(201, "{\"name\":\"moon \\\"the\\\"\"}", post("/organizations", "{\"name\":\"moon \\\"the\\\"\",\"registrationNumber\":\"12345678\",\"initialBalance\":-0.5}"));
+        String payment = "{\"senderName\":\"mystic\",\"recieverName\":\"moon \\\"the\\\"\",\"uniqueCode\":\"1\",\"paymentPurpose\":\"rent\"," +
+                "\"paymentDateTime\":\"2015-01-01T12:00:00\",\"paymentSum\":10.25}";
+        assertResponse(201, "{\"status\":\"ACCEPTED\"}", post("/payments", payment));
+
+        assertResponse(200, "{\"name\":\"mystic\",\"balance\":655.75}", get("/organizations/mystic/balance"));
+        assertResponse(200, "{\"name\":\"moon \\\"the\\\"\",\"balance\":9.75}", get("/organizations/moon%20%22the%22/balance"));
+        HttpResponse<String> balances = get("/balances");
+        Assert.assertEquals(200, balances.statusCode());
+        Assert.assertTrue(balances.body(), balances.body().contains("\"mystic\":655.75"));
+        Assert.assertTrue(balances.body(), balances.body().contains("\"moon \\\"the\\\"\":9.75"));
+        Assert.assertEquals(655.75, controller.getBalance("mystic"), 0.0);
+
+    }
+
+
+    @Test
+    public void rejectionsMapToStatusCodes() throws Exception {
+
+        post("/organizations", "{\"name\":\"mystic\",\"registrationNumber\":\"00000000\",\"initialBalance\":666}");
+        post("/organizations", "{\"name\":\"moon\",\"registrationNumber\":\"12345678\",\"initialBalance\":999}");
+        String payment = "{\"senderName\":\"mystic\",\"recieverName\":\"moon\",\"uniqueCode\":\"1\",\"paymentPurpose\":\"rent\"," +
+                "\"paymentDateTime\":\"2015-01-01T12:00:00\",\"paymentSum\":10}";
+        post("/payments", payment);
+
+        assertResponse(409, "{\"error\":\"DuplicatePaymentException\"}", post("/payments", payment));
+        assertResponse(404, "{\"error\":\"OrganizationCannotBeFoundException\"}", post("/payments", payment.replace("\"1\"", "\"2\"").replace("moon", "kitty")));
+        assertResponse(422, "{\"error\":\"InvalidPaymentSumException\"}", post("/payments", payment.replace("\"1\"", "\"3\"").replace(":10}", ":-10}")));
+        assertResponse(422, "{\"error\":\"MalformedRecordException\"}", post("/payments", "{\"senderName\":\"mystic\"}"));
+        assertResponse(409, "{\"error\":\"DuplicateOrganizationException\"}", post("/organizations", "{\"name\":\"mystic\",\"registrationNumber\":\"87654321\",\"initialBalance\":0}"));
+        assertResponse(422, "{\"error\":\"InvalidRegistrationNumberFormatException\"}", post("/organizations", "{\"name\":\"kitty\",\"registrationNumber\":\"1234\",\"initialBalance\":0}"));
+        assertResponse(404, "{\"error\":\"OrganizationCannotBeFoundException\"}", get("/organizations/kitty/balance"));
+        assertResponse(404, "{\"error\":\"NotFound\"}", get("/organizations/mystic"));
+        assertResponse(405, "{\"error\":\"MethodNotAllowed\"}", get("/payments"));
+        Assert.assertEquals(656, controller.getBalance("mystic"), 0.0);
+        Assert.assertEquals(1009, controller.getBalance("moon"), 0.0);
+
+    }
+
+
+    @Test
+    public void balancesStayCompleteWhileWritesAreInFlight() throws Exception {
+
+        int organizationCount = 50;
+        for (int i = 0; i < organizationCount; i++) {
+            writer.addOrganization("org" + i, String.format("%08d", i), 100).get();
+        }
+        LocalDateTime dateTime = LocalDateTime.of(2015, 1, 1, 12, 0);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Thread payments = new Thread(() -> {
+            List<CompletableFuture<PaymentStatus>> futures = new ArrayList<>();
+            for (int i = 0; i < 20000; i++) {
+                int sender = i % organizationCount;
+                futures.add(writer.addPayment("org" + sender, "org" + (sender + 1 + i % (organizationCount - 1)) % organizationCount, "p" + i, "rent", dateTime, 1));
+            }
+            futures.forEach(CompletableFuture::join);
+            writing.set(false);
+        });
+        payments.start();
+
+        int reads = 0;
+        while (writing.get() || reads < 10) {
+            HttpResponse<String> balance = get("/organizations/org7/balance");
+            Assert.assertEquals(balance.body(), 200, balance.statusCode());
+            HttpResponse<String> balances = get("/balances");
+            Assert.assertEquals(balances.body(), 200, balances.statusCode());
+            double total = 0;
+            int count = 0;
+            for (String x : balances.body().substring(1, balances.body().length() - 1).split(",")) {
+                total += Double.parseDouble(x.substring(x.indexOf(':') + 1));
+                count++;
+            }
+            Assert.assertEquals(organizationCount, count);
+            Assert.assertEquals(organizationCount * 100, total, 0.0);
+            reads++;
+        }
+        payments.join();
+
+    }
+
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri(path)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+
+    private HttpResponse<String> post(String path, String body) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri(path)).POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getPort() + path);
+    }
+
+
+    private static void assertResponse(int code, String body, HttpResponse<String> response) {
+        Assert.assertEquals(response.body(), code, response.statusCode());
+        Assert.assertEquals(body, response.body());
+    }
+}
@@ -6,6 +6,8 @@ import java.lang.reflect.Array;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 public class PaymentTest {
 
@@ -96,7 +98,7 @@ public class PaymentTest {
             c.addOrganization("test", "0000000A", 18);
             Assert.fail("InvalidRegistrationNumberFormat");
         } catch (InvalidRegistrationNumberFormatException e) {
-            Assert.assertNotEquals("InvalidRegistrationNumberFormat", e.getMessage());
+            Assert.assertNotEquals("", e.getMessage());
         }
 
         try {
@@ -848,5 +850,537 @@ public class PaymentTest {
         Assert.assertEquals(exceptions,c.getDateWithBiggestTotalPayments());
 
     }
-    
+
+
+    @Test
+    public void paymentRejectedForMissingSenderLeavesBalancesUntouched() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        c.addOrganization("sausages", "22334456", 0);
+        c.addOrganization("kitty", "00991234", -3);
+
+        LocalDateTime dateTime = LocalDateTime.of(2015, 1, 1, 12, 0, 0);
+
+        try {
+            c.addPayment("missing", "kitty", "1", "Just for fun!", dateTime, 69);
+            Assert.fail("OrganizationCannotBeFound");
+        } catch (OrganizationCannotBeFoundException e) {
+            Assert.assertEquals(-3, c.getBalance("kitty"), 0.0);
+        }
+
+        try {
+            c.addPayment("sausages", "kitty", "", "Just for fun!", dateTime, 69);
+            Assert.fail("EmptyPaymentId");
+        } catch (EmptyPaymentIdException e) {
+            Assert.assertEquals(0, c.getBalance("sausages"), 0.0);
+            Assert.assertEquals(-3, c.getBalance("kitty"), 0.0);
+        }
+
+    }
+
+
+    @Test
+    public void queriesKeepInsertionOrderForManyOrganizations() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        List<String> expectation = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            String name = "organization #" + i;
+            c.addOrganization(name, String.format("%08d", i), i % 3 == 0 ? -i - 1 : i);
+            if (i % 3 == 0) expectation.add(name);
+        }
+
+        Assert.assertEquals(expectation, c.getOrganizationsWithNegativeSaldo());
+        Assert.assertEquals(String.format("%08d", 999), c.getRegistrationNumber("organization #999"));
+
+    }
+
+
+    @Test
+    public void queriesGetDateWithBiggestTotalPaymentsPrefersFirstDateOnTie() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        c.addOrganization("mystic", "00000000", 666);
+        c.addOrganization("moon", "12345678", 999);
+
+        Assert.assertNull(c.getDateWithBiggestTotalPayments());
+
+        c.addPayment("mystic", "moon", "1", "payment #1", generateModel(2012, 5, 1), 10);
+        c.addPayment("mystic", "moon", "2", "payment #2", generateModel(2012, 5, 2), 15);
+        Assert.assertEquals(LocalDate.of(2012, 5, 2), c.getDateWithBiggestTotalPayments());
+
+        c.addPayment("moon", "mystic", "3", "payment #3", generateModel(2012, 5, 1), 5);
+        Assert.assertEquals(LocalDate.of(2012, 5, 1), c.getDateWithBiggestTotalPayments());
+
+    }
+
+
+    @Test
+    public void queriesGetDateWithBiggestTotalPaymentsOverManyDays() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        c.addOrganization("mystic", "00000000", 666);
+        c.addOrganization("moon", "12345678", 999);
+
+        LocalDate start = LocalDate.of(2000, 1, 1);
+        for (int i = 0; i < 2000; i++) {
+            LocalDate day = start.plusDays(i);
+            c.addPayment("mystic", "moon", "a" + i, "purpose", day.atTime(9, 0), i == 1234 ? 100 : 1);
+            c.addPayment("moon", "mystic", "b" + i, "purpose", day.atTime(18, 0), 1);
+        }
+
+        Assert.assertEquals(start.plusDays(1234), c.getDateWithBiggestTotalPayments());
+
+    }
+
+
+    @Test
+    public void queriesGetTopPayments() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        c.addOrganization("mystic", "00000000", 666);
+        c.addOrganization("moon", "12345678", 999);
+
+        Assert.assertNull(c.getIdOfBiggestPayment());
+        Assert.assertEquals(Collections.emptyList(), c.getTopPayments(3));
+
+        c.addPayment("mystic", "moon", "1", "payment #1", generateModel(2012, 5, 1), 10);
+        c.addPayment("mystic", "moon", "2", "payment #2", generateModel(2012, 5, 1), 30);
+        c.addPayment("moon", "mystic", "3", "payment #3", generateModel(2012, 5, 1), 20);
+        c.addPayment("moon", "mystic", "4", "payment #4", generateModel(2012, 5, 1), 30);
+
+        Assert.assertEquals("2", c.getIdOfBiggestPayment());
+        Assert.assertEquals(Arrays.asList("2", "4", "3"), c.getTopPayments(3));
+        Assert.assertEquals(Arrays.asList("2", "4", "3", "1"), c.getTopPayments(10));
+
+    }
+
+
+    @Test
+    public void queriesGetTopPaymentsBeyondIndexedCapacity() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        c.addOrganization("mystic", "00000000", 666);
+        c.addOrganization("moon", "12345678", 999);
+
+        List<String> expectation = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            c.addPayment("mystic", "moon", String.valueOf(i), "purpose", generateModel(2012, 5, 1), 1 + i % 150);
+        }
+        for (int sum = 150; expectation.size() < 250; sum--) {
+            expectation.add(String.valueOf(sum - 1));
+            if (expectation.size() < 250) expectation.add(String.valueOf(sum + 149));
+        }
+
+        Assert.assertEquals("149", c.getIdOfBiggestPayment());
+        Assert.assertEquals(expectation.subList(0, 50), c.getTopPayments(50));
+        Assert.assertEquals(expectation, c.getTopPayments(250));
+
+    }
+
+
+    @Test
+    public void paymentsBatchReportsRejectionsPerItem() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        c.addOrganization("mystic", "00000000", 666);
+        c.addOrganization("moon", "12345678", 999);
+        c.addOrganization("kitty", "00991234", -3);
+        c.addPayment("mystic", "moon", "1", "Just for fun!", LocalDateTime.of(2015, 1, 1, 12, 0, 0), 1);
+
+        LocalDateTime dateTime = LocalDateTime.of(2015, 1, 2, 12, 0, 0);
+        BatchResult result = c.addPayments(Arrays.asList(
+                new PaymentRequest("mystic", "kitty", "2", "Mew", dateTime, 10),
+                new PaymentRequest("mystic", "kitty", "1", "Mew", dateTime, 10),
+                new PaymentRequest("kitty", "moon", "3", "Mew", dateTime, 20),
+                new PaymentRequest("kitty", "moon", "3", "Mew", dateTime, 20),
+                new PaymentRequest("missing", "moon", "4", "Mew", dateTime, 20),
+                new PaymentRequest("moon", "kitty", "5", "", dateTime, 20),
+                new PaymentRequest("moon", "kitty", "5", "Mew", dateTime, 40)));
+
+        Assert.assertEquals(7, result.size());
+        Assert.assertEquals(3, result.getAcceptedCount());
+        Assert.assertEquals(4, result.getRejectedCount());
+        Assert.assertTrue(result.isAccepted(0));
+        Assert.assertTrue(result.getRejection(1) instanceof DuplicatePaymentException);
+        Assert.assertTrue(result.isAccepted(2));
+        Assert.assertTrue(result.getRejection(3) instanceof DuplicatePaymentException);
+        Assert.assertTrue(result.getRejection(4) instanceof OrganizationCannotBeFoundException);
+        Assert.assertTrue(result.getRejection(5) instanceof EmptyPaymentPurposeException);
+        Assert.assertTrue(result.isAccepted(6));
+
+        Assert.assertEquals(655, c.getBalance("mystic"), 0.0);
+        Assert.assertEquals(980, c.getBalance("moon"), 0.0);
+        Assert.assertEquals(27, c.getBalance("kitty"), 0.0);
+        Assert.assertEquals("kitty", c.getRecieverName("5"));
+        Assert.assertEquals("5", c.getIdOfBiggestPayment());
+        Assert.assertEquals(LocalDate.of(2015, 1, 2), c.getDateWithBiggestTotalPayments());
+
+    }
+
+
+    @Test
+    public void paymentsKeepExactBalancesInMinorUnits() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        c.addOrganization("mystic", "00000000", 0.3);
+        c.addOrganization("moon", "12345678", 0);
+
+        for (int i = 0; i < 100000; i++) {
+            c.addPayment("mystic", "moon", String.valueOf(i), "purpose", generateModel(2015, 1, 1), 0.1);
+        }
+
+        Assert.assertEquals(-9999.7, c.getBalance("mystic"), 0.0);
+        Assert.assertEquals(10000.0, c.getBalance("moon"), 0.0);
+
+        HashMap<String, Long> balances = new HashMap<>();
+        c.forEachBalance(balances::put);
+        Assert.assertEquals(Long.valueOf(-999970), balances.get("mystic"));
+        Assert.assertEquals(Long.valueOf(1000000), balances.get("moon"));
+
+    }
+
+
+    @Test
+    public void paymentRejectedWhenBalanceWouldOverflow() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        c.addOrganization("mystic", "00000000", -9.0e16);
+        c.addOrganization("moon", "12345678", 9.0e16);
+
+        try {
+            c.addPayment("mystic", "moon", "1", "purpose", generateModel(2015, 1, 1), 3.0e15);
+            Assert.fail("BalanceOverflow");
+        } catch (BalanceOverflowException e) {
+            Assert.assertEquals(-9.0e16, c.getBalance("mystic"), 0.0);
+            Assert.assertEquals(9.0e16, c.getBalance("moon"), 0.0);
+            Assert.assertNull(c.getIdOfBiggestPayment());
+        }
+
+    }
+
+
+    @Test(expected = InvalidPaymentSumException.class)
+    public void paymentWithSumBelowMinorUnit() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        c.addOrganization("testFrom", "00000100", 100);
+        c.addOrganization("testTo", "10000000", 200);
+
+        c.addPayment("testFrom", "testTo", "88", "purpose", LocalDateTime.now(), 0.001);
+
+    }
+
+
+    @Test
+    public void negativeBalancesFollowZeroCrossings() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        ArrayList<String> crossings = new ArrayList<>();
+        c.setBalanceCrossingListener((name, previous, balance) -> crossings.add(name + ":" + previous + ">" + balance));
+        c.addOrganization("mystic", "00000000", 10);
+        c.addOrganization("moon", "12345678", -5);
+        c.addOrganization("kitty", "00991234", 0);
+
+        c.addPayment("mystic", "kitty", "1", "purpose", generateModel(2015, 1, 1), 15);
+        Assert.assertEquals(Arrays.asList("mystic", "moon"), c.getOrganizationsWithNegativeSaldo());
+
+        c.addPayment("kitty", "mystic", "2", "purpose", generateModel(2015, 1, 1), 5);
+        c.addPayment("kitty", "moon", "3", "purpose", generateModel(2015, 1, 1), 4);
+        Assert.assertEquals(Arrays.asList("moon"), c.getOrganizationsWithNegativeSaldo());
+
+        c.addPayment("kitty", "moon", "4", "purpose", generateModel(2015, 1, 1), 7);
+        Assert.assertEquals(Arrays.asList("kitty"), c.getOrganizationsWithNegativeSaldo());
+        Assert.assertEquals(Arrays.asList("moon:0>-500", "mystic:1000>-500", "mystic:-500>0", "moon:-100>600", "kitty:600>-100"), crossings);
+
+    }
+
+
+    @Test
+    public void batchReportsNetZeroCrossings() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        ArrayList<String> crossings = new ArrayList<>();
+        c.setBalanceCrossingListener((name, previous, balance) -> crossings.add(name));
+        c.addOrganization("mystic", "00000000", 10);
+        c.addOrganization("moon", "12345678", 0);
+
+        c.addPayments(Arrays.asList(
+                new PaymentRequest("mystic", "moon", "1", "purpose", generateModel(2015, 1, 1), 20),
+                new PaymentRequest("moon", "mystic", "2", "purpose", generateModel(2015, 1, 1), 10),
+                new PaymentRequest("mystic", "moon", "3", "purpose", generateModel(2015, 1, 1), 5)));
+
+        Assert.assertEquals(Arrays.asList("mystic"), c.getOrganizationsWithNegativeSaldo());
+        Assert.assertEquals(Arrays.asList("mystic"), crossings);
+
+    }
+
+
+    @Test
+    public void tryAddPaymentReportsRejectionsAsStatus() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        c.addOrganization("mystic", "00000000", 10);
+        c.addOrganization("moon", "12345678", 9.0e16);
+
+        Assert.assertEquals(PaymentStatus.ACCEPTED, c.tryAddPayment("mystic", "moon", "1", "purpose", generateModel(2015, 1, 1), 1));
+        Assert.assertEquals(PaymentStatus.DUPLICATE_PAYMENT, c.tryAddPayment("mystic", "moon", "1", "purpose", generateModel(2015, 1, 1), 1));
+        Assert.assertEquals(PaymentStatus.ORGANIZATION_NOT_FOUND, c.tryAddPayment("mystic", "kitty", "2", "purpose", generateModel(2015, 1, 1), 1));
+        Assert.assertEquals(PaymentStatus.PAYMENT_FOR_ITSELF, c.tryAddPayment("mystic", "mystic", "2", "purpose", generateModel(2015, 1, 1), 1));
+        Assert.assertEquals(PaymentStatus.EMPTY_PAYMENT_ID, c.tryAddPayment("mystic", "moon", "", "purpose", generateModel(2015, 1, 1), 1));
+        Assert.assertEquals(PaymentStatus.EMPTY_PAYMENT_PURPOSE, c.tryAddPayment("mystic", "moon", "2", "", generateModel(2015, 1, 1), 1));
+        Assert.assertEquals(PaymentStatus.INVALID_PAYMENT_TIME, c.tryAddPayment("mystic", "moon", "2", "purpose", LocalDateTime.now().plusDays(1), 1));
+        Assert.assertEquals(PaymentStatus.INVALID_PAYMENT_SUM, c.tryAddPayment("mystic", "moon", "2", "purpose", generateModel(2015, 1, 1), -1));
+        Assert.assertEquals(PaymentStatus.BALANCE_OVERFLOW, c.tryAddPayment("mystic", "moon", "2", "purpose", generateModel(2015, 1, 1), 3.0e15));
+
+        Assert.assertEquals(9.0, c.getBalance("mystic"), 0.0);
+        Assert.assertEquals(Arrays.asList("1"), c.getTopPayments(10));
+        Assert.assertTrue(PaymentStatus.INVALID_PAYMENT_SUM.newException() instanceof InvalidPaymentSumException);
+
+    }
+
+
+    @Test
+    public void rejectionsCanSkipStackTraces() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        c.addOrganization("mystic", "00000000", 10);
+        OrganizationAndPaymentsException.setStackTracesEnabled(false);
+        try {
+            c.addPayment("mystic", "kitty", "1", "purpose", generateModel(2015, 1, 1), 1);
+            Assert.fail("OrganizationCannotBeFound");
+        } catch (OrganizationCannotBeFoundException e) {
+            Assert.assertEquals(0, e.getStackTrace().length);
+            Assert.assertEquals("OrganizationCannotBeFound", e.getMessage());
+        } finally {
+            OrganizationAndPaymentsException.setStackTracesEnabled(true);
+        }
+        Assert.assertNotEquals(0, new DuplicatePaymentException().getStackTrace().length);
+
+    }
+
+
+    @Test
+    public void totalsByPurposeCountAcceptedPaymentsOnly() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        c.addOrganization("mystic", "00000000", 666);
+        c.addOrganization("moon", "12345678", 999);
+
+        c.addPayment("mystic", "moon", "1", new String("invoice"), generateModel(2015, 1, 1), 10.5);
+        c.addPayment("moon", "mystic", "2", new String("invoice"), generateModel(2015, 1, 2), 20.25);
+        c.addPayment("moon", "mystic", "3", "salary", generateModel(2015, 1, 2), 100);
+        Assert.assertEquals(PaymentStatus.PAYMENT_FOR_ITSELF, c.tryAddPayment("moon", "moon", "4", "tax", generateModel(2015, 1, 2), 1));
+        c.addPayments(Arrays.asList(new PaymentRequest("mystic", "moon", "5", "salary", generateModel(2015, 1, 3), 1)));
+
+        Assert.assertEquals(30.75, c.getTotalByPurpose("invoice"), 0.0);
+        Assert.assertEquals(101, c.getTotalByPurpose("salary"), 0.0);
+        Assert.assertEquals(0, c.getTotalByPurpose("tax"), 0.0);
+        HashMap<String, Double> totals = new HashMap<>();
+        totals.put("invoice", 30.75);
+        totals.put("salary", 101.0);
+        Assert.assertEquals(totals, c.getTotalsByPurpose());
+        Assert.assertSame(c.getPaymentPurpose("1"), c.getPaymentPurpose("2"));
+
+    }
+
+
+    @Test
+    public void timeRangeQueriesMatchScan() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        c.addOrganization("mystic", "00000000", 666);
+        c.addOrganization("moon", "12345678", 999);
+        LocalDateTime start = LocalDateTime.of(2015, 1, 1, 0, 0);
+        Random random = new Random(7);
+        ArrayList<LocalDateTime> dateTimes = new ArrayList<>();
+        ArrayList<Integer> sums = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            // Mostly in order, with a share of late arrivals and repeated times.
+            LocalDateTime dateTime = random.nextInt(4) == 0 ? start.plusMinutes(random.nextInt(i + 1)) : start.plusMinutes(i);
+            dateTimes.add(dateTime);
+            sums.add(1 + random.nextInt(1000));
+            c.addPayment("mystic", "moon", "p" + i, "purpose", dateTime, sums.get(i));
+        }
+
+        for (int query = 0; query < 200; query++) {
+            LocalDateTime from = start.plusMinutes(random.nextInt(5200) - 100);
+            LocalDateTime to = from.plusMinutes(random.nextInt(query < 100 ? 20 : 3000));
+            ArrayList<Integer> expected = new ArrayList<>();
+            long total = 0;
+            for (int i = 0; i < dateTimes.size(); i++) {
+                if (!dateTimes.get(i).isBefore(from) && dateTimes.get(i).isBefore(to)) {
+                    expected.add(i);
+                    total += sums.get(i);
+                }
+            }
+            expected.sort(Comparator.comparing(dateTimes::get));
+            ArrayList<String> expectedIds = new ArrayList<>();
+            for (int i : expected) expectedIds.add("p" + i);
+
+            Assert.assertEquals(expectedIds, c.getPayments(from, to));
+            Assert.assertEquals(total, c.getTotal(from, to), 0.0);
+        }
+
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void timeRangeMustNotBeInverted() throws BalanceOverflowException {
+
+        Controller c = new Controller();
+        c.getTotal(LocalDateTime.of(2015, 1, 2, 0, 0), LocalDateTime.of(2015, 1, 1, 0, 0));
+
+    }
+
+
+    @Test
+    public void timeRangeTotalPastLongMaxIsRejected() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        c.addOrganization("first", "00000011", 9e16);
+        c.addOrganization("second", "00000012", 9e16);
+        c.addOrganization("third", "00000013", 0);
+        c.addOrganization("fourth", "00000014", 0);
+        LocalDateTime day = LocalDateTime.of(2015, 1, 1, 12, 0);
+        c.addPayment("first", "third", "big1", "one", day, 6e16);
+        c.addPayment("second", "fourth", "big2", "two", day.plusDays(1), 6e16);
+        c.addPayment("first", "fourth", "small", "one", day.plusDays(2), 1);
+
+        Assert.assertEquals(6e16, c.getTotal(day, day.plusDays(1)), 0.0);
+        Assert.assertEquals(6e16 + 1, c.getTotal(day.plusDays(1), day.plusDays(3)), 0.0);
+        try {
+            c.getTotal(day, day.plusDays(3));
+            Assert.fail("BalanceOverflow");
+        } catch (BalanceOverflowException e) {
+            Assert.assertEquals("BalanceOverflow", e.getMessage());
+        }
+
+    }
+
+
+    @Test
+    public void paymentHistoryPagesThroughOrganizationPayments() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        c.addOrganization("mystic", "00000000", 666);
+        c.addOrganization("moon", "12345678", 999);
+        c.addOrganization("kitty", "00991234", 0);
+        for (int i = 0; i < 25; i++) {
+            c.addPayment(i % 2 == 0 ? "mystic" : "kitty", "moon", "p" + i, "purpose", generateModel(2015, 1, 1), 1);
+        }
+        c.addPayment("moon", "mystic", "back", "purpose", generateModel(2014, 1, 1), 1);
+
+        ArrayList<String> outgoing = new ArrayList<>();
+        int cursor = 0;
+        PaymentPage page;
+        do {
+            page = c.getOutgoingPayments("mystic", cursor, 5);
+            outgoing.addAll(page.getPaymentIds());
+            cursor = page.getNextCursor();
+        } while (page.hasMore());
+
+        ArrayList<String> expected = new ArrayList<>();
+        for (int i = 0; i < 25; i += 2) expected.add("p" + i);
+        Assert.assertEquals(expected, outgoing);
+        Assert.assertEquals(13, cursor);
+        Assert.assertEquals(Arrays.asList("back"), c.getIncomingPayments("mystic", 0, 10).getPaymentIds());
+        Assert.assertEquals(Arrays.asList("p23", "p24"), c.getIncomingPayments("moon", 23, 10).getPaymentIds());
+        Assert.assertFalse(c.getIncomingPayments("moon", 23, 10).hasMore());
+        Assert.assertEquals(0, c.getOutgoingPayments("moon", 1, 10).getPaymentIds().size());
+        try {
+            c.getOutgoingPayments("missing", 0, 10);
+            Assert.fail("OrganizationCannotBeFound");
+        } catch (OrganizationCannotBeFoundException e) {
+            Assert.assertEquals("OrganizationCannotBeFound", e.getMessage());
+        }
+
+    }
+
+
+    @Test
+    public void aggregateMatchesSequentialScanAcrossChunks() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller(PaymentStorage.COLUMNAR);
+        c.addOrganization("mystic", "00000000", 1e9);
+        c.addOrganization("moon", "12345678", 1e9);
+        c.addOrganization("kitty", "00991234", 1e9);
+        String[] names = {"mystic", "moon", "kitty"};
+        HashMap<String, Long> expectedTotals = new HashMap<>();
+        ArrayList<String> expectedCodes = new ArrayList<>();
+        for (int i = 0; i < 40000; i++) {
+            String reciever = names[(i + 1) % 3];
+            double sum = 1 + i % 97;
+            c.addPayment(names[i % 3], reciever, "p" + i, "purpose", generateModel(2015, 1, 1), sum);
+            if (sum >= 50) {
+                expectedTotals.merge(reciever, Payment.toMinorUnits(sum), Long::sum);
+                if (reciever.equals("moon")) expectedCodes.add("p" + i);
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Assert.assertEquals(expectedTotals, c.aggregate(x -> x.getPaymentSum() >= 50, x -> x.getRecieverOrganization().getOrganizationName(),
+                    Collectors.summingLong(Payment::getPaymentSumMinor), pool));
+            HashMap<String, List<String>> codes = c.aggregate(x -> x.getPaymentSum() >= 50, x -> x.getRecieverOrganization().getOrganizationName(),
+                    Collectors.mapping(Payment::getUniqueCode, Collectors.toList()), pool);
+            Assert.assertEquals(expectedCodes, codes.get("moon"));
+        } finally {
+            pool.shutdown();
+        }
+        Assert.assertTrue(c.aggregate(x -> false, x -> x, Collectors.counting()).isEmpty());
+
+    }
+
+
+    @Test
+    public void paymentRejectedWhenDailyTotalWouldOverflow() throws OrganizationAndPaymentsException {
+
+        for (PaymentStorage storage : Arrays.asList(PaymentStorage.HEAP, PaymentStorage.COLUMNAR)) {
+            Controller c = new Controller(storage);
+            c.addOrganization("mystic", "00000000", 4.0e16);
+            c.addOrganization("moon", "12345678", 0);
+            c.addPayment("mystic", "moon", "1", "there", generateModel(2015, 1, 1), 4.0e16);
+            c.addPayment("moon", "mystic", "2", "back", generateModel(2015, 1, 1), 4.0e16);
+
+            Assert.assertEquals(PaymentStatus.BALANCE_OVERFLOW, c.tryAddPayment("mystic", "moon", "3", "there", generateModel(2015, 1, 1), 4.0e16));
+            BatchResult result = c.addPayments(Arrays.asList(
+                    new PaymentRequest("mystic", "moon", "4", "there", generateModel(2015, 1, 2), 4.0e16),
+                    new PaymentRequest("moon", "mystic", "5", "back", generateModel(2015, 1, 2), 4.0e16),
+                    new PaymentRequest("mystic", "moon", "6", "there", generateModel(2015, 1, 2), 4.0e16)));
+
+            Assert.assertEquals(1, result.getRejectedCount());
+            Assert.assertEquals("BalanceOverflow", result.getRejection(2).getMessage());
+            Assert.assertEquals(4.0e16, c.getBalance("mystic"), 0.0);
+            Assert.assertEquals(0, c.getBalance("moon"), 0.0);
+            Assert.assertEquals(Arrays.asList("1", "2", "4", "5"), c.getTopPayments(10));
+            Assert.assertEquals(generateModel(2015, 1, 1).toLocalDate(), c.getDateWithBiggestTotalPayments());
+        }
+
+    }
+
+
+    @Test
+    public void paymentRejectedWhenPurposeTotalWouldOverflow() throws OrganizationAndPaymentsException {
+
+        Controller c = new Controller();
+        c.addOrganization("mystic", "00000000", 4.0e16);
+        c.addOrganization("moon", "12345678", 0);
+        c.addPayment("mystic", "moon", "1", "rent", generateModel(2015, 1, 1), 4.0e16);
+        c.addPayment("moon", "mystic", "2", "rent", generateModel(2015, 1, 2), 4.0e16);
+
+        Assert.assertEquals(PaymentStatus.BALANCE_OVERFLOW, c.tryAddPayment("mystic", "moon", "3", "rent", generateModel(2015, 1, 3), 4.0e16));
+        BatchResult result = c.addPayments(Arrays.asList(
+                new PaymentRequest("mystic", "moon", "4", "gift", generateModel(2015, 1, 4), 4.0e16),
+                new PaymentRequest("moon", "mystic", "5", "gift", generateModel(2015, 1, 5), 4.0e16),
+                new PaymentRequest("mystic", "moon", "6", "gift", generateModel(2015, 1, 6), 4.0e16)));
+
+        Assert.assertEquals(1, result.getRejectedCount());
+        Assert.assertEquals("BalanceOverflow", result.getRejection(2).getMessage());
+        Assert.assertEquals(4.0e16, c.getBalance("mystic"), 0.0);
+        Assert.assertEquals(8.0e16, c.getTotalByPurpose("rent"), 0.0);
+        Assert.assertEquals(8.0e16, c.getTotalByPurpose("gift"), 0.0);
+
+    }
+
 }
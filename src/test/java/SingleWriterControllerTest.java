@@ -0,0 +1,120 @@
+import Exceptions.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class SingleWriterControllerTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2015, 1, 1, 12, 0);
+
+
+    @Test
+    public void commandsAreAppliedInPublicationOrder() throws Exception {
+
+        Controller controller = new Controller();
+        try (SingleWriterController c = new SingleWriterController(controller, 4, SingleWriterController.WaitStrategy.BLOCKING)) {
+            c.addOrganization("mystic", "00000000", 666).get();
+            CompletableFuture<Void> duplicateOrganization = c.addOrganization("mystic", "12345678", 0);
+            c.addOrganization("moon", "12345678", 999);
+            ArrayList<CompletableFuture<PaymentStatus>> statuses = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                statuses.add(c.addPayment("mystic", "moon", "p" + (i % 15), "purpose", TIME, 1));
+            }
+            statuses.add(c.addPayment("mystic", "mystic", "itself", "purpose", TIME, 1));
+            CompletableFuture<Double> balance = c.submit(x -> x.getBalance("moon"));
+
+            for (int i = 0; i < 20; i++) {
+                Assert.assertEquals(i < 15 ? PaymentStatus.ACCEPTED : PaymentStatus.DUPLICATE_PAYMENT, statuses.get(i).get());
+            }
+            Assert.assertEquals(PaymentStatus.PAYMENT_FOR_ITSELF, statuses.get(20).get());
+            Assert.assertEquals(1014, balance.get(), 0.0);
+            try {
+                duplicateOrganization.get();
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof DuplicateOrganizationException);
+            }
+            Assert.assertEquals(4, c.getBufferSize());
+        }
+        Assert.assertEquals(651, controller.getBalance("mystic"), 0.0);
+
+    }
+
+
+    @Test
+    public void concurrentProducersKeepBalancesConsistentWithEveryWaitStrategy() throws Exception {
+
+        int organizationCount = 8;
+        int threadCount = 4;
+        int paymentsPerThread = 5000;
+        for (SingleWriterController.WaitStrategy strategy : SingleWriterController.WaitStrategy.values()) {
+            Controller controller = new Controller();
+            SingleWriterController c = new SingleWriterController(controller, 64, strategy);
+            for (int i = 0; i < organizationCount; i++) {
+                c.addOrganization("org" + i, String.format("%08d", i), 1000);
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+            ArrayList<Future<List<CompletableFuture<PaymentStatus>>>> producers = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                int thread = t;
+                producers.add(executor.submit(() -> {
+                    ArrayList<CompletableFuture<PaymentStatus>> statuses = new ArrayList<>();
+                    for (int i = 0; i < paymentsPerThread; i++) {
+                        String sender = "org" + (thread + i) % organizationCount;
+                        String reciever = "org" + (thread + i + 1) % organizationCount;
+                        statuses.add(c.addPayment(sender, reciever, thread + "-" + i, "purpose", TIME, 1 + i % 7));
+                    }
+                    return statuses;
+                }));
+            }
+            for (Future<List<CompletableFuture<PaymentStatus>>> x : producers) {
+                for (CompletableFuture<PaymentStatus> status : x.get()) {
+                    Assert.assertEquals(strategy.name(), PaymentStatus.ACCEPTED, status.get(10, TimeUnit.SECONDS));
+                }
+            }
+            executor.shutdown();
+            c.close();
+
+            long total = 0;
+            for (double x : controller.getFinalBalances().values()) total += Math.round(x);
+            Assert.assertEquals(strategy.name(), organizationCount * 1000, total);
+            Assert.assertEquals(strategy.name(), threadCount * paymentsPerThread, controller.getMetrics().snapshot().getPaymentCount());
+        }
+
+    }
+
+
+    @Test
+    public void closeDrainsPublishedCommandsAndRejectsNewOnes() throws Exception {
+
+        Controller controller = new Controller();
+        SingleWriterController c = new SingleWriterController(controller, 1024, SingleWriterController.WaitStrategy.SLEEPING);
+        c.addOrganization("mystic", "00000000", 666);
+        c.addOrganization("moon", "12345678", 999);
+        ArrayList<CompletableFuture<PaymentStatus>> statuses = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            statuses.add(c.addPayment("mystic", "moon", "p" + i, "purpose", TIME, 1));
+        }
+        CompletableFuture<Object> failing = c.submit(x -> {
+            throw new IllegalStateException("task failed");
+        });
+        c.close();
+        c.close();
+
+        for (CompletableFuture<PaymentStatus> x : statuses) {
+            Assert.assertTrue(x.isDone());
+            Assert.assertEquals(PaymentStatus.ACCEPTED, x.get());
+        }
+        Assert.assertTrue(failing.isCompletedExceptionally());
+        Assert.assertEquals(1999, controller.getBalance("moon"), 0.0);
+        try {
+            c.addPayment("mystic", "moon", "late", "purpose", TIME, 1);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+        }
+
+    }
+}